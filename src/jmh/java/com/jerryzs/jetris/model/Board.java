@@ -0,0 +1,140 @@
+package com.jerryzs.jetris.model;
+
+import org.json.JSONArray;
+
+import java.io.IOException;
+
+/**
+ * Playfield fixtures for the benchmarks. Each board is drawn top-down, with
+ * the last string being the bottom row of the playfield, '#' being an occupied
+ * cell and '.' being an empty cell.
+ */
+public enum Board {
+    EMPTY(),
+
+    MID_STACK(
+            "#.........",
+            "##.....#..",
+            "##.#..###.",
+            "####.####.",
+            "#####.###.",
+            "###.#####.",
+            "#.#######.",
+            "########.#"
+    ),
+
+    HIGH_STACK(
+            "##......##",
+            "#........#",
+            "###....###",
+            "#.##..####",
+            "#..#..#..#",
+            "##.####.##",
+            "#....##..#",
+            "##.####.##",
+            "####.#####",
+            "#.###...##",
+            "#.#.####.#",
+            "##.####.##",
+            "###..#####",
+            "#.########",
+            "####.#####",
+            "#########."
+    ),
+
+    /**
+     * A T-spin double: a T dropped into column 2 and rotated clockwise fills
+     * the slot under the overhang and clears 2 lines.
+     */
+    TSD(
+            "##........",
+            "#...######",
+            "##.#######"
+    ),
+
+    /**
+     * A T-spin triple: a flat T slid under the overhang from the right and
+     * rotated clockwise only fits through the fifth kick test, and clears 3
+     * lines.
+     */
+    TST(
+            "##........",
+            "#.........",
+            "#.########",
+            "#..#######",
+            "#.########"
+    );
+
+    private final String[] rows;
+
+    Board(String... rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * EFFECTS: Create a new playfield with this board as its matrix.
+     *
+     * @return The playfield
+     */
+    public Playfield playfield() throws IOException {
+        return Playfield.fromJsonArray(Board.toJsonArray(this.rows));
+    }
+
+    /**
+     * REQUIRES: this is TSD or TST
+     * <p>
+     * MODIFIES: playfield
+     * <p>
+     * EFFECTS: Spawn a T in the playfield and bring it to where a single
+     * clockwise rotation performs the T-spin of this board.
+     *
+     * @param playfield A playfield created from this board
+     * @return The T about to be rotated
+     */
+    public Tetromino spinReady(Playfield playfield) {
+        Tetromino t = new Tetromino(Tetromino.Type.T);
+        playfield.spawn(t);
+
+        if (this == Board.TSD) {
+            playfield.move(Tetromino.Direction.DOWN);
+            playfield.rotate(1);
+        }
+
+        while (playfield.move(Tetromino.Direction.DOWN)) {
+            continue;
+        }
+
+        playfield.move(Tetromino.Direction.LEFT);
+        playfield.move(Tetromino.Direction.LEFT);
+
+        while (playfield.move(Tetromino.Direction.DOWN)) {
+            continue;
+        }
+
+        return t;
+    }
+
+    /**
+     * EFFECTS: Encode rows drawn top-down the same way as
+     * {@link Playfield#toJsonArray(Playfield)}, with every occupied cell
+     * having the color of the I tetromino.
+     */
+    static JSONArray toJsonArray(String... rows) {
+        JSONArray array = new JSONArray();
+
+        for (int i = 0; i < 22; i++) {
+            int bin = 0;
+
+            if (i < rows.length) {
+                String row = rows[rows.length - 1 - i];
+                for (int j = 0; j < row.length(); j++) {
+                    bin += row.charAt(j) == '#' ? 1 << (j * 3) : 0;
+                }
+            }
+
+            array.put(bin);
+        }
+
+        return array;
+    }
+}
@@ -0,0 +1,65 @@
+package com.jerryzs.jetris.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+    /**
+     * A game left to fall under gravity, restarted from the board whenever it
+     * is over.
+     */
+    @State(Scope.Thread)
+    public static class Running {
+        @Param({"EMPTY", "MID_STACK", "HIGH_STACK"})
+        Board board;
+
+        Game game;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Playfield playfield = this.board.playfield();
+            this.game = new Game(60, playfield, new RandomBag(), new Score(playfield), null, null, true);
+        }
+    }
+
+    /**
+     * A game on the board with a tetromino just spawned, rebuilt before every
+     * invocation since a hard drop locks the tetromino down.
+     */
+    @State(Scope.Thread)
+    public static class Spawned {
+        @Param({"EMPTY", "MID_STACK", "HIGH_STACK", "TSD", "TST"})
+        Board board;
+
+        Game game;
+
+        @Setup(Level.Invocation)
+        public void setUp() throws IOException {
+            Playfield playfield = this.board.playfield();
+            this.game = new Game(60, playfield, new RandomBag(), new Score(playfield), null, null, true);
+        }
+    }
+
+    @Benchmark
+    public boolean run(Running state) throws IOException {
+        if (state.game.isOver()) {
+            state.setUp();
+        }
+
+        state.game.run();
+        return state.game.isPaused();
+    }
+
+    @Benchmark
+    public int hardDrop(Spawned state) {
+        state.game.hardDrop();
+        return state.game.getScore().getPoints();
+    }
+}
@@ -0,0 +1,58 @@
+package com.jerryzs.jetris.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the slowest rotations, a T held in a cavity where both
+ * rotations fail every kick test. It does not depend on the board of
+ * {@link PlayfieldBenchmark}, so it is not parameterized by one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KickBenchmark {
+    Playfield enclosed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.enclosed = Playfield.fromJsonArray(Board.toJsonArray(
+                "..........",
+                "..........",
+                "####.#####",
+                "###...####",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########",
+                "##########"
+        ));
+        this.enclosed.spawn(new Tetromino(Tetromino.Type.T, true));
+    }
+
+    /**
+     * Rotate both ways, each failing all 5 kick tests.
+     */
+    @Benchmark
+    public boolean rotateAllKicksFail() {
+        return this.enclosed.rotate(1) | this.enclosed.rotate(-1);
+    }
+}
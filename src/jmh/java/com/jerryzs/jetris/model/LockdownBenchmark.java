@@ -0,0 +1,59 @@
+package com.jerryzs.jetris.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of locking down a vertical I in the rightmost column of a stack
+ * where it clears the given number of lines. Locking down changes the state,
+ * so the playfield is rebuilt before every invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LockdownBenchmark {
+    private static final String[] STACK = {
+            "..###.....",
+            "#.#######.",
+            "#########.",
+            "#########.",
+            "#########.",
+            "#########."
+    };
+
+    @Param({"0", "1", "2", "3", "4"})
+    int lines;
+
+    Playfield playfield;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        String[] rows = LockdownBenchmark.STACK.clone();
+        for (int i = 0; i < 4 - this.lines; i++) {
+            rows[rows.length - 1 - i] = ".########.";
+        }
+
+        this.playfield = Playfield.fromJsonArray(Board.toJsonArray(rows));
+        this.playfield.spawn(new Tetromino(Tetromino.Type.I));
+        this.playfield.move(Tetromino.Direction.DOWN);
+        this.playfield.rotate(1);
+
+        while (this.playfield.move(Tetromino.Direction.RIGHT)) {
+            continue;
+        }
+
+        while (this.playfield.move(Tetromino.Direction.DOWN)) {
+            continue;
+        }
+    }
+
+    @Benchmark
+    public int lockdown() {
+        return this.playfield.lockdown();
+    }
+}
@@ -0,0 +1,53 @@
+package com.jerryzs.jetris.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the operations of a playfield performed on every input. The
+ * dropping tetromino is a T just below the buffer area, unless stated
+ * otherwise.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayfieldBenchmark {
+    @Param({"EMPTY", "MID_STACK", "HIGH_STACK", "TSD", "TST"})
+    Board board;
+
+    Playfield playfield;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.playfield = this.board.playfield();
+        this.playfield.spawn(new Tetromino(Tetromino.Type.T));
+        this.playfield.move(Tetromino.Direction.DOWN);
+    }
+
+    /**
+     * Move left and back right, casting the ghost piece after each move.
+     */
+    @Benchmark
+    public boolean move() {
+        return this.playfield.move(Tetromino.Direction.LEFT) & this.playfield.move(Tetromino.Direction.RIGHT);
+    }
+
+    @Benchmark
+    public int cast() {
+        this.playfield.cast();
+        return this.playfield.getGhostY();
+    }
+
+    /**
+     * Rotate clockwise and back, each passing the first kick test.
+     */
+    @Benchmark
+    public boolean rotate() {
+        return this.playfield.rotate(1) & this.playfield.rotate(-1);
+    }
+}
@@ -0,0 +1,31 @@
+package com.jerryzs.jetris.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomBagBenchmark {
+    RandomBag bag;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.bag = new RandomBag();
+    }
+
+    /**
+     * Pop the next tetromino and return it to the pool, as the game does once
+     * the tetromino is locked down.
+     */
+    @Benchmark
+    public Tetromino pop() {
+        Tetromino t = this.bag.pop();
+        this.bag.recycle(t);
+        return t;
+    }
+}
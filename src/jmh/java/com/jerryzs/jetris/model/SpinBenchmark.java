@@ -0,0 +1,63 @@
+package com.jerryzs.jetris.model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the T-spin setups: the kicked rotation into the slot, and the
+ * T-spin check on lockdown. Rotating into the slot changes the state, so it is
+ * reset before every invocation; the timings of such short invocations include
+ * some timer overhead and are best compared with each other rather than with
+ * the other benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpinBenchmark {
+    @Param({"TSD", "TST"})
+    Board board;
+
+    Playfield playfield;
+    Score score;
+
+    Playfield spun;
+    Score spunScore;
+
+    @Setup(Level.Trial)
+    public void setUpSpun() throws IOException {
+        this.spun = this.board.playfield();
+        this.spunScore = new Score(this.spun);
+        this.board.spinReady(this.spun);
+        this.spun.rotate(1);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        this.playfield = this.board.playfield();
+        this.score = new Score(this.playfield);
+        this.board.spinReady(this.playfield);
+    }
+
+    /**
+     * Rotate into the slot, through the fifth kick test for TST.
+     */
+    @Benchmark
+    public boolean rotate() {
+        return this.playfield.rotate(1);
+    }
+
+    /**
+     * Check the T in the slot for a T-spin, consuming the type found.
+     */
+    @Benchmark
+    public void tspinCheck(Blackhole blackhole) {
+        this.spunScore.tspinCheck();
+        blackhole.consume(this.spunScore.getTspin());
+    }
+}
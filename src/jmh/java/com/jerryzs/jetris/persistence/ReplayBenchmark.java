@@ -0,0 +1,79 @@
+package com.jerryzs.jetris.persistence;
+
+import com.jerryzs.jetris.model.Game;
+import com.jerryzs.jetris.model.Input;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of verifying the replay of a whole game, reported both in
+ * replays and in frames replayed per second, and of seeking to random frames
+ * of the replay.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+    byte[] replay;
+    long frames;
+
+    ReplayPlayer player;
+    Random targets;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Frames {
+        public long frames;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Random random = new Random(0);
+        Game game = new Game(60, 0);
+
+        // let every tetromino fall under gravity after shifting it randomly,
+        // which makes for a game of tens of thousands of frames
+        try (ReplayRecorder recorder = new ReplayRecorder(game, Channels.newChannel(out))) {
+            while (!game.isOver()) {
+                if (random.nextInt(60) == 0) {
+                    game.perform(Input.VALUES[random.nextInt(Input.HARD_DROP.ordinal())]);
+                }
+                game.run();
+            }
+        }
+
+        this.replay = out.toByteArray();
+        this.frames = game.getFrame();
+
+        this.player = new ReplayPlayer(ByteBuffer.wrap(this.replay));
+        this.targets = new Random(0);
+    }
+
+    @Benchmark
+    public boolean verify(Frames frames) throws IOException {
+        ReplayPlayer player = new ReplayPlayer(ByteBuffer.wrap(this.replay));
+        boolean verified = player.verify();
+        frames.frames += player.getGame().getFrame();
+        return verified;
+    }
+
+    /**
+     * Seek to a random frame of the replay from wherever the previous seek
+     * left the player.
+     */
+    @Benchmark
+    public long seek() throws IOException {
+        this.player.seek((long) (this.targets.nextDouble() * this.frames));
+        return this.player.getGame().getFrame();
+    }
+}
@@ -1,9 +1,10 @@
 package com.jerryzs.jetris.model;
 
-import com.jerryzs.jetris.persistence.HighScore;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -13,12 +14,11 @@ public class Game implements Runnable {
     private static final int LOCK_FRAME_COUNTER_RESET_LIMIT = 8;
 
     /**
-     * An unmodifiable list of gravity values associated with levels of the
-     * game, i.e., <code>Game.GRAVITY.get(level - 1)</code> retrieves the
-     * gravity value of the given <code>level</code>, for <code>1 <= level <=
-     * 15</code>.
+     * The gravity values associated with levels of the game, i.e.,
+     * <code>Game.GRAVITY[level - 1]</code> retrieves the gravity value of the
+     * given <code>level</code>, for <code>1 <= level <= 15</code>.
      */
-    private static final List<Double> GRAVITY = List.of(
+    private static final double[] GRAVITY = {
             0.01667,
             0.021017,
             0.026977,
@@ -34,7 +34,38 @@ public class Game implements Runnable {
             0.92,
             1.46,
             2.36
-    );
+    };
+
+    /**
+     * The number of fractional bits of the fixed-point values used to
+     * accumulate gravity, i.e., <code>1 << Game.CELL_SHIFT</code> represents
+     * a whole cell.
+     */
+    private static final int CELL_SHIFT = 16;
+    private static final long CELL = 1L << Game.CELL_SHIFT;
+
+    /**
+     * The gravity values of {@link #GRAVITY} in fixed point, in fractions of a
+     * cell per 1/60 of a second. The values are rounded up so that a tetromino
+     * at level 1 still falls by 1 cell every second.
+     */
+    private static final long[] FIXED_GRAVITY = new long[Game.GRAVITY.length];
+
+    static {
+        for (int i = 0; i < Game.GRAVITY.length; i++) {
+            Game.FIXED_GRAVITY[i] = (long) Math.ceil(Game.GRAVITY[i] * Game.CELL);
+        }
+    }
+
+    /**
+     * The largest number of bytes written by {@link #write(Game, ByteBuffer)}.
+     */
+    public static final int MAX_BINARY_LENGTH = 4 * Varint.MAX_BYTES + 1 + 2 * 5
+            + RandomBag.MAX_BINARY_LENGTH + Score.MAX_BINARY_LENGTH + Playfield.MAX_BINARY_LENGTH;
+
+    private static final int PAUSED = 1;
+    private static final int HOLDING_ALLOWED = 2;
+    private static final int HOLDING = 4;
 
     private final Playfield playfield;
     private final RandomBag bag;
@@ -45,13 +76,24 @@ public class Game implements Runnable {
     private Tetromino hold;
     private boolean holdingAllowed;
 
-    private double moveCells;
+    private long moveCells;
     private int lockFrameCounter;
     private int lockFrameCounterResetCounter;
 
     private boolean paused;
     private boolean over;
 
+    private long frame;
+    private InputListener listener;
+
+    private InputQueue inputs;
+    private long lastInputTime;
+
+    private boolean publishing;
+    private Snapshot[] snapshots;
+    private int nextSnapshot;
+    private volatile Snapshot snapshot;
+
     /**
      * Create a new game of Jetris with the specified framerate.
      * <p>
@@ -63,6 +105,19 @@ public class Game implements Runnable {
         this(framerate, new Playfield(), new RandomBag(), null, null, true);
     }
 
+    /**
+     * Create a new game of Jetris with the specified framerate, whose
+     * sequence of tetrominoes is determined by the given seed.
+     * <p>
+     * REQUIRES: framerate > 0
+     *
+     * @param framerate The number of times the game is updated per second
+     * @param seed      The seed of the 7-bag
+     */
+    public Game(int framerate, long seed) {
+        this(framerate, new Playfield(), new RandomBag(seed), null, null, true);
+    }
+
     private Game(int framerate, Playfield playfield, RandomBag bag,
             Tetromino spawn, Tetromino hold, boolean holdingAllowed) {
         this(framerate, playfield, bag, new Score(playfield), spawn, hold, holdingAllowed);
@@ -100,7 +155,7 @@ public class Game implements Runnable {
         return new Game(
                 framerate,
                 playfield,
-                RandomBag.fromJsonArray(json.getJSONArray("bag")),
+                RandomBag.fromJsonArray(json.getJSONArray("bag"), Game.randomizerFromJson(json)),
                 Score.fromJson(json.getJSONObject("score"), playfield),
                 json.has("current") ? Tetromino.fromJson(json.getJSONObject("current")) : null,
                 json.has("hold") ? new Tetromino(Tetromino.Type.valueOf(json.getString("hold")), true) : null,
@@ -108,6 +163,101 @@ public class Game implements Runnable {
         );
     }
 
+    /**
+     * REQUIRES: game.getPlayfield().getCurrent() != null and buffer has at
+     * least {@link #MAX_BINARY_LENGTH} bytes remaining
+     * <p>
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Write the complete state of a game in binary, so that the game
+     * recovered from it evolves exactly as the written game would.
+     *
+     * @param game   The game to write
+     * @param buffer The buffer to write to
+     */
+    public static void write(Game game, ByteBuffer buffer) {
+        Varint.put(buffer, game.frame);
+        Varint.put(buffer, game.framerate);
+        Varint.put(buffer, game.moveCells);
+        Varint.put(buffer, game.lockFrameCounter);
+        Varint.put(buffer, game.lockFrameCounterResetCounter);
+
+        buffer.put((byte) ((game.paused ? Game.PAUSED : 0)
+                | (game.holdingAllowed ? Game.HOLDING_ALLOWED : 0)
+                | (game.hold != null ? Game.HOLDING : 0)));
+        if (game.hold != null) {
+            // the last move of a held tetromino is kept, and counts towards
+            // a t-spin once it is swapped back in
+            Tetromino.write(game.hold, buffer);
+        }
+
+        Tetromino.write(game.playfield.getCurrent(), buffer);
+        RandomBag.write(game.bag, buffer);
+        Playfield.write(game.playfield, buffer);
+        Score.write(game.score, buffer);
+    }
+
+    /**
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Recover the game written by {@link #write(Game, ByteBuffer)}.
+     *
+     * @param buffer The buffer to read from
+     * @return The game object
+     * @throws IOException If the content of the buffer is truncated or invalid
+     */
+    public static Game read(ByteBuffer buffer) throws IOException {
+        try {
+            long frame = Varint.get(buffer);
+            int framerate = (int) Varint.get(buffer);
+            long moveCells = Varint.get(buffer);
+            int lockFrameCounter = (int) Varint.get(buffer);
+            int lockFrameCounterResetCounter = (int) Varint.get(buffer);
+
+            int flags = buffer.get();
+            Tetromino hold = (flags & Game.HOLDING) != 0 ? Tetromino.read(buffer) : null;
+
+            Tetromino current = Tetromino.read(buffer);
+            RandomBag bag = RandomBag.read(buffer);
+            Playfield playfield = Playfield.read(buffer);
+            Score score = Score.read(buffer, playfield);
+
+            if (frame < 0 || framerate <= 0 || moveCells < 0 || lockFrameCounter < 0
+                    || lockFrameCounterResetCounter < 0) {
+                throw new IOException("Invalid game timings");
+            } else if (!playfield.fits(current.getType(), current.getOrientation(), current.getX(), current.getY())) {
+                throw new IOException("The current tetromino overlaps the playfield");
+            }
+
+            Game game = new Game(framerate, playfield, bag, score,
+                    current, hold, (flags & Game.HOLDING_ALLOWED) != 0);
+            game.frame = frame;
+            game.moveCells = moveCells;
+            game.lockFrameCounter = lockFrameCounter;
+            game.lockFrameCounterResetCounter = lockFrameCounterResetCounter;
+            game.paused = (flags & Game.PAUSED) != 0;
+
+            return game;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated game");
+        }
+    }
+
+    /**
+     * EFFECTS: Recover the randomizer of the 7-bag from the save file,
+     * positioned after the last tetromino in the saved queue. Saves without a
+     * seed continue with a randomly seeded randomizer.
+     */
+    private static Randomizer randomizerFromJson(JSONObject json) {
+        if (!json.has("seed")) {
+            return new SevenBagRandomizer();
+        }
+
+        Randomizer randomizer = new SevenBagRandomizer(json.getLong("seed"));
+        randomizer.seek(json.getLong("position"));
+        return randomizer;
+    }
+
     public static JSONObject toJson(Game game) {
         JSONObject obj = new JSONObject();
 
@@ -115,6 +265,8 @@ public class Game implements Runnable {
         obj.put("hold", game.getHold() == null ? null : game.getHold().getType().name());
         obj.put("holdingAllowed", game.getHoldingAllowed());
         obj.put("bag", RandomBag.toJsonArray(game.bag));
+        obj.put("seed", game.bag.getRandomizer().getSeed());
+        obj.put("position", game.bag.getRandomizer().getPosition());
         obj.put("score", Score.toJson(game.score));
         obj.put("matrix", Playfield.toJsonArray(game.playfield));
 
@@ -129,6 +281,10 @@ public class Game implements Runnable {
      * @param framerate The actual measured framerate
      */
     public void framerate(int framerate) {
+        if (this.listener != null && framerate != this.framerate) {
+            this.listener.onFramerate(framerate, this.frame);
+        }
+
         this.framerate = framerate;
     }
 
@@ -141,8 +297,251 @@ public class Game implements Runnable {
         return this.framerate;
     }
 
+    /**
+     * EFFECTS: Get the number of frames the game has run while not paused.
+     *
+     * @return The number of frames run
+     */
+    public long getFrame() {
+        return this.frame;
+    }
+
+    /**
+     * EFFECTS: Get the seed of the sequence of tetrominoes of the game.
+     *
+     * @return The seed of the 7-bag
+     */
+    public long getSeed() {
+        return this.bag.getRandomizer().getSeed();
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Set the listener notified of every input performed on the game
+     * and every change of its framerate, replacing any previous listener.
+     *
+     * @param listener The listener; or null to remove the listener
+     */
+    public void setInputListener(InputListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Set the queue whose inputs are applied to the game at the start
+     * of each of its frames, replacing any previous queue. Inputs received by
+     * a thread other than the one running the game must go through a queue.
+     *
+     * @param inputs The queue; or null to remove the queue
+     */
+    public void setInputQueue(InputQueue inputs) {
+        this.inputs = inputs;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Start or stop publishing a snapshot of the game at the end of
+     * every frame that changes what is drawn, for renderers on other threads.
+     * A snapshot of the game as it is now is published when started. The
+     * snapshots are recycled, as described in {@link Snapshot}.
+     *
+     * @param publishing True to publish snapshots; otherwise, false
+     */
+    public void setPublishing(boolean publishing) {
+        this.publishing = publishing;
+
+        if (publishing) {
+            this.publish();
+        }
+    }
+
+    /**
+     * EFFECTS: Get the latest snapshot published by the game. Any thread may
+     * call this.
+     *
+     * @return The latest snapshot; or null, if none was published
+     */
+    public Snapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Fill the next snapshot of the ring, and publish it if it draws
+     * differently from the latest one; otherwise, it is filled again next
+     * time.
+     */
+    private void publish() {
+        if (!this.publishing) {
+            return;
+        }
+
+        if (this.snapshots == null) {
+            this.snapshots = new Snapshot[Snapshot.RING];
+            for (int i = 0; i < this.snapshots.length; i++) {
+                this.snapshots[i] = new Snapshot();
+            }
+        }
+
+        Snapshot next = this.snapshots[this.nextSnapshot];
+        next.update(this);
+
+        Snapshot latest = this.snapshot;
+        if (latest != null && next.looksLike(latest)) {
+            return;
+        }
+
+        this.snapshot = next;
+        this.nextSnapshot = (this.nextSnapshot + 1) % this.snapshots.length;
+    }
+
+    /**
+     * EFFECTS: Get the timestamp of the last input applied from the input
+     * queue, as given to {@link InputQueue#offer(Input, long)}.
+     *
+     * @return The timestamp in nanoseconds; or 0, if no input has been applied
+     */
+    public long getLastInputTime() {
+        return this.lastInputTime;
+    }
+
+    /**
+     * MODIFIES: this, this.playfield
+     * <p>
+     * EFFECTS: Perform an input drained from the input queue, unless the game
+     * is paused or over.
+     */
+    void apply(Input input, long timestamp) {
+        this.lastInputTime = timestamp;
+
+        if (!this.paused) {
+            this.perform(input);
+        }
+    }
+
+    /**
+     * REQUIRES: move is MOVE_LEFT or MOVE_RIGHT
+     * <p>
+     * MODIFIES: this, this.playfield
+     * <p>
+     * EFFECTS: Perform an automatically repeated move, but only if the game is
+     * not paused and the move would succeed, so that a move held against a
+     * wall is not performed, nor recorded, every frame.
+     *
+     * @return True if the move was performed; otherwise, false
+     */
+    boolean shift(Input move) {
+        Tetromino.Direction direction = move == Input.MOVE_LEFT
+                ? Tetromino.Direction.LEFT : Tetromino.Direction.RIGHT;
+
+        if (this.paused || !this.playfield.canMove(direction)) {
+            return false;
+        }
+
+        this.perform(move);
+        return true;
+    }
+
+    /**
+     * MODIFIES: this, this.playfield
+     * <p>
+     * EFFECTS: Perform the given input on the game.
+     *
+     * @param input The input to perform
+     */
+    public void perform(Input input) {
+        switch (input) {
+            case MOVE_LEFT:
+                this.moveLeft();
+                break;
+            case MOVE_RIGHT:
+                this.moveRight();
+                break;
+            case ROTATE_LEFT:
+                this.rotateLeft();
+                break;
+            case ROTATE_RIGHT:
+                this.rotateRight();
+                break;
+            case SOFT_DROP:
+                this.softDrop();
+                break;
+            case HARD_DROP:
+                this.hardDrop();
+                break;
+            case HOLD:
+                this.hold();
+                break;
+            default:
+                throw new AssertionError(input);
+        }
+    }
+
+    private void notify(Input input) {
+        if (this.listener != null) {
+            this.listener.onInput(input, this.frame);
+        }
+    }
+
+    /**
+     * EFFECTS: Get the gravity of the current level, which stays at that of
+     * the last level of the gravity table once it is passed.
+     */
     public double getGravity() {
-        return Game.GRAVITY.get(this.score.getLevel() - 1);
+        return Game.GRAVITY[Math.min(this.score.getLevel(), Game.GRAVITY.length) - 1];
+    }
+
+    /**
+     * REQUIRES: 0 <= alpha <= 1
+     * <p>
+     * EFFECTS: Get how far the current tetromino has fallen towards the next
+     * row, given the fraction of a frame elapsed since the last frame, so that
+     * an interface rendering between frames can draw the tetromino falling
+     * smoothly rather than a row at a time.
+     *
+     * @param alpha The fraction of a frame elapsed since the last frame
+     * @return The fraction of a cell fallen, from 0 to 1; or 0, if the
+     * tetromino cannot fall or the game is paused
+     */
+    public double getFall(double alpha) {
+        if (this.paused || !this.playfield.canMove(Tetromino.Direction.DOWN)) {
+            return 0;
+        }
+
+        return Game.fall(this.getFallOffset(), this.getFallRate(), alpha);
+    }
+
+    /**
+     * EFFECTS: Get how far the current tetromino has fallen towards the next
+     * row at the last frame, in cells, which may be negative right after it
+     * moved down a row.
+     */
+    double getFallOffset() {
+        return (double) (this.moveCells - this.getFrameGravity()) / Game.CELL;
+    }
+
+    /**
+     * EFFECTS: Get how far the current tetromino falls in 1 frame, in cells.
+     */
+    double getFallRate() {
+        return (double) this.getFrameGravity() / Game.CELL;
+    }
+
+    private long getFrameGravity() {
+        return Game.FIXED_GRAVITY[Math.min(this.score.getLevel(), Game.FIXED_GRAVITY.length) - 1]
+                * 60 / this.framerate;
+    }
+
+    /**
+     * EFFECTS: Get the fraction of a cell fallen, from 0 to 1, given the fall
+     * offset and rate of a game and the fraction of a frame elapsed.
+     */
+    static double fall(double offset, double rate, double alpha) {
+        return Math.max(0, Math.min(offset + alpha * rate, 1));
     }
 
     public Playfield getPlayfield() {
@@ -160,6 +559,7 @@ public class Game implements Runnable {
      */
     public void toggleGame() {
         this.paused = !this.paused;
+        this.publish();
     }
 
     /**
@@ -214,6 +614,24 @@ public class Game implements Runnable {
         return preview;
     }
 
+    /**
+     * REQUIRES: 0 <= index < 5
+     * <p>
+     * EFFECTS: Get the tetromino at the given index of the preview, as in
+     * {@link #getPreview()}, without building the whole preview.
+     *
+     * @param index The index in the preview
+     * @return The tetromino at the index
+     */
+    public Tetromino getPreview(int index) {
+        Tetromino current = this.playfield.getCurrent();
+        if (current != null && current.isHidden()) {
+            return index == 0 ? current : this.bag.peek(index - 1);
+        }
+
+        return this.bag.peek(index);
+    }
+
     /**
      * REQUIRES: 0 <= x <= 9 and 0 <= y <= 21
      * <p>
@@ -241,6 +659,8 @@ public class Game implements Runnable {
      * therefore, not held; otherwise, true
      */
     public boolean hold() {
+        this.notify(Input.HOLD);
+
         if (!this.holdingAllowed || this.playfield.getCurrent() == null || this.playfield.getCurrent().isHidden()) {
             return false;
         }
@@ -253,6 +673,8 @@ public class Game implements Runnable {
         this.hold.reset();
         this.holdingAllowed = false;
 
+        GameEvents.hold(this.hold, this.playfield.getCurrent());
+
         this.score.resetDropBonus();
 
         return true;
@@ -265,7 +687,8 @@ public class Game implements Runnable {
      * next frame.
      */
     public void softDrop() {
-        this.moveCells = 1;
+        this.notify(Input.SOFT_DROP);
+        this.moveCells = Game.CELL;
         this.score.dropBonus(1);
     }
 
@@ -276,9 +699,8 @@ public class Game implements Runnable {
      * playfield and lock it in place.
      */
     public void hardDrop() {
-        while (this.playfield.move(Tetromino.Direction.DOWN)) {
-            this.score.dropBonus(2);
-        }
+        this.notify(Input.HARD_DROP);
+        this.score.dropBonus(2 * this.playfield.drop());
         this.lockdown();
     }
 
@@ -288,6 +710,7 @@ public class Game implements Runnable {
      * EFFECTS: Move the current tetromino to the left by 1 cell, if possible.
      */
     public void moveLeft() {
+        this.notify(Input.MOVE_LEFT);
         if (this.playfield.move(Tetromino.Direction.LEFT)) {
             this.onMoveSuccessful();
         }
@@ -299,18 +722,21 @@ public class Game implements Runnable {
      * EFFECTS: Move the current tetromino to the right by 1 cell, if possible.
      */
     public void moveRight() {
+        this.notify(Input.MOVE_RIGHT);
         if (this.playfield.move(Tetromino.Direction.RIGHT)) {
             this.onMoveSuccessful();
         }
     }
 
     public void rotateLeft() {
+        this.notify(Input.ROTATE_LEFT);
         if (this.playfield.rotate(-1)) {
             this.onMoveSuccessful();
         }
     }
 
     public void rotateRight() {
+        this.notify(Input.ROTATE_RIGHT);
         if (this.playfield.rotate(1)) {
             this.onMoveSuccessful();
         }
@@ -326,38 +752,51 @@ public class Game implements Runnable {
     }
 
     private void lockdown() {
+        Tetromino locked = this.playfield.getCurrent();
+
         this.score.tspinCheck();
         this.score.clear(this.playfield.lockdown());
+        this.bag.recycle(locked);
 
         if (!this.playfield.spawn(this.bag.pop())) {
             this.paused = true;
             this.over = true;
-            if (this.score.getPoints() > HighScore.instance().get()) {
-                HighScore.instance().set(this.score.getPoints());
-            }
         } else {
             this.holdingAllowed = true;
-            this.moveCells = 1 / (21600 * this.getGravity() * Math.pow(this.framerate, 3));
+            this.moveCells = 0;
         }
 
         this.score.settle();
+
+        if (this.over) {
+            GameEvents.gameOver(this);
+            // no frame follows the end of the game
+            this.publish();
+        }
     }
 
     @Override
     public void run() {
-        if (paused) {
+        if (this.inputs != null) {
+            this.inputs.drain(this);
+        }
+
+        if (this.paused) {
+            // a paused game ignores its inputs, so nothing drawn has changed
             return;
         }
 
-        if (moveCells >= 1) {
-            this.moveCells--;
+        this.frame++;
+
+        if (this.moveCells >= Game.CELL) {
+            this.moveCells -= Game.CELL;
             if (this.playfield.move(Tetromino.Direction.DOWN)) {
                 this.lockFrameCounterResetCounter = 0;
                 this.lockFrameCounter = 0;
             }
         }
 
-        this.moveCells += this.getGravity() * 60 / this.framerate;
+        this.moveCells += this.getFrameGravity();
 
         if (this.playfield.isReadyToLock()) {
             this.lockFrameCounter++;
@@ -367,5 +806,7 @@ public class Game implements Runnable {
                 this.lockdown();
             }
         }
+
+        this.publish();
     }
 }
@@ -0,0 +1,213 @@
+package com.jerryzs.jetris.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder events of the lifecycle of a game. The events are
+ * disabled by default, and have to be enabled by name in the settings of a
+ * recording, e.g. {@code jdk.jfr} configuration files.
+ * <p>
+ * Each event is emitted through a method of this class which checks first
+ * whether the event is enabled, so that a game neither allocates the event
+ * nor gathers its fields while no recording wants it.
+ */
+final class GameEvents {
+    private static final String[] TSPINS = {"None", "Mini", "Full"};
+
+    private static final EventType SPAWN = EventType.getEventType(Spawn.class);
+    private static final EventType LOCKDOWN = EventType.getEventType(Lockdown.class);
+    private static final EventType LINE_CLEAR = EventType.getEventType(LineClear.class);
+    private static final EventType HOLD = EventType.getEventType(Hold.class);
+    private static final EventType GAME_OVER = EventType.getEventType(GameOver.class);
+
+    private GameEvents() {
+    }
+
+    /**
+     * EFFECTS: Emit a spawn event of the given tetromino, if enabled.
+     */
+    static void spawn(Tetromino tetromino) {
+        if (!GameEvents.SPAWN.isEnabled()) {
+            return;
+        }
+
+        Spawn event = new Spawn();
+        event.piece = tetromino.getType().name();
+        event.x = tetromino.getX();
+        event.y = tetromino.getY();
+        event.commit();
+    }
+
+    /**
+     * EFFECTS: Emit a lockdown event of the given tetromino, if enabled.
+     */
+    static void lockdown(Tetromino tetromino, int lines) {
+        if (!GameEvents.LOCKDOWN.isEnabled()) {
+            return;
+        }
+
+        Lockdown event = new Lockdown();
+        event.piece = tetromino.getType().name();
+        event.orientation = tetromino.getOrientation().name();
+        event.x = tetromino.getX();
+        event.y = tetromino.getY();
+        event.lines = lines;
+        event.commit();
+    }
+
+    /**
+     * EFFECTS: Emit a line clear event, if enabled.
+     */
+    static void lineClear(int lines, int tspin, int combo, int backToBack, int points) {
+        if (!GameEvents.LINE_CLEAR.isEnabled()) {
+            return;
+        }
+
+        LineClear event = new LineClear();
+        event.lines = lines;
+        event.tspin = GameEvents.TSPINS[tspin];
+        event.combo = combo;
+        event.backToBack = backToBack;
+        event.points = points;
+        event.commit();
+    }
+
+    /**
+     * EFFECTS: Emit a hold event, if enabled.
+     */
+    static void hold(Tetromino held, Tetromino current) {
+        if (!GameEvents.HOLD.isEnabled()) {
+            return;
+        }
+
+        Hold event = new Hold();
+        event.held = held.getType().name();
+        event.current = current.getType().name();
+        event.commit();
+    }
+
+    /**
+     * EFFECTS: Emit a game over event of the given game, if enabled.
+     */
+    static void gameOver(Game game) {
+        if (!GameEvents.GAME_OVER.isEnabled()) {
+            return;
+        }
+
+        GameOver event = new GameOver();
+        event.frame = game.getFrame();
+        event.seed = game.getSeed();
+        event.points = game.getScore().getPoints();
+        event.lines = game.getScore().getLines();
+        event.level = game.getScore().getLevel();
+        event.commit();
+    }
+
+    @Name("com.jerryzs.jetris.Spawn")
+    @Label("Spawn")
+    @Category({"Jetris", "Game"})
+    @Description("A tetromino spawned at the top of the playfield")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Spawn extends Event {
+        @Label("Piece")
+        String piece;
+
+        @Label("X")
+        int x;
+
+        @Label("Y")
+        int y;
+    }
+
+    @Name("com.jerryzs.jetris.Lockdown")
+    @Label("Lockdown")
+    @Category({"Jetris", "Game"})
+    @Description("A tetromino locked in place on the playfield")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Lockdown extends Event {
+        @Label("Piece")
+        String piece;
+
+        @Label("Orientation")
+        String orientation;
+
+        @Label("X")
+        int x;
+
+        @Label("Y")
+        int y;
+
+        @Label("Lines Cleared")
+        int lines;
+    }
+
+    @Name("com.jerryzs.jetris.LineClear")
+    @Label("Line Clear")
+    @Category({"Jetris", "Game"})
+    @Description("Full rows cleared by a lockdown")
+    @Enabled(false)
+    @StackTrace(false)
+    static class LineClear extends Event {
+        @Label("Lines")
+        int lines;
+
+        @Label("T-Spin")
+        String tspin;
+
+        @Label("Combo")
+        int combo;
+
+        @Label("Back-to-Back")
+        int backToBack;
+
+        @Label("Points")
+        @Description("The points awarded for the clear, before any perfect clear or combo bonus")
+        int points;
+    }
+
+    @Name("com.jerryzs.jetris.Hold")
+    @Label("Hold")
+    @Category({"Jetris", "Game"})
+    @Description("The current tetromino put on hold")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Hold extends Event {
+        @Label("Held Piece")
+        String held;
+
+        @Label("Current Piece")
+        String current;
+    }
+
+    @Name("com.jerryzs.jetris.GameOver")
+    @Label("Game Over")
+    @Category({"Jetris", "Game"})
+    @Description("A game ended by a tetromino unable to spawn")
+    @Enabled(false)
+    @StackTrace(false)
+    static class GameOver extends Event {
+        @Label("Frame")
+        long frame;
+
+        @Label("Seed")
+        long seed;
+
+        @Label("Points")
+        int points;
+
+        @Label("Lines")
+        int lines;
+
+        @Label("Level")
+        int level;
+    }
+}
@@ -0,0 +1,17 @@
+package com.jerryzs.jetris.model;
+
+/**
+ * The inputs a player can perform on a game of Jetris. The ordinal of every
+ * input is part of the replay format and must not change.
+ */
+public enum Input {
+    MOVE_LEFT,
+    MOVE_RIGHT,
+    ROTATE_LEFT,
+    ROTATE_RIGHT,
+    SOFT_DROP,
+    HARD_DROP,
+    HOLD;
+
+    public static final Input[] VALUES = Input.values();
+}
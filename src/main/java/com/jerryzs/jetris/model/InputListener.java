@@ -0,0 +1,26 @@
+package com.jerryzs.jetris.model;
+
+/**
+ * A listener notified of everything that determines how a game evolves from
+ * its initial state, so that the game can be reproduced.
+ */
+public interface InputListener {
+    /**
+     * EFFECTS: Handle an input performed on the game, before it takes effect.
+     *
+     * @param input The input performed
+     * @param frame The number of frames the game has run when the input is
+     *              performed
+     */
+    void onInput(Input input, long frame);
+
+    /**
+     * EFFECTS: Handle a change of the framerate used for the timings of the
+     * game.
+     *
+     * @param framerate The new framerate
+     * @param frame     The number of frames the game has run when the
+     *                  framerate is changed
+     */
+    void onFramerate(int framerate, long frame);
+}
@@ -0,0 +1,428 @@
+package com.jerryzs.jetris.model;
+
+/**
+ * A bounded, lock-free queue of inputs for a game, timestamped as they are
+ * queued. Exactly 1 thread may queue inputs, such as the thread receiving the
+ * key events of a user interface, while exactly 1 other thread, or the same
+ * thread, drains them into the game at the start of each of its frames. The
+ * game is therefore only ever changed by the thread running it, without any
+ * lock in its frames.
+ * <p>
+ * The inputs are kept in a ring buffer of primitive arrays, and the 2 threads
+ * only share the head and tail counters of the ring, so that neither queueing
+ * nor draining an input allocates.
+ * <p>
+ * Besides single inputs, the queue takes the presses and releases of the keys
+ * moving the tetromino sideways, for interfaces that can tell when a key is
+ * released. A held move is shifted once when pressed, then again after the
+ * delayed auto-shift (DAS) and every auto-repeat rate (ARR) after that, as
+ * timed by the timestamps of the presses and of the drains, not by frames.
+ * An ARR of 0 shifts the tetromino as far as it goes at once. Any number of
+ * shifts may be due in a single drain.
+ */
+public class InputQueue {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * The default delayed auto-shift, 10 frames at 60 frames per second.
+     */
+    public static final long DEFAULT_DELAY = 166_666_667L;
+
+    /**
+     * The default auto-repeat rate, 2 frames at 60 frames per second.
+     */
+    public static final long DEFAULT_RATE = 33_333_333L;
+
+    /**
+     * The longest time between the release and the press of a key that is
+     * considered to be a key repeat of the platform, rather than the player
+     * pressing the key again. Some platforms, such as X11, repeat a held key
+     * as a release immediately followed by a press.
+     */
+    private static final long REPEAT_GLITCH = 2_000_000L;
+
+    /**
+     * The most shifts that can take a tetromino from one side of the
+     * playfield to the other.
+     */
+    private static final int MAX_SHIFTS = 9;
+
+    private static final int PRESS = 0x40;
+    private static final int RELEASE = 0x80;
+    private static final int INPUT = 0x3F;
+
+    /**
+     * The code of {@link #releaseAll(long)}, a press and a release at once.
+     */
+    private static final int RELEASE_ALL = InputQueue.PRESS | InputQueue.RELEASE;
+
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+    private static final int NONE = -1;
+
+    private final byte[] inputs;
+    private final long[] timestamps;
+    private final int mask;
+
+    /**
+     * The number of inputs drained so far, written only by the consumer.
+     */
+    private volatile long head;
+
+    /**
+     * The number of inputs queued so far, written only by the producer.
+     */
+    private volatile long tail;
+
+    /**
+     * The head as last read by the producer, so that the producer only reads
+     * the volatile head when the ring looks full.
+     */
+    private long cachedHead;
+
+    private volatile long delay;
+    private volatile long rate;
+
+    // the state of the held moves, left and right, used only by the consumer
+    private final boolean[] held;
+    private final boolean[] resumable;
+    private final long[] pressed;
+    private final long[] released;
+    private final long[] repeats;
+    private int active;
+
+    public InputQueue() {
+        this(InputQueue.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * REQUIRES: capacity > 0 and capacity is a power of 2
+     * <p>
+     * EFFECTS: Create an empty queue of at most the given number of inputs,
+     * with the default auto-shift.
+     *
+     * @param capacity The capacity of the queue
+     */
+    public InputQueue(int capacity) {
+        this.inputs = new byte[capacity];
+        this.timestamps = new long[capacity];
+        this.mask = capacity - 1;
+
+        this.delay = InputQueue.DEFAULT_DELAY;
+        this.rate = InputQueue.DEFAULT_RATE;
+
+        this.held = new boolean[2];
+        this.resumable = new boolean[2];
+        this.pressed = new long[2];
+        this.released = new long[2];
+        this.repeats = new long[2];
+        this.active = InputQueue.NONE;
+    }
+
+    /**
+     * REQUIRES: delay >= 0 and rate >= 0
+     * <p>
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Set the delayed auto-shift and the auto-repeat rate of held
+     * moves, which take effect from the next drain.
+     *
+     * @param delay The time a move is held before it repeats, in nanoseconds
+     * @param rate  The time between repeats, in nanoseconds; or 0, to shift
+     *              as far as possible at once
+     */
+    public void setAutoShift(long delay, long rate) {
+        this.delay = delay;
+        this.rate = rate;
+    }
+
+    public long getDelay() {
+        return this.delay;
+    }
+
+    public long getRate() {
+        return this.rate;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Queue the given input to be performed once, timestamped with
+     * the current value of {@link System#nanoTime()}. Only the producer thread
+     * may call this.
+     *
+     * @param input The input to queue
+     * @return False if the queue is full and the input is dropped; otherwise,
+     * true
+     */
+    public boolean offer(Input input) {
+        return this.offer(input, System.nanoTime());
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Queue the given input to be performed once, with the given
+     * timestamp. Only the producer thread may call this.
+     *
+     * @param input     The input to queue
+     * @param timestamp The time the input was received, in nanoseconds
+     * @return False if the queue is full and the input is dropped; otherwise,
+     * true
+     */
+    public boolean offer(Input input, long timestamp) {
+        return this.put(input.ordinal(), timestamp);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Queue the press of the key of the given input. A move is then
+     * held until its key is released, and repeated by the auto-shift; any
+     * other input is performed once. Pressing a key that is already held has
+     * no effect. Only the producer thread may call this.
+     *
+     * @param input     The input whose key is pressed
+     * @param timestamp The time the key was pressed, in nanoseconds
+     * @return False if the queue is full and the press is dropped; otherwise,
+     * true
+     */
+    public boolean press(Input input, long timestamp) {
+        return this.put(input.ordinal() | InputQueue.PRESS, timestamp);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Queue the release of the key of the given input. Only the
+     * producer thread may call this.
+     *
+     * @param input     The input whose key is released
+     * @param timestamp The time the key was released, in nanoseconds
+     * @return False if the queue is full and the release is dropped;
+     * otherwise, true
+     */
+    public boolean release(Input input, long timestamp) {
+        return this.put(input.ordinal() | InputQueue.RELEASE, timestamp);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Queue the release of every key held, for when the releases of
+     * the keys can no longer be received, such as when the window of the
+     * interface loses focus. Only the producer thread may call this.
+     *
+     * @param timestamp The time the keys were released, in nanoseconds
+     * @return False if the queue is full and the release is dropped;
+     * otherwise, true
+     */
+    public boolean releaseAll(long timestamp) {
+        return this.put(InputQueue.RELEASE_ALL, timestamp);
+    }
+
+    private boolean put(int code, long timestamp) {
+        long tail = this.tail;
+
+        if (tail - this.cachedHead > this.mask) {
+            this.cachedHead = this.head;
+
+            if (tail - this.cachedHead > this.mask) {
+                return false;
+            }
+        }
+
+        int i = (int) tail & this.mask;
+        this.inputs[i] = (byte) code;
+        this.timestamps[i] = timestamp;
+
+        // publish the input to the consumer
+        this.tail = tail + 1;
+        return true;
+    }
+
+    /**
+     * MODIFIES: this, game
+     * <p>
+     * EFFECTS: Apply every input queued so far to the given game, in the order
+     * they were queued, then shift the tetromino by the repeats of the held
+     * move due by now. Only the consumer thread may call this.
+     *
+     * @param game The game to apply the inputs to
+     * @return The number of inputs drained
+     */
+    int drain(Game game) {
+        return this.drain(game, System.nanoTime());
+    }
+
+    /**
+     * MODIFIES: this, game
+     * <p>
+     * EFFECTS: Same as {@link #drain(Game)}, with the given current time.
+     */
+    int drain(Game game, long now) {
+        long head = this.head;
+        long tail = this.tail;
+
+        for (long h = head; h < tail; h++) {
+            int i = (int) h & this.mask;
+            int code = this.inputs[i];
+
+            if ((code & InputQueue.RELEASE_ALL) == InputQueue.RELEASE_ALL) {
+                this.reset();
+                continue;
+            }
+
+            Input input = Input.VALUES[code & InputQueue.INPUT];
+            int side = input == Input.MOVE_LEFT ? InputQueue.LEFT
+                    : input == Input.MOVE_RIGHT ? InputQueue.RIGHT : InputQueue.NONE;
+
+            if ((code & InputQueue.RELEASE) != 0) {
+                if (side != InputQueue.NONE) {
+                    this.release(side, this.timestamps[i]);
+                }
+            } else if ((code & InputQueue.PRESS) != 0 && side != InputQueue.NONE) {
+                this.press(game, input, side, this.timestamps[i]);
+            } else {
+                game.apply(input, this.timestamps[i]);
+            }
+        }
+
+        // release the slots to the producer
+        this.head = tail;
+
+        this.repeat(game, now);
+        return (int) (tail - head);
+    }
+
+    /**
+     * MODIFIES: this, game
+     * <p>
+     * EFFECTS: Hold the move on the given side, shifting the tetromino once,
+     * unless the press only resumes a hold interrupted by a key repeat of the
+     * platform.
+     */
+    private void press(Game game, Input input, int side, long timestamp) {
+        if (this.held[side]) {
+            return;
+        }
+
+        this.held[side] = true;
+
+        if (this.resumable[side] && timestamp - this.released[side] <= InputQueue.REPEAT_GLITCH) {
+            this.resumable[side] = false;
+            this.active = side;
+            return;
+        }
+
+        this.resumable[side] = false;
+        this.pressed[side] = timestamp;
+        this.repeats[side] = 0;
+        this.active = side;
+
+        game.apply(input, timestamp);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Stop holding the move on the given side. If the move on the
+     * other side is still held, it takes over, charging its auto-shift anew.
+     */
+    private void release(int side, long timestamp) {
+        if (!this.held[side]) {
+            return;
+        }
+
+        this.held[side] = false;
+        this.resumable[side] = true;
+        this.released[side] = timestamp;
+
+        if (this.active != side) {
+            return;
+        }
+
+        int other = 1 - side;
+        if (this.held[other]) {
+            this.active = other;
+            this.pressed[other] = timestamp;
+            this.repeats[other] = 0;
+        } else {
+            this.active = InputQueue.NONE;
+        }
+    }
+
+    /**
+     * MODIFIES: this, game
+     * <p>
+     * EFFECTS: Shift the tetromino by the repeats of the held move due by the
+     * given time. Repeats that cannot be shifted, because the tetromino is
+     * blocked or the game is paused, are skipped rather than saved up.
+     */
+    private void repeat(Game game, long now) {
+        if (this.active == InputQueue.NONE) {
+            return;
+        }
+
+        int side = this.active;
+        long rate = this.rate;
+        long charged = now - this.pressed[side] - this.delay;
+
+        if (charged < 0) {
+            return;
+        }
+
+        long due = rate == 0 ? Long.MAX_VALUE : charged / rate + 1;
+        Input input = side == InputQueue.LEFT ? Input.MOVE_LEFT : Input.MOVE_RIGHT;
+
+        for (int i = 0; i < InputQueue.MAX_SHIFTS && this.repeats[side] < due; i++) {
+            if (!game.shift(input)) {
+                break;
+            }
+
+            this.repeats[side]++;
+        }
+
+        if (rate != 0) {
+            this.repeats[side] = due;
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Forget the held moves, as if their keys were released, so that
+     * none of them keeps repeating, e.g. into the next game after a release
+     * that was never queued. A key still held has to be pressed again. Only
+     * the consumer thread may call this.
+     */
+    public void reset() {
+        for (int side = InputQueue.LEFT; side <= InputQueue.RIGHT; side++) {
+            this.held[side] = false;
+            this.resumable[side] = false;
+        }
+
+        this.active = InputQueue.NONE;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Drop every input queued so far without applying it, such as the
+     * inputs left over from a game that is over. Only the consumer thread may
+     * call this.
+     */
+    public void clear() {
+        // release the slots to the producer
+        this.head = this.tail;
+    }
+
+    /**
+     * EFFECTS: Get whether no input is waiting to be drained.
+     *
+     * @return True if the queue is empty; otherwise, false
+     */
+    public boolean isEmpty() {
+        return this.head == this.tail;
+    }
+}
@@ -4,27 +4,60 @@ import org.json.JSONArray;
 import org.json.JSONException;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Set;
-
+import java.nio.ByteBuffer;
+
+/**
+ * The matrix of a Jetris game. Each row of the matrix is kept as a 10-bit
+ * occupancy mask, where bit {@code x} is set if column {@code x} of the row is
+ * occupied, so that collision tests, full-row detection and row shifting are
+ * performed on whole rows at a time. A parallel color plane keeps the id of the
+ * tetromino occupying each cell, packed 3 bits per cell in the same layout as
+ * {@link #toJsonArray(Playfield)}, and is only consulted for rendering.
+ * <p>
+ * The surface height of every column is maintained as blocks are locked down
+ * and rows are cleared, so that the landing position of the dropping
+ * tetromino can usually be found without stepping it down cell by cell.
+ */
 public class Playfield {
-    private final int[][] matrix;
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 22;
+    private static final int VISIBLE_HEIGHT = 20;
+    private static final int FULL_ROW = (1 << Playfield.WIDTH) - 1;
+
+    /**
+     * The largest number of bytes written by
+     * {@link #write(Playfield, ByteBuffer)}, i.e., a full playfield of 4 bits
+     * per cell and the head byte.
+     */
+    public static final int MAX_BINARY_LENGTH = 1 + Playfield.HEIGHT * Playfield.WIDTH * 4 / 8;
+
+    private final int[] rows;
+    private final int[] colors;
+    private final int[] heights;
 
     private Tetromino current;
-    private Tetromino phantom;
+    private int ghost;
 
     private boolean readyToLock;
 
     public Playfield() {
-        this(new int[22][10]);
+        this(new int[Playfield.HEIGHT]);
     }
 
-    private Playfield(int[][] matrix) {
-        if (matrix == null || matrix.length != 22 || Arrays.stream(matrix).anyMatch((row) -> row.length != 10)) {
-            throw new IllegalArgumentException("Matrix must not-null and rectangular.");
+    private Playfield(int[] colors) {
+        if (colors == null || colors.length != Playfield.HEIGHT) {
+            throw new IllegalArgumentException("Matrix must be not-null and have 22 rows.");
         }
 
-        this.matrix = matrix;
+        this.colors = colors;
+        this.rows = new int[Playfield.HEIGHT];
+        this.heights = new int[Playfield.WIDTH];
+
+        for (int i = 0; i < colors.length; i++) {
+            this.rows[i] = Playfield.occupancy(colors[i]);
+        }
+
+        this.measure();
     }
 
     /**
@@ -38,12 +71,8 @@ public class Playfield {
     public static JSONArray toJsonArray(Playfield playfield) {
         JSONArray array = new JSONArray();
 
-        for (int[] row : playfield.getMatrix()) {
-            int bin = 0;
-            for (int i = 0; i < row.length; i++) {
-                bin += row[i] == 0 ? 0 : row[i] << (i * 3);
-            }
-            array.put(bin);
+        for (int row : playfield.colors) {
+            array.put(row);
         }
 
         return array;
@@ -63,53 +92,278 @@ public class Playfield {
      *                     invalid
      */
     public static Playfield fromJsonArray(JSONArray array) throws IOException {
-        int[][] matrix = new int[22][10];
+        int[] colors = new int[Playfield.HEIGHT];
 
         try {
             for (int i = 0; i < array.length(); i++) {
-                int row = array.getInt(i);
-
-                for (int j = 0; j < matrix[i].length; j++) {
-                    matrix[i][j] = row % 8;
-                    row /= 8;
-                }
+                colors[i] = array.getInt(i) & (1 << 3 * Playfield.WIDTH) - 1;
             }
         } catch (JSONException | ArrayIndexOutOfBoundsException e) {
             throw new IOException();
         }
 
-        return new Playfield(matrix);
+        return new Playfield(colors);
+    }
+
+    /**
+     * REQUIRES: buffer has at least {@link #MAX_BINARY_LENGTH} bytes remaining
+     * <p>
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Write the locked blocks of the playfield in binary. The first
+     * byte holds the number of rows up to the highest non-empty row, with the
+     * highest bit set if the current tetromino is ready to lock. It is
+     * followed by a stream of bits, least significant first, with the 10-bit
+     * occupancy mask of every row followed by the 3-bit id of every occupied
+     * cell in the row.
+     *
+     * @param playfield The playfield to write
+     * @param buffer    The buffer to write to
+     */
+    public static void write(Playfield playfield, ByteBuffer buffer) {
+        int height = Playfield.HEIGHT;
+        while (height > 0 && playfield.rows[height - 1] == 0) {
+            height--;
+        }
+
+        buffer.put((byte) (height | (playfield.readyToLock ? 0x80 : 0)));
+
+        long bits = 0;
+        int count = 0;
+
+        for (int y = 0; y < height; y++) {
+            bits |= (long) playfield.rows[y] << count;
+            count += Playfield.WIDTH;
+
+            for (int x = 0; x < Playfield.WIDTH; x++) {
+                if ((playfield.rows[y] & 1 << x) != 0) {
+                    bits |= (long) (playfield.colors[y] >>> 3 * x & 7) << count;
+                    count += 3;
+                }
+
+                while (count >= 8) {
+                    buffer.put((byte) bits);
+                    bits >>>= 8;
+                    count -= 8;
+                }
+            }
+        }
+
+        if (count > 0) {
+            buffer.put((byte) bits);
+        }
+    }
+
+    /**
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Recover the locked blocks of a playfield written by
+     * {@link #write(Playfield, ByteBuffer)}.
+     *
+     * @param buffer The buffer to read from
+     * @return The playfield object, without a current tetromino
+     * @throws IOException If the content of the buffer is truncated or invalid
+     */
+    public static Playfield read(ByteBuffer buffer) throws IOException {
+        int[] colors = new int[Playfield.HEIGHT];
+
+        int head = buffer.get();
+        int height = head & 0x7F;
+        if (height > Playfield.HEIGHT) {
+            throw new IOException("Invalid playfield height " + height);
+        }
+
+        long bits = 0;
+        int count = 0;
+
+        for (int y = 0; y < height; y++) {
+            while (count < Playfield.WIDTH) {
+                bits |= (buffer.get() & 0xFFL) << count;
+                count += 8;
+            }
+
+            int row = (int) bits & Playfield.FULL_ROW;
+            bits >>>= Playfield.WIDTH;
+            count -= Playfield.WIDTH;
+
+            for (int x = 0; x < Playfield.WIDTH; x++) {
+                if ((row & 1 << x) == 0) {
+                    continue;
+                }
+
+                while (count < 3) {
+                    bits |= (buffer.get() & 0xFFL) << count;
+                    count += 8;
+                }
+
+                int id = (int) bits & 7;
+                bits >>>= 3;
+                count -= 3;
+
+                if (id == 0) {
+                    throw new IOException("Occupied cell without a block");
+                }
+
+                colors[y] |= id << 3 * x;
+            }
+        }
+
+        Playfield playfield = new Playfield(colors);
+        playfield.readyToLock = (head & 0x80) != 0;
+
+        return playfield;
+    }
+
+    /**
+     * EFFECTS: Derive the occupancy mask of a row from its packed colors.
+     *
+     * @param colors The colors of the row, packed 3 bits per cell
+     * @return The 10-bit occupancy mask of the row
+     */
+    private static int occupancy(int colors) {
+        int mask = 0;
+
+        for (int x = 0; x < Playfield.WIDTH; x++) {
+            if ((colors >>> 3 * x & 7) != 0) {
+                mask |= 1 << x;
+            }
+        }
+
+        return mask;
     }
 
     protected int get(int x, int y) {
-        if (this.matrix[y][x] != 0) {
-            return this.matrix[y][x];
+        int color = this.colors[y] >>> 3 * x & 7;
+
+        if (color != 0) {
+            return color;
         }
 
-        if (this.current != null && this.current.occupies(x, y)) {
+        if (this.current == null) {
+            return 0;
+        }
+
+        if (this.current.occupies(x, y)) {
             return this.current.getType().ordinal() + 1;
         }
 
-        if (this.current != null && this.phantom != null && !this.current.isHidden() && this.phantom.occupies(x, y)) {
+        Tetromino.Type type = this.current.getType();
+        Tetromino.Direction orientation = this.current.getOrientation();
+        int dy = y - this.ghost;
+
+        if (!this.current.isHidden() && dy >= type.getBottom(orientation) && dy <= type.getTop(orientation)
+                && (type.getRowMask(orientation, this.current.getX(), dy) >>> x & 1) != 0) {
             return -1;
         }
 
         return 0;
     }
 
+    /**
+     * REQUIRES: this.getCurrent() != null
+     * <p>
+     * EFFECTS: Get the y-coordinate that the center of the current tetromino
+     * would have if it were dropped to the bottom, i.e., the position of its
+     * ghost piece.
+     *
+     * @return The y-coordinate of the center of the ghost piece
+     */
+    public int getGhostY() {
+        return this.ghost;
+    }
+
+    /**
+     * REQUIRES: 0 <= y < 22
+     * <p>
+     * EFFECTS: Get the locked blocks of the given row, packed with the id of
+     * the block at column x in bits 3x to 3x + 2, as in the save file.
+     *
+     * @param y The y-coordinate of the row
+     * @return The packed ids of the blocks in the row
+     */
+    public int getRow(int y) {
+        return this.colors[y];
+    }
+
+    /**
+     * REQUIRES: colors, active and ghost each have at least 20 elements
+     * <p>
+     * MODIFIES: colors, active, ghost
+     * <p>
+     * EFFECTS: Copy the visible rows of the playfield into the given arrays:
+     * the packed ids of the locked blocks and of the current tetromino, as in
+     * {@link #getRow(int)}, and the occupancy masks of the current tetromino
+     * and of its ghost piece, as drawn by {@link #get(int, int)}. The ghost
+     * piece is not drawn while the tetromino is hidden.
+     */
+    void copyVisibleRows(int[] colors, int[] active, int[] ghost) {
+        Tetromino.Type type = this.current == null ? null : this.current.getType();
+
+        for (int y = 0; y < Playfield.VISIBLE_HEIGHT; y++) {
+            int row = this.colors[y];
+            int current = 0;
+            int cast = 0;
+
+            if (type != null) {
+                current = this.current.getRowMask(y) & ~this.rows[y];
+
+                Tetromino.Direction orientation = this.current.getOrientation();
+                int dy = y - this.ghost;
+                if (!this.current.isHidden() && dy >= type.getBottom(orientation) && dy <= type.getTop(orientation)) {
+                    cast = type.getRowMask(orientation, this.current.getX(), dy) & ~current & ~this.rows[y];
+                }
+
+                for (int x = 0; x < Playfield.WIDTH; x++) {
+                    if ((current >>> x & 1) != 0) {
+                        row |= (type.ordinal() + 1) << 3 * x;
+                    }
+                }
+            }
+
+            colors[y] = row;
+            active[y] = current;
+            ghost[y] = cast;
+        }
+    }
+
     public int[][] getMatrix() {
-        int[][] matrix = new int[22][10];
+        int[][] matrix = new int[Playfield.HEIGHT][Playfield.WIDTH];
 
         for (int i = 0; i < matrix.length; i++) {
-            System.arraycopy(this.matrix[i], 0, matrix[i], 0, matrix[i].length);
+            for (int j = 0; j < matrix[i].length; j++) {
+                matrix[i][j] = this.colors[i] >>> 3 * j & 7;
+            }
         }
 
         return matrix;
     }
 
     public boolean isEmpty() {
-        for (int i = 0; i < this.matrix[0].length; i++) {
-            if (this.matrix[0][i] != 0) {
+        return this.rows[0] == 0;
+    }
+
+    /**
+     * EFFECTS: Get whether a tetromino of the given type and orientation with
+     * its center at (x, y) lies within the matrix without overlapping any
+     * locked block.
+     *
+     * @param type        The type of the tetromino
+     * @param orientation The orientation of the tetromino
+     * @param x           The x-coordinate of the center of the tetromino
+     * @param y           The y-coordinate of the center of the tetromino
+     * @return True if the tetromino fits; otherwise, false
+     */
+    protected boolean fits(Tetromino.Type type, Tetromino.Direction orientation, int x, int y) {
+        int bottom = type.getBottom(orientation);
+        int top = type.getTop(orientation);
+
+        if (x + type.getLeft(orientation) < 0 || x + type.getRight(orientation) >= Playfield.WIDTH
+                || y + bottom < 0 || y + top >= Playfield.HEIGHT) {
+            return false;
+        }
+
+        for (int dy = bottom; dy <= top; dy++) {
+            if ((this.rows[y + dy] & type.getRowMask(orientation, x, dy)) != 0) {
                 return false;
             }
         }
@@ -118,15 +372,14 @@ public class Playfield {
     }
 
     protected boolean spawn(Tetromino tetromino) {
-        for (int c : tetromino.occupies()) {
-            int[] coords = Tetromino.coords(c);
-            if (this.matrix[coords[1]][coords[0]] != 0) {
-                return false;
-            }
+        if (!this.fits(tetromino.getType(), tetromino.getOrientation(), tetromino.getX(), tetromino.getY())) {
+            return false;
         }
 
         this.current = tetromino;
         this.cast();
+
+        GameEvents.spawn(tetromino);
         return true;
     }
 
@@ -147,25 +400,46 @@ public class Playfield {
         return c;
     }
 
+    /**
+     * REQUIRES: direction is LEFT, RIGHT, or DOWN
+     * <p>
+     * EFFECTS: Get whether the current tetromino can be moved by 1 cell in the
+     * given direction, without moving it.
+     *
+     * @param direction The direction to move in
+     * @return True if the tetromino can be moved; otherwise, false
+     */
+    boolean canMove(Tetromino.Direction direction) {
+        if (this.current == null || this.current.isHidden()) {
+            return false;
+        }
+
+        if (direction == Tetromino.Direction.DOWN) {
+            return this.current.getY() > this.ghost;
+        }
+
+        int x = this.current.getX() + (direction == Tetromino.Direction.LEFT ? -1 : 1);
+        return this.fits(this.current.getType(), this.current.getOrientation(), x, this.current.getY());
+    }
+
     protected boolean move(Tetromino.Direction direction) {
+        if (direction == Tetromino.Direction.UP) {
+            throw new IllegalArgumentException("Cannot move up.");
+        }
+
         if (this.current == null || (this.current.isHidden() && direction != Tetromino.Direction.DOWN)) {
             return false;
         }
 
-        for (int c : this.current.testMove(direction)) {
-            int[] coords = Tetromino.coords(c);
+        int x = this.current.getX()
+                + (direction == Tetromino.Direction.LEFT ? -1 : direction == Tetromino.Direction.RIGHT ? 1 : 0);
+        int y = this.current.getY() - (direction == Tetromino.Direction.DOWN ? 1 : 0);
 
-            if (coords[1] < 0) {
+        if (!this.fits(this.current.getType(), this.current.getOrientation(), x, y)) {
+            if (direction == Tetromino.Direction.DOWN) {
                 this.readyToLock = true;
-                return false;
-            } else if (coords[0] < 0 || coords[0] > 9) {
-                return false;
-            } else if (this.matrix[coords[1]][coords[0]] != 0) {
-                if (direction == Tetromino.Direction.DOWN) {
-                    this.readyToLock = true;
-                }
-                return false;
             }
+            return false;
         }
 
         this.readyToLock = false;
@@ -180,16 +454,55 @@ public class Playfield {
     }
 
     protected void cast() {
-        this.phantom = this.current.clone();
-        for (int i = 0; i < 20; i++) {
-            for (int c : this.phantom.testMove(Tetromino.Direction.DOWN)) {
-                int[] coords = Tetromino.coords(c);
-                if (coords[1] < 0 || this.matrix[coords[1]][coords[0]] != 0) {
-                    return;
-                }
+        Tetromino.Type type = this.current.getType();
+        Tetromino.Direction orientation = this.current.getOrientation();
+        int x = this.current.getX();
+        int y = this.current.getY();
+
+        int distance = Integer.MAX_VALUE;
+
+        for (int dx = type.getLeft(orientation); dx <= type.getRight(orientation); dx++) {
+            int gap = y + type.getProfile(orientation, dx) - this.heights[x + dx];
+
+            if (gap < 0) {
+                distance = -1;
+                break;
             }
-            this.phantom.move(Tetromino.Direction.DOWN);
+
+            distance = Math.min(distance, gap);
+        }
+
+        if (distance >= 0) {
+            this.ghost = y - distance;
+            return;
+        }
+
+        // the tetromino is below the surface of a column, e.g., tucked under an
+        // overhang, so the blocks beneath it have to be tested row by row
+        this.ghost = y;
+        while (this.fits(type, orientation, x, this.ghost - 1)) {
+            this.ghost--;
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Move the current tetromino straight down to the position of its
+     * ghost piece.
+     *
+     * @return The number of cells the tetromino is moved down by
+     */
+    protected int drop() {
+        if (this.current == null) {
+            return 0;
         }
+
+        int distance = this.current.getY() - this.ghost;
+        this.current.drop(distance);
+        this.readyToLock = true;
+
+        return distance;
     }
 
     protected boolean rotate(int direction) {
@@ -201,62 +514,106 @@ public class Playfield {
             return false;
         }
 
-        Set<Integer> occupiedCoords;
-        OUTER:
-        while ((occupiedCoords = this.current.testRotate(direction)) != null) {
-            for (int c : occupiedCoords) {
-                int[] oc = Tetromino.coords(c);
+        Tetromino.Type type = this.current.getType();
+        Tetromino.Direction orientation = this.current.getOrientation();
+        Tetromino.Direction rotated = orientation.get(direction);
+        int[][] kicks = (direction > 0 ? type.getRightKickData() : type.getLeftKickData())[orientation.ordinal()];
 
-                if (oc[1] < 0 || oc[0] < 0 || oc[0] > 9 || this.matrix[oc[1]][oc[0]] != 0) {
-                    continue OUTER;
-                }
-            }
-
-            this.readyToLock = false;
+        for (int i = 0; i < kicks.length; i++) {
+            if (this.fits(type, rotated, this.current.getX() + kicks[i][0], this.current.getY() + kicks[i][1])) {
+                this.readyToLock = false;
 
-            this.current.rotate();
-            this.cast();
-            return true;
+                this.current.rotate(direction * (i + 1));
+                this.cast();
+                return true;
+            }
         }
 
         return false;
     }
 
     protected int lockdown() {
-        for (int c : this.current.occupies()) {
-            int[] coords = Tetromino.coords(c);
-            this.matrix[coords[1]][coords[0]] = this.current.getType().ordinal() + 1;
+        Tetromino locked = this.current;
+        int id = this.current.getType().ordinal() + 1;
+        int[] cells = this.current.getType().getCells(this.current.getOrientation());
+
+        for (int i = 0; i < cells.length; i += 2) {
+            int x = this.current.getX() + cells[i];
+            int y = this.current.getY() + cells[i + 1];
+            this.rows[y] |= 1 << x;
+            this.colors[y] |= id << 3 * x;
+            this.heights[x] = Math.max(this.heights[x], y + 1);
         }
 
-        this.current = this.phantom = null;
+        this.current = null;
         this.readyToLock = false;
 
-        return this.clear();
+        int lines = this.clear();
+        GameEvents.lockdown(locked, lines);
+        return lines;
     }
 
     protected boolean isReadyToLock() {
         return this.readyToLock;
     }
 
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Remove every full row from the matrix, shifting the rows above
+     * it down by one. Rows in the buffer area are not shifted into the visible
+     * area.
+     *
+     * @return The number of rows removed
+     */
     private int clear() {
         int count = 0;
-        OUTER:
-        for (int i = 0; i < this.matrix.length; i++) {
-            for (int j = 0; j < this.matrix[i].length; j++) {
-                if (this.matrix[i][j] == 0) {
-                    continue OUTER;
-                }
-            }
 
-            for (int j = i + 1; j < this.matrix.length - 2; j++) {
-                this.matrix[j - 1] = this.matrix[j];
+        for (int i = 0; i < Playfield.HEIGHT; i++) {
+            if (this.rows[i] != Playfield.FULL_ROW) {
+                continue;
             }
 
-            this.matrix[this.matrix.length - 2 - 1] = new int[10];
+            int top = i < Playfield.VISIBLE_HEIGHT ? Playfield.VISIBLE_HEIGHT : Playfield.HEIGHT;
+
+            System.arraycopy(this.rows, i + 1, this.rows, i, top - i - 1);
+            System.arraycopy(this.colors, i + 1, this.colors, i, top - i - 1);
+            this.rows[top - 1] = 0;
+            this.colors[top - 1] = 0;
+
             count++;
             i--;
         }
 
+        if (count > 0) {
+            this.measure();
+        }
+
         return count;
     }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Recompute the surface height of every column from the rows,
+     * scanning down from the top until every column has been reached.
+     */
+    private void measure() {
+        int remaining = Playfield.FULL_ROW;
+
+        for (int y = Playfield.HEIGHT - 1; y >= 0 && remaining != 0; y--) {
+            int reached = this.rows[y] & remaining;
+            remaining &= ~reached;
+
+            while (reached != 0) {
+                this.heights[Integer.numberOfTrailingZeros(reached)] = y + 1;
+                reached &= reached - 1;
+            }
+        }
+
+        while (remaining != 0) {
+            this.heights[Integer.numberOfTrailingZeros(remaining)] = 0;
+            remaining &= remaining - 1;
+        }
+    }
 }
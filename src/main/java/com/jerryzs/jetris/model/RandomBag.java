@@ -4,23 +4,89 @@ import org.json.JSONArray;
 import org.json.JSONException;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
+/**
+ * The queue of tetrominoes to be dealt to a game, refilled from a
+ * {@link Randomizer} 7 at a time.
+ * <p>
+ * The queue only stores the types of the tetrominoes. Tetromino objects are
+ * taken from a pool the first time a position of the queue is looked at, and
+ * are kept with the position until it is popped.
+ */
 public class RandomBag {
-    private final Queue<Tetromino> bag;
+    private static final int CAPACITY = 14;
+
+    private static final int FILL = 7;
+
+    /**
+     * At most 4 tetrominoes of the same type are in use at any time: 2 in the
+     * preview, 1 dropping and 1 on hold. A pool of 4 tetrominoes of each type
+     * allocated up front is therefore enough for the bag to never allocate
+     * again once the game is running.
+     */
+    private static final int POOL_SIZE = 4;
+
+    private static final Tetromino.Type[] TYPES = Tetromino.Type.values();
+
+    /**
+     * The largest number of bytes written by
+     * {@link #write(RandomBag, ByteBuffer)}.
+     */
+    public static final int MAX_BINARY_LENGTH = Long.BYTES + Varint.MAX_BYTES + 1 + RandomBag.CAPACITY / 2;
+
+    private final byte[] queue;
+    private final Tetromino[] view;
+    private int head;
+    private int size;
+
+    private final Tetromino[][] pool;
+    private final int[] pooled;
+
+    private final Randomizer randomizer;
 
     public RandomBag() {
-        this.bag = new ArrayDeque<Tetromino>(14);
+        this(new SevenBagRandomizer());
+    }
+
+    /**
+     * Create a 7-bag whose sequence of tetrominoes is determined by the given
+     * seed.
+     *
+     * @param seed The seed of the randomizer
+     */
+    public RandomBag(long seed) {
+        this(new SevenBagRandomizer(seed));
+    }
+
+    /**
+     * Create a 7-bag dealing tetrominoes from the given randomizer, starting
+     * at its current position.
+     * <p>
+     * REQUIRES: randomizer != null
+     *
+     * @param randomizer The randomizer of the sequence of tetrominoes
+     */
+    public RandomBag(Randomizer randomizer) {
+        this(new byte[RandomBag.CAPACITY], 0, randomizer);
         this.fillBag();
         this.fillBag();
     }
 
-    private RandomBag(Queue<Tetromino> queue) {
-        if (queue.size() <= 7) {
-            throw new IllegalArgumentException("The queue must have at least 7 tetrominoes.");
-        }
+    private RandomBag(byte[] queue, int size, Randomizer randomizer) {
+        this.queue = queue;
+        this.view = new Tetromino[RandomBag.CAPACITY];
+        this.size = size;
+        this.pool = new Tetromino[RandomBag.TYPES.length][RandomBag.POOL_SIZE];
+        this.pooled = new int[RandomBag.TYPES.length];
+        this.randomizer = randomizer;
 
-        this.bag = queue;
+        for (Tetromino.Type type : RandomBag.TYPES) {
+            for (int i = 0; i < RandomBag.POOL_SIZE; i++) {
+                this.recycle(new Tetromino(type));
+            }
+        }
     }
 
     /**
@@ -34,9 +100,8 @@ public class RandomBag {
     public static JSONArray toJsonArray(RandomBag bag) {
         JSONArray array = new JSONArray();
 
-        Iterator<Tetromino> iterator = bag.getIterator();
-        while (iterator.hasNext()) {
-            array.put(iterator.next().getType().name());
+        for (int i = 0; i < bag.size; i++) {
+            array.put(bag.peekType(i).name());
         }
 
         return array;
@@ -46,7 +111,7 @@ public class RandomBag {
      * REQUIRES: array != null and array.length() > 7
      * <p>
      * EFFECTS: Recover the content of the 7-bag from the save file as a
-     * RandomBag object.
+     * RandomBag object, refilled from a randomly seeded randomizer.
      *
      * @param array The JSON array representing the 7-bag saved to the file
      * @return The RandomBag object
@@ -54,11 +119,34 @@ public class RandomBag {
      *                     invalid
      */
     public static RandomBag fromJsonArray(JSONArray array) throws IOException {
-        Queue<Tetromino> queue = new ArrayDeque<Tetromino>(14);
+        return RandomBag.fromJsonArray(array, new SevenBagRandomizer());
+    }
+
+    /**
+     * REQUIRES: array != null and array.length() > 7 and randomizer != null
+     * <p>
+     * EFFECTS: Recover the content of the 7-bag from the save file as a
+     * RandomBag object, refilled from the given randomizer.
+     *
+     * @param array      The JSON array representing the 7-bag saved to the file
+     * @param randomizer The randomizer positioned after the last tetromino of
+     *                   the array
+     * @return The RandomBag object
+     * @throws IOException If the JSON array is unreadable or if its content is
+     *                     invalid
+     */
+    public static RandomBag fromJsonArray(JSONArray array, Randomizer randomizer) throws IOException {
+        if (array.length() <= RandomBag.FILL) {
+            throw new IllegalArgumentException("The queue must have at least 7 tetrominoes.");
+        } else if (array.length() > RandomBag.CAPACITY) {
+            throw new IOException();
+        }
+
+        byte[] queue = new byte[RandomBag.CAPACITY];
 
         try {
             for (int i = 0; i < array.length(); i++) {
-                queue.offer(new Tetromino(Tetromino.Type.valueOf(array.getString(i))));
+                queue[i] = (byte) Tetromino.Type.valueOf(array.getString(i)).ordinal();
             }
         } catch (JSONException e) {
             throw new IOException();
@@ -66,37 +154,190 @@ public class RandomBag {
             throw new AssertionError(e);
         }
 
-        return new RandomBag(queue);
+        return new RandomBag(queue, array.length(), randomizer);
+    }
+
+    /**
+     * REQUIRES: buffer has at least {@link #MAX_BINARY_LENGTH} bytes remaining
+     * <p>
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Write the content of the 7-bag in binary, as the seed of the
+     * randomizer in 8 bytes, the position of the randomizer as a varint and
+     * the number of tetrominoes in the queue in 1 byte, followed by the types
+     * in the queue packed 2 per byte.
+     *
+     * @param bag    The 7-bag to write
+     * @param buffer The buffer to write to
+     */
+    public static void write(RandomBag bag, ByteBuffer buffer) {
+        buffer.putLong(bag.randomizer.getSeed());
+        Varint.put(buffer, bag.randomizer.getPosition());
+        buffer.put((byte) bag.size);
+
+        for (int i = 0; i < bag.size; i += 2) {
+            int high = i + 1 < bag.size ? bag.peekType(i + 1).ordinal() : 0;
+            buffer.put((byte) (bag.peekType(i).ordinal() | high << 4));
+        }
+    }
+
+    /**
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Recover the 7-bag written by {@link #write(RandomBag, ByteBuffer)},
+     * refilled from a {@link SevenBagRandomizer} with the seed and position
+     * written.
+     *
+     * @param buffer The buffer to read from
+     * @return The RandomBag object
+     * @throws IOException If the content of the buffer is truncated or invalid
+     */
+    public static RandomBag read(ByteBuffer buffer) throws IOException {
+        Randomizer randomizer = new SevenBagRandomizer(buffer.getLong());
+
+        long position = Varint.get(buffer);
+        if (position < 0) {
+            throw new IOException("Invalid randomizer position " + position);
+        }
+        randomizer.seek(position);
+
+        int size = buffer.get();
+        if (size <= RandomBag.FILL || size > RandomBag.CAPACITY) {
+            throw new IOException("Invalid queue size " + size);
+        }
+
+        byte[] queue = new byte[RandomBag.CAPACITY];
+        for (int i = 0; i < size; i += 2) {
+            int b = buffer.get();
+            queue[i] = (byte) (b & 0xF);
+            queue[i + 1] = (byte) (b >>> 4 & 0xF);
+
+            if (queue[i] >= RandomBag.TYPES.length || queue[i + 1] >= RandomBag.TYPES.length) {
+                throw new IOException("Invalid tetromino type");
+            }
+        }
+
+        return new RandomBag(queue, size, randomizer);
+    }
+
+    /**
+     * EFFECTS: Get the randomizer the queue is refilled from. Its position is
+     * that of the tetromino after the last one in the queue.
+     *
+     * @return The randomizer
+     */
+    public Randomizer getRandomizer() {
+        return this.randomizer;
     }
 
     public Tetromino pop() {
-        Tetromino t = this.bag.poll();
+        Tetromino t = this.peek(0);
+        this.view[this.head] = null;
+        this.head = (this.head + 1) % RandomBag.CAPACITY;
+        this.size--;
 
-        if (this.bag.size() <= 7) {
+        if (this.size <= RandomBag.FILL) {
             this.fillBag();
         }
 
         return t;
     }
 
+    /**
+     * REQUIRES: 0 <= index < 7
+     * <p>
+     * EFFECTS: Get the tetromino at the given position of the queue without
+     * removing it.
+     *
+     * @param index The position in the queue, with 0 being the next tetromino
+     *              to be popped
+     * @return The tetromino at the position
+     */
+    public Tetromino peek(int index) {
+        int i = (this.head + index) % RandomBag.CAPACITY;
+
+        if (this.view[i] == null) {
+            this.view[i] = this.obtain(RandomBag.TYPES[this.queue[i]]);
+        }
+
+        return this.view[i];
+    }
+
+    /**
+     * REQUIRES: 0 <= index < the number of tetrominoes in the queue
+     * <p>
+     * EFFECTS: Get the type of the tetromino at the given position of the
+     * queue without removing it.
+     *
+     * @param index The position in the queue, with 0 being the next tetromino
+     *              to be popped
+     * @return The type of the tetromino at the position
+     */
+    public Tetromino.Type peekType(int index) {
+        return RandomBag.TYPES[this.queue[(this.head + index) % RandomBag.CAPACITY]];
+    }
+
     public List<Tetromino> getPreview() {
-        return new LinkedList<Tetromino>(this.bag).subList(0, 5);
+        List<Tetromino> preview = new LinkedList<Tetromino>();
+
+        for (int i = 0; i < 5; i++) {
+            preview.add(this.peek(i));
+        }
+
+        return preview;
     }
 
     public Iterator<Tetromino> getIterator() {
-        return this.bag.iterator();
+        List<Tetromino> queue = new ArrayList<Tetromino>(this.size);
+
+        for (int i = 0; i < this.size; i++) {
+            queue.add(this.peek(i));
+        }
+
+        return queue.iterator();
+    }
+
+    /**
+     * REQUIRES: tetromino is no longer referenced by the playfield or the
+     * hold of any game
+     * <p>
+     * MODIFIES: this, tetromino
+     * <p>
+     * EFFECTS: Return a tetromino that has been locked down, so that it can be
+     * reused when the bag is refilled instead of allocating a new one.
+     *
+     * @param tetromino The tetromino to reuse
+     */
+    protected void recycle(Tetromino tetromino) {
+        int t = tetromino.getType().ordinal();
+
+        if (this.pooled[t] < RandomBag.POOL_SIZE) {
+            this.pool[t][this.pooled[t]++] = tetromino;
+        }
+    }
+
+    private Tetromino obtain(Tetromino.Type type) {
+        int t = type.ordinal();
+
+        if (this.pooled[t] == 0) {
+            return new Tetromino(type);
+        }
+
+        Tetromino tetromino = this.pool[t][--this.pooled[t]];
+        this.pool[t][this.pooled[t]] = null;
+        tetromino.respawn();
+        return tetromino;
     }
 
     private void fillBag() {
-        assert this.bag.size() <= 7;
+        assert this.size <= RandomBag.FILL;
 
-        ArrayList<Tetromino> b = new ArrayList<Tetromino>();
+        int tail = this.head + this.size;
 
-        for (Tetromino.Type t : Tetromino.Type.values()) {
-            b.add(new Tetromino(t));
+        for (int i = 0; i < RandomBag.FILL; i++) {
+            this.queue[(tail + i) % RandomBag.CAPACITY] = this.randomizer.next();
         }
 
-        Collections.shuffle(b);
-        this.bag.addAll(b);
+        this.size += RandomBag.FILL;
     }
 }
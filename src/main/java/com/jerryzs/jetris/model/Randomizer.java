@@ -0,0 +1,45 @@
+package com.jerryzs.jetris.model;
+
+/**
+ * A source of the sequence of tetromino types dealt to a game. A randomizer is
+ * fully determined by its seed, and can be positioned anywhere in its sequence
+ * without generating the types before it.
+ */
+public interface Randomizer {
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Deal the next tetromino type in the sequence.
+     *
+     * @return The ordinal of the next {@link Tetromino.Type}
+     */
+    byte next();
+
+    /**
+     * EFFECTS: Get the seed determining the sequence of this randomizer.
+     *
+     * @return The seed
+     */
+    long getSeed();
+
+    /**
+     * EFFECTS: Get the number of tetromino types dealt so far, which is the
+     * index in the sequence of the type returned by the next call to
+     * {@link #next()}.
+     *
+     * @return The position in the sequence
+     */
+    long getPosition();
+
+    /**
+     * REQUIRES: position >= 0
+     * <p>
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Jump to the given position in the sequence, so that the next
+     * call to {@link #next()} deals the type at that index.
+     *
+     * @param position The position to jump to
+     */
+    void seek(long position);
+}
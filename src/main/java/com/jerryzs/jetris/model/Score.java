@@ -3,7 +3,16 @@ package com.jerryzs.jetris.model;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 public class Score {
+    /**
+     * The largest number of bytes written by {@link #write(Score, ByteBuffer)}.
+     */
+    public static final int MAX_BINARY_LENGTH = 6 * 5;
+
     private final Playfield playfield;
 
     private int points;
@@ -14,6 +23,7 @@ public class Score {
     private int backToBack;
 
     private int[] buffer;
+    private int[] spare;
     private int dropBonus;
     private int tspin;
 
@@ -31,6 +41,7 @@ public class Score {
         this.points = points;
         this.lines = lines;
         this.buffer = new int[6];
+        this.spare = new int[6];
     }
 
     public static Score fromJson(JSONObject json, Playfield playfield) throws JSONException {
@@ -56,6 +67,50 @@ public class Score {
         return json;
     }
 
+    /**
+     * REQUIRES: buffer has at least {@link #MAX_BINARY_LENGTH} bytes remaining
+     * <p>
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Write the fields of the score saved by {@link #toJson(Score)},
+     * and the drop bonus not yet settled, in binary as zigzag varints.
+     *
+     * @param score  The score to write
+     * @param buffer The buffer to write to
+     */
+    public static void write(Score score, ByteBuffer buffer) {
+        Varint.putSigned(buffer, score.level);
+        Varint.putSigned(buffer, score.combo);
+        Varint.putSigned(buffer, score.backToBack);
+        Varint.putSigned(buffer, score.points);
+        Varint.putSigned(buffer, score.lines);
+        Varint.putSigned(buffer, score.dropBonus);
+    }
+
+    /**
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Recover the score written by {@link #write(Score, ByteBuffer)}.
+     *
+     * @param buffer    The buffer to read from
+     * @param playfield The playfield of the game of the score
+     * @return The score object
+     * @throws IOException If the content of the buffer is truncated or invalid
+     */
+    public static Score read(ByteBuffer buffer, Playfield playfield) throws IOException {
+        Score score = new Score(
+                playfield,
+                Varint.getSignedInt(buffer, 1, Integer.MAX_VALUE),
+                Varint.getSignedInt(buffer, -1, Integer.MAX_VALUE),
+                Varint.getSignedInt(buffer, -1, Integer.MAX_VALUE),
+                Varint.getSignedInt(buffer, 0, Integer.MAX_VALUE),
+                Varint.getSignedInt(buffer, 0, Integer.MAX_VALUE)
+        );
+        score.dropBonus = Varint.getSignedInt(buffer, 0, Integer.MAX_VALUE);
+
+        return score;
+    }
+
     public int getLevel() {
         return this.level;
     }
@@ -64,6 +119,10 @@ public class Score {
         return this.points;
     }
 
+    public int getLines() {
+        return this.lines;
+    }
+
     /**
      * EFFECTS: Return an array representing the breakdown of the settled score.
      * The following outlines the information associated with each index of the
@@ -90,6 +149,15 @@ public class Score {
         return this.lastScore;
     }
 
+    /**
+     * EFFECTS: Get the type of the t-spin found by the last
+     * {@link #tspinCheck()} not yet settled, as in the TSpinType of
+     * {@link #getLastScore()}.
+     */
+    int getTspin() {
+        return this.tspin;
+    }
+
     protected void dropBonus(int points) {
         this.dropBonus += points;
     }
@@ -105,32 +173,41 @@ public class Score {
             return;
         }
 
-        if (Math.abs(t.getLastCoords()[0] - t.getCoords()[0]) == 1
-                && Math.abs(t.getLastCoords()[1] - t.getCoords()[1]) == 2) {
+        if (Math.abs(t.getLastX() - t.getX()) == 1
+                && Math.abs(t.getLastY() - t.getY()) == 2) {
             this.buffer[3] = this.tspin = 2;
             return;
         }
 
-        boolean[] corners = getCorners(t, t.getOrientation());
-        this.buffer[3] = this.tspin = corners[2] && corners[3] && (corners[0] || corners[1]) ? 2
-                : (corners[2] || corners[3]) && corners[0] && corners[1] ? 1
+        int corners = this.getCorners(t, t.getOrientation());
+        boolean c0 = (corners & 1) != 0;
+        boolean c1 = (corners & 2) != 0;
+        boolean c2 = (corners & 4) != 0;
+        boolean c3 = (corners & 8) != 0;
+
+        this.buffer[3] = this.tspin = c2 && c3 && (c0 || c1) ? 2
+                : (c2 || c3) && c0 && c1 ? 1
                 : 0;
     }
 
-    private boolean[] getCorners(Tetromino t, Tetromino.Direction o) {
+    /**
+     * EFFECTS: Find which of the 4 corners diagonal to the center of the
+     * tetromino are occupied or outside the playfield.
+     *
+     * @return A bitmask with bit i set if corner i is occupied
+     */
+    private int getCorners(Tetromino t, Tetromino.Direction o) {
         int ord = o.ordinal();
-        boolean[] corners = new boolean[4];
+        int corners = 0;
 
         int index = 0;
         for (int i = -1; i <= 1; i += 2) {
             for (int j = -1; j <= 1; j += 2) {
-                int x = t.getCoords()[0] + (ord % 2 == 0 ? j : i) * (1 - 2 * (ord / 2));
-                int y = t.getCoords()[1] + (ord % 2 == 0 ? i : j) * (1 - 2 * (ord / 2));
+                int x = t.getX() + (ord % 2 == 0 ? j : i) * (1 - 2 * (ord / 2));
+                int y = t.getY() + (ord % 2 == 0 ? i : j) * (1 - 2 * (ord / 2));
 
-                if (x < 0 || x > 9 || y < 0 || y > 19) {
-                    corners[index] = true;
-                } else {
-                    corners[index] = this.playfield.get(x, y) != 0;
+                if (x < 0 || x > 9 || y < 0 || y > 19 || this.playfield.get(x, y) != 0) {
+                    corners |= 1 << index;
                 }
 
                 index++;
@@ -164,6 +241,8 @@ public class Score {
                 : lineCount == 2 ? (this.tspin == 0 ? 300 : this.tspin == 1 ? 400 : 1200)
                 : lineCount == 3 ? (this.tspin == 0 ? 500 : 1600) : 800);
 
+        GameEvents.lineClear(lineCount, this.tspin, this.combo, this.backToBack, this.buffer[0]);
+
         this.tspin = 0;
 
         if (this.playfield.isEmpty()) {
@@ -199,7 +278,10 @@ public class Score {
 
         this.level = this.lines / 10 + 1;
 
+        int[] next = this.lastScore == null ? this.spare : this.lastScore;
+        Arrays.fill(next, 0);
+
         this.lastScore = this.buffer;
-        this.buffer = new int[6];
+        this.buffer = next;
     }
 }
@@ -0,0 +1,104 @@
+package com.jerryzs.jetris.model;
+
+import java.util.Random;
+
+/**
+ * A randomizer dealing tetromino types in bags of 7, each bag being a random
+ * permutation of all 7 types.
+ * <p>
+ * The permutation of every bag is derived from a single output of the
+ * SplitMix64 generator. As the state of the generator after k steps is simply
+ * <code>seed + k * GAMMA</code>, the permutation of any bag can be computed
+ * directly from its index, so jumping to any position takes constant time.
+ */
+public class SevenBagRandomizer implements Randomizer {
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    private static final int BAG_SIZE = Tetromino.Type.values().length;
+
+    /**
+     * The number of permutations of a bag, i.e., <code>7!</code>.
+     */
+    private static final int PERMUTATIONS = 5040;
+
+    private final long seed;
+
+    private final byte[] bag;
+    private long index;
+    private int offset;
+
+    /**
+     * Create a randomizer with a random seed.
+     */
+    public SevenBagRandomizer() {
+        this(new Random().nextLong());
+    }
+
+    /**
+     * Create a randomizer whose sequence is determined by the given seed.
+     *
+     * @param seed The seed of the sequence
+     */
+    public SevenBagRandomizer(long seed) {
+        this.seed = seed;
+        this.bag = new byte[SevenBagRandomizer.BAG_SIZE];
+        this.seek(0);
+    }
+
+    /**
+     * EFFECTS: Compute the output of SplitMix64 for the given state.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Fill the bag with the permutation of the bag at the given index
+     * by decoding a random number below 7! as a Lehmer code, shuffling the
+     * types inside-out.
+     */
+    private void fill(long index) {
+        long state = this.seed + (index + 1) * SevenBagRandomizer.GAMMA;
+        int r = (int) Long.remainderUnsigned(SevenBagRandomizer.mix(state), SevenBagRandomizer.PERMUTATIONS);
+
+        for (int i = 0; i < SevenBagRandomizer.BAG_SIZE; i++) {
+            int j = r % (i + 1);
+            r /= i + 1;
+
+            this.bag[i] = this.bag[j];
+            this.bag[j] = (byte) i;
+        }
+
+        this.index = index;
+    }
+
+    @Override
+    public byte next() {
+        if (this.offset == SevenBagRandomizer.BAG_SIZE) {
+            this.fill(this.index + 1);
+            this.offset = 0;
+        }
+
+        return this.bag[this.offset++];
+    }
+
+    @Override
+    public long getSeed() {
+        return this.seed;
+    }
+
+    @Override
+    public long getPosition() {
+        return this.index * SevenBagRandomizer.BAG_SIZE + this.offset;
+    }
+
+    @Override
+    public void seek(long position) {
+        this.fill(position / SevenBagRandomizer.BAG_SIZE);
+        this.offset = (int) (position % SevenBagRandomizer.BAG_SIZE);
+    }
+}
@@ -0,0 +1,100 @@
+package com.jerryzs.jetris.model;
+
+/**
+ * A headless simulation of a game of Jetris, which advances the game by an
+ * exact number of logical ticks as fast as possible. The timings of the game
+ * are derived from the fixed {@link #TICK_RATE} alone, never from a clock, so
+ * that a simulation from the same seed with the same inputs always produces
+ * the same result.
+ */
+public class Simulation {
+    /**
+     * The number of ticks making up 1 second of game time.
+     */
+    public static final int TICK_RATE = 60;
+
+    private final Game game;
+
+    private long ticks;
+
+    /**
+     * Create a simulation of a new game whose sequence of tetrominoes is
+     * determined by the given seed.
+     *
+     * @param seed The seed of the 7-bag of the game
+     */
+    public Simulation(long seed) {
+        this(new Game(Simulation.TICK_RATE, seed));
+    }
+
+    /**
+     * Create a simulation of the given game. The framerate of the game is set
+     * to the tick rate of the simulation.
+     * <p>
+     * REQUIRES: game != null
+     *
+     * @param game The game to simulate
+     */
+    public Simulation(Game game) {
+        this.game = game;
+        this.game.framerate(Simulation.TICK_RATE);
+    }
+
+    /**
+     * EFFECTS: Get the simulated game, on which inputs can be performed
+     * between ticks.
+     *
+     * @return The game object
+     */
+    public Game getGame() {
+        return this.game;
+    }
+
+    /**
+     * EFFECTS: Get the number of ticks the game has been advanced by.
+     *
+     * @return The number of ticks simulated
+     */
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * MODIFIES: this, this.game
+     * <p>
+     * EFFECTS: Advance the game by 1 tick, unless it is over.
+     *
+     * @return False if the game is over; otherwise, true
+     */
+    public boolean tick() {
+        if (this.game.isOver()) {
+            return false;
+        }
+
+        this.game.run();
+        this.ticks++;
+
+        return true;
+    }
+
+    /**
+     * REQUIRES: ticks >= 0
+     * <p>
+     * MODIFIES: this, this.game
+     * <p>
+     * EFFECTS: Advance the game by the given number of ticks, stopping early
+     * if the game is over.
+     *
+     * @param ticks The number of ticks to advance by
+     * @return The number of ticks actually simulated
+     */
+    public long advance(long ticks) {
+        long i = 0;
+
+        while (i < ticks && this.tick()) {
+            i++;
+        }
+
+        return i;
+    }
+}
@@ -0,0 +1,270 @@
+package com.jerryzs.jetris.model;
+
+import java.util.Arrays;
+
+/**
+ * A picture of everything an interface draws of a game at the end of one of
+ * its frames: the visible rows of the playfield with the current tetromino and
+ * its ghost piece, the held and upcoming tetrominoes, and the score.
+ * <p>
+ * A game publishing its frames fills a snapshot at the end of every frame,
+ * and hands it to other threads through a volatile reference only if it
+ * differs from the latest one in anything drawn, so that a renderer reads a
+ * consistent frame without touching the live game. The playfield is kept in
+ * the packed layout of {@link Playfield#getRow(int)}, 1 int per row, so that
+ * drawing it is a single scan of a small array.
+ * <p>
+ * A game takes turns filling the {@link #RING} snapshots of a ring rather
+ * than allocating a snapshot per frame, so a published snapshot is never
+ * changed until {@link #RING} - 1 more have been published after it. A
+ * renderer is expected to read the latest snapshot afresh for each render,
+ * and be done with it well within that many frames.
+ */
+public final class Snapshot {
+    public static final int WIDTH = 10;
+    public static final int HEIGHT = 20;
+    public static final int PREVIEW_LENGTH = 5;
+
+    /**
+     * The number of snapshots a game takes turns filling.
+     */
+    static final int RING = 4;
+
+    private long frame;
+    private int framerate;
+    private boolean paused;
+    private boolean over;
+
+    private final int[] colors;
+    private final int[] masks;
+    private final int[] active;
+    private final int[] ghost;
+
+    private boolean falling;
+    private double fallOffset;
+    private double fallRate;
+
+    private Tetromino.Type hold;
+    private boolean holdingAllowed;
+    private final Tetromino.Type[] preview;
+
+    private int level;
+    private int points;
+    private int lines;
+    private final int[] lastScore;
+    private boolean scored;
+
+    /**
+     * EFFECTS: Create a blank snapshot, to be filled by
+     * {@link #update(Game)}.
+     */
+    Snapshot() {
+        this.colors = new int[Snapshot.HEIGHT];
+        this.masks = new int[Snapshot.HEIGHT];
+        this.active = new int[Snapshot.HEIGHT];
+        this.ghost = new int[Snapshot.HEIGHT];
+        this.preview = new Tetromino.Type[Snapshot.PREVIEW_LENGTH];
+        this.lastScore = new int[6];
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Take a snapshot of the given game as it is now, without
+     * allocating.
+     *
+     * @param game The game to take a snapshot of
+     */
+    void update(Game game) {
+        this.frame = game.getFrame();
+        this.framerate = game.framerate();
+        this.paused = game.isPaused();
+        this.over = game.isOver();
+
+        game.getPlayfield().copyVisibleRows(this.colors, this.active, this.ghost);
+
+        for (int y = 0; y < Snapshot.HEIGHT; y++) {
+            int mask = this.ghost[y];
+            for (int x = 0; x < Snapshot.WIDTH; x++) {
+                if ((this.colors[y] >>> 3 * x & 7) != 0) {
+                    mask |= 1 << x;
+                }
+            }
+            this.masks[y] = mask;
+        }
+
+        this.falling = !this.paused && game.getPlayfield().canMove(Tetromino.Direction.DOWN);
+        this.fallOffset = game.getFallOffset();
+        this.fallRate = game.getFallRate();
+
+        this.hold = game.getHold() == null ? null : game.getHold().getType();
+        this.holdingAllowed = game.getHoldingAllowed();
+        for (int i = 0; i < this.preview.length; i++) {
+            this.preview[i] = game.getPreview(i).getType();
+        }
+
+        Score score = game.getScore();
+        this.level = score.getLevel();
+        this.points = score.getPoints();
+        this.lines = score.getLines();
+
+        int[] lastScore = score.getLastScore();
+        this.scored = lastScore != null;
+        if (this.scored) {
+            System.arraycopy(lastScore, 0, this.lastScore, 0, this.lastScore.length);
+        }
+    }
+
+    /**
+     * EFFECTS: Check whether this snapshot draws the same as the given one,
+     * i.e., whether they differ in nothing but the frame they were taken at.
+     *
+     * @param other The snapshot to compare with
+     * @return True if they draw the same; otherwise, false
+     */
+    boolean looksLike(Snapshot other) {
+        return this.framerate == other.framerate && this.paused == other.paused && this.over == other.over
+                && Arrays.equals(this.colors, other.colors) && Arrays.equals(this.ghost, other.ghost)
+                && Arrays.equals(this.active, other.active)
+                && this.falling == other.falling && this.fallOffset == other.fallOffset
+                && this.fallRate == other.fallRate
+                && this.hold == other.hold && this.holdingAllowed == other.holdingAllowed
+                && Arrays.equals(this.preview, other.preview)
+                && this.level == other.level && this.points == other.points && this.lines == other.lines
+                && this.scored == other.scored && (!this.scored || Arrays.equals(this.lastScore, other.lastScore));
+    }
+
+    /**
+     * EFFECTS: Get the number of frames the game had run when this snapshot
+     * was taken.
+     */
+    public long getFrame() {
+        return this.frame;
+    }
+
+    public int getFramerate() {
+        return this.framerate;
+    }
+
+    public boolean isPaused() {
+        return this.paused;
+    }
+
+    public boolean isOver() {
+        return this.over;
+    }
+
+    /**
+     * REQUIRES: 0 <= x < 10 and 0 <= y < 20
+     * <p>
+     * EFFECTS: Get the id of the tetromino at the given coordinate, in the
+     * same way as {@link Game#get(int, int)}.
+     *
+     * @return The id of the tetromino occupying the coordinate; -1, if the
+     * coordinate is part of the ghost piece; or 0, if it is not occupied
+     */
+    public int get(int x, int y) {
+        int color = this.colors[y] >>> 3 * x & 7;
+
+        if (color != 0) {
+            return color;
+        }
+
+        return (this.ghost[y] >>> x & 1) != 0 ? -1 : 0;
+    }
+
+    /**
+     * REQUIRES: 0 <= y < 20
+     * <p>
+     * EFFECTS: Get the ids of the blocks in the given row, including the
+     * current tetromino, packed with the id at column x in bits 3x to 3x + 2.
+     */
+    public int getRow(int y) {
+        return this.colors[y];
+    }
+
+    /**
+     * REQUIRES: 0 <= y < 20
+     * <p>
+     * EFFECTS: Get the cells of the given row that are not empty, i.e., whose
+     * id is not 0, as a bitmask, where bit x is set if column x is not empty.
+     */
+    public int getMask(int y) {
+        return this.masks[y];
+    }
+
+    /**
+     * REQUIRES: 0 <= y < 20
+     * <p>
+     * EFFECTS: Get the cells of the given row occupied by the current
+     * tetromino as a bitmask, where bit x is set if column x is occupied.
+     */
+    public int getActiveMask(int y) {
+        return this.active[y];
+    }
+
+    /**
+     * REQUIRES: 0 <= y < 20
+     * <p>
+     * EFFECTS: Get the cells of the given row occupied by the ghost piece as a
+     * bitmask, where bit x is set if column x is occupied.
+     */
+    public int getGhostMask(int y) {
+        return this.ghost[y];
+    }
+
+    /**
+     * REQUIRES: 0 <= alpha <= 1
+     * <p>
+     * EFFECTS: Same as {@link Game#getFall(double)}, at the time of this
+     * snapshot.
+     */
+    public double getFall(double alpha) {
+        return this.falling ? Game.fall(this.fallOffset, this.fallRate, alpha) : 0;
+    }
+
+    /**
+     * EFFECTS: Get the type of the tetromino on hold.
+     *
+     * @return The type held; or null, if none is held
+     */
+    public Tetromino.Type getHold() {
+        return this.hold;
+    }
+
+    public boolean getHoldingAllowed() {
+        return this.holdingAllowed;
+    }
+
+    /**
+     * REQUIRES: 0 <= index < 5
+     * <p>
+     * EFFECTS: Get the type of the given tetromino of the preview, in the same
+     * way as {@link Game#getPreview(int)}.
+     */
+    public Tetromino.Type getPreview(int index) {
+        return this.preview[index];
+    }
+
+    public int getLevel() {
+        return this.level;
+    }
+
+    public int getPoints() {
+        return this.points;
+    }
+
+    public int getLines() {
+        return this.lines;
+    }
+
+    /**
+     * EFFECTS: Get the breakdown of the last score settled, as in
+     * {@link Score#getLastScore()}.
+     *
+     * @return A copy of the breakdown; or null, if no score was settled yet
+     */
+    public int[] getLastScore() {
+        return this.scored ? this.lastScore.clone() : null;
+    }
+}
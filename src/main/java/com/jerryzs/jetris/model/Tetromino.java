@@ -5,6 +5,7 @@ import org.json.JSONObject;
 
 import java.awt.*;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
@@ -96,23 +97,102 @@ public class Tetromino implements Cloneable {
         }
     }
 
+    /**
+     * REQUIRES: buffer has at least 5 bytes remaining
+     * <p>
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Write the state of a tetromino in binary, as 1 byte holding the
+     * type in bits 0-2, the orientation in bits 3-4 and the last orientation
+     * in bits 5-6, followed by the coordinates and the last coordinates as 1
+     * byte each.
+     *
+     * @param tetromino The tetromino to write
+     * @param buffer    The buffer to write to
+     */
+    public static void write(Tetromino tetromino, ByteBuffer buffer) {
+        buffer.put((byte) (tetromino.type.ordinal()
+                | tetromino.orientation.ordinal() << 3
+                | tetromino.lastOrientation.ordinal() << 5));
+        buffer.put((byte) tetromino.coords[0]);
+        buffer.put((byte) tetromino.coords[1]);
+        buffer.put((byte) tetromino.lastCoords[0]);
+        buffer.put((byte) tetromino.lastCoords[1]);
+    }
+
+    /**
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Recover the tetromino object written by
+     * {@link #write(Tetromino, ByteBuffer)}.
+     *
+     * @param buffer The buffer to read from
+     * @return The tetromino object
+     * @throws IOException If the content of the buffer is truncated or invalid
+     */
+    public static Tetromino read(ByteBuffer buffer) throws IOException {
+        int head = buffer.get();
+
+        if ((head & 7) >= Type.VALUES.length || head < 0) {
+            throw new IOException("Invalid tetromino " + head);
+        }
+
+        return new Tetromino(
+                Type.VALUES[head & 7],
+                new int[]{buffer.get(), buffer.get()},
+                Direction.VALUES[head >>> 3 & 3],
+                new int[]{buffer.get(), buffer.get()},
+                Direction.VALUES[head >>> 5 & 3]);
+    }
+
     public Type getType() {
         return this.type;
     }
 
     public void reset() {
         this.orientation = Direction.DOWN;
-        this.coords = new int[]{4, 18};
+        this.coords[0] = 4;
+        this.coords[1] = 18;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Restore this tetromino to the state of a newly created one, so
+     * that it can be reused instead of allocating a new tetromino.
+     */
+    protected void respawn() {
+        this.orientation = this.lastOrientation = Direction.DOWN;
+        this.coords[0] = 4;
+        this.coords[1] = 20;
+        this.lastCoords[0] = this.lastCoords[1] = 0;
+        this.test = 0;
     }
 
     public Direction getOrientation() {
         return this.orientation;
     }
 
+    public int getX() {
+        return this.coords[0];
+    }
+
+    public int getY() {
+        return this.coords[1];
+    }
+
     public int[] getLastCoords() {
         return this.lastCoords.clone();
     }
 
+    public int getLastX() {
+        return this.lastCoords[0];
+    }
+
+    public int getLastY() {
+        return this.lastCoords[1];
+    }
+
     public Direction getLastOrientation() {
         return this.lastOrientation;
     }
@@ -134,11 +214,35 @@ public class Tetromino implements Cloneable {
         return Tetromino.findAbsoluteCoords(newCoords, this.getRelative());
     }
 
+    /**
+     * REQUIRES: cells >= 0 and there must be space for the Tetromino to move
+     * down by the given number of cells
+     * <p>
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Move the tetromino down by the given number of cells, leaving it
+     * in the same state as moving it down 1 cell at a time would.
+     *
+     * @param cells The number of cells to move down
+     */
+    protected void drop(int cells) {
+        if (cells == 0) {
+            return;
+        }
+
+        this.lastCoords[0] = this.coords[0];
+        this.lastCoords[1] = this.coords[1] - cells + 1;
+        this.lastOrientation = this.orientation;
+
+        this.coords[1] -= cells;
+        this.test = 0;
+    }
+
     /**
      * REQUIRES: there must be space for the Tetromino to move to
      */
     public void move(Direction direction) {
-        this.lastCoords = Arrays.copyOf(this.coords, 2);
+        System.arraycopy(this.coords, 0, this.lastCoords, 0, 2);
         this.lastOrientation = this.orientation;
 
         Tetromino.move(this.coords, direction);
@@ -168,7 +272,7 @@ public class Tetromino implements Cloneable {
 
         direction /= Math.abs(direction);
 
-        if (Math.abs(this.test) >= 4) {
+        if (Math.abs(this.test) >= this.getKickData(direction)[this.orientation.ordinal()].length) {
             this.test = 0;
             return null;
         } else {
@@ -181,23 +285,41 @@ public class Tetromino implements Cloneable {
             throw new IllegalStateException("Must be called after testing at least 1 rotation.");
         }
 
-        this.lastCoords = Arrays.copyOf(this.coords, 2);
+        this.rotate(this.test);
+    }
+
+    /**
+     * REQUIRES: test != 0 and there must be space for the Tetromino to rotate
+     * to using the given kick test
+     * <p>
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Rotate the tetromino in the direction of the sign of test,
+     * translating it by the |test|-th kick offset.
+     *
+     * @param test The 1-based index of the kick test, negated for a
+     *             counterclockwise rotation
+     */
+    protected void rotate(int test) {
+        System.arraycopy(this.coords, 0, this.lastCoords, 0, 2);
 
-        int[] translation = (this.test > 0 ? this.type.getRightKickData() : this.type.getLeftKickData())
-                [this.orientation.ordinal()][Math.abs(this.test) - 1];
+        int[] translation = this.getKickData(test)[this.orientation.ordinal()][Math.abs(test) - 1];
         this.coords[0] += translation[0];
         this.coords[1] += translation[1];
 
         this.lastOrientation = this.orientation;
-        this.orientation = this.orientation.get(this.test / Math.abs(this.test));
+        this.orientation = this.orientation.get(test / Math.abs(test));
 
         this.test = 0;
     }
 
+    private int[][][] getKickData(int direction) {
+        return direction > 0 ? this.type.getRightKickData() : this.type.getLeftKickData();
+    }
+
     protected Set<Integer> getRotation(int test) {
         Direction no = this.orientation.get(test / Math.abs(test));
-        int[] translation = (test > 0 ? this.type.getRightKickData() : this.type.getLeftKickData())
-                [this.orientation.ordinal()][Math.abs(test) - 1];
+        int[] translation = this.getKickData(test)[this.orientation.ordinal()][Math.abs(test) - 1];
 
         Set<Integer> occupiedCoords = new HashSet<Integer>();
 
@@ -212,11 +334,29 @@ public class Tetromino implements Cloneable {
     }
 
     public boolean occupies(int x, int y) {
-        return this.occupies(Tetromino.num(x, y));
+        return (this.getRowMask(y) >>> x & 1) != 0;
     }
 
     public boolean occupies(int n) {
-        return this.occupies().contains(n);
+        int[] coords = Tetromino.coords(n);
+        return this.occupies(coords[0], coords[1]);
+    }
+
+    /**
+     * EFFECTS: Get the cells occupied by this tetromino in the given row as a
+     * bitmask, where bit x is set if the cell at (x, y) is occupied.
+     *
+     * @param y The y-coordinate of the row
+     * @return The bitmask of the occupied cells in the row
+     */
+    public int getRowMask(int y) {
+        int dy = y - this.coords[1];
+
+        if (dy < this.type.getBottom(this.orientation) || dy > this.type.getTop(this.orientation)) {
+            return 0;
+        }
+
+        return this.type.getRowMask(this.orientation, this.coords[0], dy);
     }
 
     public Set<Integer> occupies() {
@@ -316,8 +456,8 @@ public class Tetromino implements Cloneable {
                         Direction.UP, Set.of(0, 1, 1000, 1001),
                         Direction.RIGHT, Set.of(0, 1, 1000, 1001)
                 ),
-                new int[5][4][2],
-                new int[5][4][2]
+                new int[4][5][2],
+                new int[4][5][2]
         ),
 
         S(
@@ -353,12 +493,28 @@ public class Tetromino implements Cloneable {
                 )
         );
 
+        /**
+         * The relative coordinates of every orientation lie within a 4x4 box
+         * spanning offsets -1 to 2 horizontally and -2 to 1 vertically. Row
+         * masks are stored relative to the corner of that box.
+         */
+        private static final int SPAN = 4;
+        private static final int ORIGIN_X = 1;
+        private static final int ORIGIN_Y = 2;
+
+        private static final Type[] VALUES = Type.values();
+
         private final int[][][] leftKickData;
         private final int[][][] rightKickData;
         private final int[] standalone;
         private final Map<Direction, Set<Integer>> relative;
         private final Color color;
 
+        private final int[][] cells;
+        private final int[][] masks;
+        private final int[][] bounds;
+        private final int[][] profiles;
+
         Type(Color color, int[] standalone, Map<Direction, Set<Integer>> relative) {
             this(
                     color,
@@ -385,6 +541,45 @@ public class Tetromino implements Cloneable {
             this.relative = relative;
             this.leftKickData = leftKickData;
             this.rightKickData = rightKickData;
+
+            this.cells = new int[Direction.VALUES.length][];
+            this.masks = new int[Direction.VALUES.length][Type.SPAN];
+            this.bounds = new int[Direction.VALUES.length][];
+            this.profiles = new int[Direction.VALUES.length][Type.SPAN];
+
+            for (Direction d : Direction.VALUES) {
+                this.precompute(d);
+            }
+        }
+
+        /**
+         * MODIFIES: this
+         * <p>
+         * EFFECTS: Derive the flat cell offsets, row masks, bounds and bottom
+         * profile of the given orientation from its relative coordinates.
+         */
+        private void precompute(Direction orientation) {
+            int o = orientation.ordinal();
+            int[] c = new int[2 * this.relative.get(orientation).size()];
+            int[] b = new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE};
+            Arrays.fill(this.profiles[o], Integer.MAX_VALUE);
+
+            int i = 0;
+            for (int r : this.relative.get(orientation)) {
+                int[] rc = Tetromino.coords(r);
+                c[i++] = rc[0];
+                c[i++] = rc[1];
+
+                this.masks[o][rc[1] + Type.ORIGIN_Y] |= 1 << rc[0] + Type.ORIGIN_X;
+                this.profiles[o][rc[0] + Type.ORIGIN_X] = Math.min(this.profiles[o][rc[0] + Type.ORIGIN_X], rc[1]);
+                b[0] = Math.min(b[0], rc[0]);
+                b[1] = Math.max(b[1], rc[0]);
+                b[2] = Math.min(b[2], rc[1]);
+                b[3] = Math.max(b[3], rc[1]);
+            }
+
+            this.cells[o] = c;
+            this.bounds[o] = b;
         }
 
         public int[][][] getLeftKickData() {
@@ -414,6 +609,81 @@ public class Tetromino implements Cloneable {
             return this.relative.get(orientation);
         }
 
+        /**
+         * EFFECTS: Get the offsets of the cells occupied by this tetromino in
+         * the given orientation relative to its center, flattened into
+         * {@code {x0, y0, x1, y1, ...}}.
+         *
+         * @param orientation The orientation of the tetromino
+         * @return The flat array of relative cell offsets
+         */
+        public int[] getCells(Direction orientation) {
+            return this.cells[orientation.ordinal()];
+        }
+
+        /**
+         * REQUIRES: getBottom(orientation) <= dy <= getTop(orientation) and
+         * 0 <= x + getLeft(orientation) and x + getRight(orientation) <= 31
+         * <p>
+         * EFFECTS: Get the cells occupied in the row at offset dy from the
+         * center of this tetromino, when its center is in column x, as a
+         * bitmask where bit i is set if column i is occupied.
+         *
+         * @param orientation The orientation of the tetromino
+         * @param x           The column of the center of the tetromino
+         * @param dy          The row offset from the center of the tetromino
+         * @return The bitmask of the occupied columns in the row
+         */
+        public int getRowMask(Direction orientation, int x, int dy) {
+            int mask = this.masks[orientation.ordinal()][dy + Type.ORIGIN_Y];
+            int shift = x - Type.ORIGIN_X;
+
+            return shift >= 0 ? mask << shift : mask >>> -shift;
+        }
+
+        /**
+         * REQUIRES: getLeft(orientation) <= dx <= getRight(orientation)
+         * <p>
+         * EFFECTS: Get the y offset of the lowest cell in the column at offset
+         * dx from the center of this tetromino. Every column between the
+         * leftmost and rightmost cells of a tetromino has at least 1 cell.
+         *
+         * @param orientation The orientation of the tetromino
+         * @param dx          The column offset from the center of the tetromino
+         * @return The smallest y offset of any cell in the column
+         */
+        public int getProfile(Direction orientation, int dx) {
+            return this.profiles[orientation.ordinal()][dx + Type.ORIGIN_X];
+        }
+
+        /**
+         * @return The smallest x offset of any cell in the orientation
+         */
+        public int getLeft(Direction orientation) {
+            return this.bounds[orientation.ordinal()][0];
+        }
+
+        /**
+         * @return The largest x offset of any cell in the orientation
+         */
+        public int getRight(Direction orientation) {
+            return this.bounds[orientation.ordinal()][1];
+        }
+
+        /**
+         * @return The smallest y offset of any cell in the orientation
+         */
+        public int getBottom(Direction orientation) {
+            return this.bounds[orientation.ordinal()][2];
+        }
+
+        /**
+         * @return The largest y offset of any cell in the orientation
+         */
+        public int getTop(Direction orientation) {
+            return this.bounds[orientation.ordinal()][3];
+        }
+
         public Color getColor() {
             return this.color;
         }
@@ -0,0 +1,104 @@
+package com.jerryzs.jetris.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The variable-length integer encoding used by the binary formats of the game.
+ * Varints store 7 bits per byte, least significant group first, with the
+ * highest bit of every byte but the last set. Signed values are zigzag
+ * encoded first so that small negative values stay short.
+ */
+public final class Varint {
+    /**
+     * The largest number of bytes a varint may take.
+     */
+    public static final int MAX_BYTES = 10;
+
+    private Varint() {
+    }
+
+    /**
+     * REQUIRES: buffer has at least 10 bytes remaining
+     * <p>
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Write the given value as a varint, treating it as unsigned.
+     */
+    public static void put(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte) value);
+    }
+
+    /**
+     * REQUIRES: buffer has at least 10 bytes remaining
+     * <p>
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Write the given value as a zigzag encoded varint.
+     */
+    public static void putSigned(ByteBuffer buffer, long value) {
+        Varint.put(buffer, value << 1 ^ value >> 63);
+    }
+
+    /**
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Read a varint from the buffer.
+     *
+     * @throws IOException If the varint is truncated or longer than 10 bytes
+     */
+    public static long get(ByteBuffer buffer) throws IOException {
+        long value = 0;
+
+        try {
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated varint");
+        }
+
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Read a zigzag encoded varint from the buffer.
+     *
+     * @throws IOException If the varint is truncated or longer than 10 bytes
+     */
+    public static long getSigned(ByteBuffer buffer) throws IOException {
+        long value = Varint.get(buffer);
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Read a zigzag encoded varint from the buffer that must lie
+     * between the given bounds.
+     *
+     * @throws IOException If the varint is malformed or out of bounds
+     */
+    public static int getSignedInt(ByteBuffer buffer, int min, int max) throws IOException {
+        long value = Varint.getSigned(buffer);
+
+        if (value < min || value > max) {
+            throw new IOException("Value out of bounds: " + value);
+        }
+
+        return (int) value;
+    }
+}
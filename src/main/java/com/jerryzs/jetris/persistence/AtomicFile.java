@@ -0,0 +1,286 @@
+package com.jerryzs.jetris.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A utility replacing the content of files atomically, by writing the new
+ * content to a temporary file in the same directory and moving it over the
+ * file, with the guarantees of a {@link Durability} mode.
+ * <p>
+ * A write always replaces the content of every earlier write of the same
+ * file, whatever their modes: a write with {@link Durability#GROUP_SYNC}
+ * still waiting for its commit is dropped by a later write without it.
+ */
+final class AtomicFile {
+    /**
+     * The number of milliseconds between the commits of writes with
+     * {@link Durability#GROUP_SYNC}.
+     */
+    static final long GROUP_COMMIT_INTERVAL = 200;
+
+    private static final Object LOCK = new Object();
+
+    /**
+     * Held while committing, so that the writes of a later commit are never
+     * moved into place before those of an earlier one.
+     */
+    private static final Object COMMIT_LOCK = new Object();
+
+    /**
+     * The temporary file holding the latest content of every file waiting to
+     * be committed.
+     */
+    private static final Map<Path, Path> PENDING = new HashMap<Path, Path>();
+
+    /**
+     * The files whose directory was cleared of the temporary files left behind
+     * by an earlier process.
+     */
+    private static final Set<Path> CLEANED = new HashSet<Path>();
+
+    private static ScheduledExecutorService committer;
+    private static boolean scheduled;
+
+    private AtomicFile() {
+    }
+
+    /**
+     * MODIFIES: content
+     * <p>
+     * EFFECTS: Replace the content of the file at the given path with the
+     * remaining bytes of the buffer. With {@link Durability#GROUP_SYNC}, the
+     * file is only replaced at the next commit.
+     *
+     * @param path       The path of the file
+     * @param content    The new content of the file
+     * @param durability The durability mode of the write
+     * @throws IOException If the content cannot be written
+     */
+    static void write(Path path, ByteBuffer content, Durability durability) throws IOException {
+        Path target = path.toAbsolutePath();
+        AtomicFile.cleanUp(target);
+
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+
+                if (durability == Durability.SYNC) {
+                    channel.force(true);
+                }
+            }
+
+            if (durability == Durability.GROUP_SYNC) {
+                AtomicFile.enqueue(target, temp);
+                return;
+            }
+
+            AtomicFile.replace(target, temp);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        if (durability == Durability.SYNC) {
+            AtomicFile.forceDirectory(target.getParent());
+        }
+    }
+
+    /**
+     * EFFECTS: Commit all writes waiting for the next group commit now.
+     *
+     * @throws IOException If any of the writes cannot be committed
+     */
+    static void sync() throws IOException {
+        synchronized (AtomicFile.COMMIT_LOCK) {
+            Map<Path, Path> pending;
+
+            synchronized (AtomicFile.LOCK) {
+                pending = new HashMap<Path, Path>(AtomicFile.PENDING);
+                AtomicFile.PENDING.clear();
+            }
+
+            AtomicFile.commit(pending);
+        }
+    }
+
+    /**
+     * EFFECTS: Move the given temporary file over the given file right away,
+     * dropping any write of the file waiting for the next group commit, which
+     * would otherwise move older content over it.
+     */
+    private static void replace(Path target, Path temp) throws IOException {
+        synchronized (AtomicFile.COMMIT_LOCK) {
+            Path superseded;
+
+            synchronized (AtomicFile.LOCK) {
+                superseded = AtomicFile.PENDING.remove(target);
+            }
+
+            if (superseded != null) {
+                Files.deleteIfExists(superseded);
+            }
+
+            AtomicFile.move(temp, target);
+        }
+    }
+
+    /**
+     * EFFECTS: Delete the temporary files of the given file left behind by an
+     * earlier process that crashed before moving them, the first time the
+     * file is written by this process.
+     */
+    private static void cleanUp(Path target) throws IOException {
+        synchronized (AtomicFile.LOCK) {
+            if (!AtomicFile.CLEANED.add(target)) {
+                return;
+            }
+        }
+
+        String name = target.getFileName().toString();
+
+        // the names given by Files.createTempFile, a number between the name
+        // of the file and the suffix
+        DirectoryStream.Filter<Path> stale = entry -> {
+            String entryName = entry.getFileName().toString();
+
+            return entryName.length() > name.length() + ".tmp".length()
+                    && entryName.startsWith(name) && entryName.endsWith(".tmp")
+                    && entryName.substring(name.length(), entryName.length() - ".tmp".length())
+                            .chars().allMatch(Character::isDigit);
+        };
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(target.getParent(), stale)) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+        } catch (NoSuchFileException e) {
+            // nothing was ever written there
+        }
+    }
+
+    private static void commit(Map<Path, Path> pending) throws IOException {
+        IOException error = null;
+        Set<Path> directories = new HashSet<Path>();
+
+        for (Map.Entry<Path, Path> write : pending.entrySet()) {
+            try {
+                try (FileChannel channel = FileChannel.open(write.getValue(), StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+
+                AtomicFile.move(write.getValue(), write.getKey());
+                directories.add(write.getKey().getParent());
+            } catch (IOException e) {
+                Files.deleteIfExists(write.getValue());
+                error = e;
+            }
+        }
+
+        for (Path directory : directories) {
+            AtomicFile.forceDirectory(directory);
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static void enqueue(Path target, Path temp) throws IOException {
+        Path superseded;
+
+        synchronized (AtomicFile.LOCK) {
+            superseded = AtomicFile.PENDING.put(target, temp);
+
+            if (!AtomicFile.scheduled) {
+                AtomicFile.committer().schedule(AtomicFile::scheduledCommit,
+                        AtomicFile.GROUP_COMMIT_INTERVAL, TimeUnit.MILLISECONDS);
+                AtomicFile.scheduled = true;
+            }
+        }
+
+        if (superseded != null) {
+            Files.deleteIfExists(superseded);
+        }
+    }
+
+    /**
+     * EFFECTS: Run the given task on the thread committing group writes after
+     * the given delay, for other writers deferring their own syncs.
+     *
+     * @param task  The task to run
+     * @param delay The number of milliseconds to wait before running it
+     */
+    static void schedule(Runnable task, long delay) {
+        synchronized (AtomicFile.LOCK) {
+            AtomicFile.committer().schedule(task, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void scheduledCommit() {
+        synchronized (AtomicFile.LOCK) {
+            AtomicFile.scheduled = false;
+        }
+
+        try {
+            AtomicFile.sync();
+        } catch (IOException e) {
+            // the content of the files that failed is lost; the previous
+            // content is left in place
+        }
+    }
+
+    /**
+     * REQUIRES: Thread.holdsLock(AtomicFile.LOCK)
+     * <p>
+     * EFFECTS: Get the thread committing group writes, starting it and the hook
+     * committing the remaining writes at shutdown if necessary.
+     */
+    private static ScheduledExecutorService committer() {
+        if (AtomicFile.committer == null) {
+            AtomicFile.committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "jetris-group-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            Runtime.getRuntime().addShutdownHook(new Thread(AtomicFile::scheduledCommit, "jetris-group-commit-shutdown"));
+        }
+
+        return AtomicFile.committer;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * EFFECTS: Force the entries of the directory to the storage device, so
+     * that a file moved into it survives a loss of power. This is not
+     * supported on every platform, in which case it does nothing.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.jerryzs.jetris.persistence;
+
+import com.jerryzs.jetris.model.Game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A service saving a game periodically in the background.
+ * <p>
+ * At a frame boundary, the game thread encodes the state of the game into a
+ * buffer of the binary save format, which takes about 100 bytes and no
+ * allocation, and publishes it as the latest snapshot. A writer thread takes
+ * the latest snapshot whenever it is free and writes it to the save file, so
+ * snapshots published while a write is in progress are coalesced and only the
+ * latest one is written. The game thread never waits for the writer thread.
+ * <p>
+ * Three buffers take turns: one is written to by the game thread, one holds
+ * the latest snapshot, and one is being written to the file.
+ */
+public class AutoSave implements Closeable {
+    private final Path path;
+    private final Durability durability;
+    private final long interval;
+
+    private final AtomicReference<ByteBuffer> latest;
+    private final AtomicReference<ByteBuffer> free;
+    private ByteBuffer spare;
+
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private long lastSnapshot;
+    private volatile long writes;
+    private volatile IOException error;
+
+    /**
+     * Start an autosave service writing to the save file at the given path.
+     * <p>
+     * REQUIRES: path != null and durability != null and interval > 0
+     *
+     * @param path       The path of the save file
+     * @param durability The durability mode of the writes
+     * @param interval   The number of frames of a game between snapshots taken
+     *                   by {@link #update(Game)}
+     */
+    public AutoSave(String path, Durability durability, long interval) {
+        this.path = Paths.get(path);
+        this.durability = durability;
+        this.interval = interval;
+
+        this.latest = new AtomicReference<ByteBuffer>();
+        this.free = new AtomicReference<ByteBuffer>(ByteBuffer.allocate(Save.MAX_BINARY_LENGTH));
+        this.spare = ByteBuffer.allocate(Save.MAX_BINARY_LENGTH);
+
+        this.writer = new Thread(this::write, "jetris-autosave");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Take a snapshot of the game if the interval has passed since
+     * the last snapshot. This must be called from the game thread between
+     * frames.
+     *
+     * @param game The game to save
+     */
+    public void update(Game game) {
+        if (game.getFrame() - this.lastSnapshot >= this.interval) {
+            this.snapshot(game);
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Take a snapshot of the game and hand it to the writer thread,
+     * replacing any snapshot it has not started writing yet. Games that are
+     * over are not saved. This must be called from the game thread between
+     * frames.
+     *
+     * @param game The game to save
+     */
+    public void snapshot(Game game) {
+        if (this.closed || game.getPlayfield().getCurrent() == null) {
+            return;
+        }
+
+        ByteBuffer buffer = this.spare;
+        buffer.clear();
+        Save.writeBinary(game, buffer);
+        buffer.flip();
+
+        this.lastSnapshot = game.getFrame();
+
+        ByteBuffer replaced = this.latest.getAndSet(buffer);
+        if (replaced != null) {
+            this.spare = replaced;
+        } else {
+            this.spare = this.free.getAndSet(null);
+            LockSupport.unpark(this.writer);
+        }
+
+        if (this.spare == null) {
+            // the writer thread is still holding its buffer, which it gives
+            // back once the write is finished
+            this.spare = ByteBuffer.allocate(Save.MAX_BINARY_LENGTH);
+        }
+    }
+
+    /**
+     * EFFECTS: Write the latest snapshot whenever there is one, until the
+     * service is closed and the last snapshot is written.
+     */
+    private void write() {
+        while (true) {
+            ByteBuffer buffer = this.latest.getAndSet(null);
+
+            if (buffer == null) {
+                if (this.closed) {
+                    return;
+                }
+
+                LockSupport.park(this);
+                continue;
+            }
+
+            SaveEvent event = new SaveEvent();
+            event.begin();
+            event.bytes = buffer.remaining();
+
+            try {
+                AtomicFile.write(this.path, buffer, this.durability);
+                this.writes++;
+                event.succeeded = true;
+            } catch (IOException e) {
+                this.error = e;
+            }
+
+            if (event.shouldCommit()) {
+                event.operation = SaveEvent.AUTOSAVE;
+                event.path = this.path.toString();
+                event.format = Save.Format.BINARY.name();
+                event.commit();
+            }
+
+            this.free.set(buffer);
+        }
+    }
+
+    /**
+     * EFFECTS: Get the number of snapshots written to the save file so far.
+     *
+     * @return The number of writes
+     */
+    public long getWrites() {
+        return this.writes;
+    }
+
+    /**
+     * EFFECTS: Get the error of the latest write that failed.
+     *
+     * @return The error; or null, if no write has failed
+     */
+    public IOException getError() {
+        return this.error;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Stop taking snapshots and wait for the latest snapshot to be
+     * written and, with {@link Durability#GROUP_SYNC}, committed, so that the
+     * save file can be read or written by others right after.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (this.durability == Durability.GROUP_SYNC) {
+            try {
+                AtomicFile.sync();
+            } catch (IOException e) {
+                this.error = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.jerryzs.jetris.persistence;
+
+/**
+ * How far a file written by the persistence classes is guaranteed to survive
+ * a crash. Every mode replaces the file atomically, so a crash never leaves a
+ * partially written file behind; the modes differ in when the new content is
+ * forced to the storage device.
+ */
+public enum Durability {
+    /**
+     * The content is never forced to the storage device. The file survives a
+     * crash of the game, but may revert to its previous content if the system
+     * loses power.
+     */
+    NO_SYNC,
+
+    /**
+     * The content is forced to the storage device before the file is replaced,
+     * so that a successful write survives a loss of power. This costs at least
+     * 1 fsync per write.
+     */
+    SYNC,
+
+    /**
+     * Writes are queued and committed together periodically. Only the latest
+     * write to each file within a commit is forced and moved into place, so
+     * frequent writes cost at most 1 fsync per file per commit. A write is
+     * visible and durable once it is committed.
+     */
+    GROUP_SYNC
+}
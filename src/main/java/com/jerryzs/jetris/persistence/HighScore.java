@@ -1,28 +1,64 @@
 package com.jerryzs.jetris.persistence;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 public class HighScore {
     private static final String DEFAULT_PATH = "./record";
     private static HighScore INSTANCE = null;
 
     private final File file;
-    private int score;
+
+    // read without the lock, so that reading it never waits on a write
+    private volatile int score;
+
+    private Durability durability;
 
     private HighScore(String path) {
         this.file = new File(path);
+        this.durability = Durability.SYNC;
         this.load();
     }
 
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Set the durability mode of the writes of the record file, which
+     * is {@link Durability#SYNC} by default.
+     *
+     * @param durability The durability mode
+     */
+    public synchronized void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
     public int get() {
         return this.score;
     }
 
-    public void set(int score) {
+    public synchronized void set(int score) {
         this.score = score;
         this.save();
     }
 
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Set the high score to the given score if it is higher, as a
+     * single step with respect to other threads.
+     *
+     * @param score The score of a finished game
+     * @return True if the high score was set; otherwise, false
+     */
+    public synchronized boolean offer(int score) {
+        if (score <= this.score) {
+            return false;
+        }
+
+        this.set(score);
+        return true;
+    }
+
     private void load() {
         if (!(this.file.exists() && this.file.isFile() && this.file.canRead())) {
             return;
@@ -41,21 +77,14 @@ public class HighScore {
         }
 
         try {
-            if (!this.file.createNewFile() && !(this.file.isFile() && this.file.canWrite())) {
-                return;
-            }
-        } catch (IOException e) {
-            return;
-        }
-
-        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(this.file))) {
-            out.writeInt(this.score);
+            AtomicFile.write(this.file.toPath(), ByteBuffer.allocate(Integer.BYTES).putInt(this.score).flip(),
+                    this.durability);
         } catch (IOException e) {
             // ignore
         }
     }
 
-    public static HighScore instance(String path) {
+    public static synchronized HighScore instance(String path) {
         if (HighScore.INSTANCE == null) {
             return HighScore.INSTANCE = new HighScore(path);
         } else {
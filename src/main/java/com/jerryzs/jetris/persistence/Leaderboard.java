@@ -0,0 +1,474 @@
+package com.jerryzs.jetris.persistence;
+
+import com.jerryzs.jetris.model.Game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A leaderboard of finished games, stored in an append-only log.
+ * <p>
+ * The log starts with the magic bytes "JTRL" and a version byte, followed by
+ * 1 fixed-size record per game, each ending with the CRC32 of the rest of the
+ * record. A record torn by a crash is detected by its size or checksum when
+ * the log is opened, and cut off. The best entries are kept in memory, and
+ * once the log has grown past a threshold, it is compacted down to them.
+ * <p>
+ * All methods are thread-safe, so a single leaderboard can be shared by all
+ * the games running in the JVM.
+ */
+public class Leaderboard implements Closeable {
+    public static final int DEFAULT_SIZE = 10;
+
+    private static final String DEFAULT_PATH = "./leaderboard";
+    private static Leaderboard INSTANCE = null;
+
+    private static final byte[] MAGIC = {'J', 'T', 'R', 'L'};
+    private static final byte VERSION = 1;
+    private static final int HEADER = Leaderboard.MAGIC.length + 1;
+
+    private static final int RECORD = 3 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+
+    /**
+     * The smallest number of records in the log before it is compacted.
+     */
+    private static final int MIN_COMPACT_THRESHOLD = 1024;
+
+    private final Path path;
+    private final int size;
+    private final Durability durability;
+    private final int compactThreshold;
+
+    private final Object lock;
+    private final ByteBuffer record;
+    private final CRC32 crc;
+
+    private FileChannel channel;
+    private int records;
+    private long lastForce;
+    private boolean unforced;
+    private boolean forceScheduled;
+
+    private final Entry[] top;
+    private int count;
+
+    /**
+     * Open the leaderboard stored in the log at the given path, creating the
+     * log if it does not exist, and keeping the given number of best entries.
+     * <p>
+     * REQUIRES: path != null and size > 0 and durability != null
+     *
+     * @param path       The path of the log
+     * @param size       The number of best entries to keep
+     * @param durability The durability mode of the appends
+     * @throws IOException If the log cannot be read or created, or is not a
+     *                     leaderboard log
+     */
+    public Leaderboard(Path path, int size, Durability durability) throws IOException {
+        this.path = path;
+        this.size = size;
+        this.durability = durability;
+        this.compactThreshold = Math.max(Leaderboard.MIN_COMPACT_THRESHOLD, 4 * size);
+
+        this.lock = new Object();
+        this.record = ByteBuffer.allocate(Leaderboard.RECORD);
+        this.crc = new CRC32();
+
+        this.top = new Entry[size];
+
+        this.open();
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Open the log for appending, reading its records into the index
+     * and cutting off any torn record at its end, or create the log.
+     */
+    private void open() throws IOException {
+        this.channel = FileChannel.open(this.path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            if (this.channel.size() == 0) {
+                this.channel.write(Leaderboard.header());
+            }
+
+            ByteBuffer log = ByteBuffer.allocate((int) Math.min(this.channel.size(), Integer.MAX_VALUE));
+            while (log.hasRemaining() && this.channel.read(log, log.position()) >= 0) {
+                // read until the buffer is full
+            }
+            log.flip();
+
+            byte[] magic = new byte[Leaderboard.MAGIC.length];
+            if (log.remaining() < Leaderboard.HEADER) {
+                throw new IOException("Not a leaderboard log");
+            }
+            log.get(magic);
+            if (!Arrays.equals(magic, Leaderboard.MAGIC) || log.get() != Leaderboard.VERSION) {
+                throw new IOException("Not a leaderboard log");
+            }
+
+            this.records = 0;
+            this.count = 0;
+
+            while (log.remaining() >= Leaderboard.RECORD) {
+                Entry entry = this.read(log);
+                if (entry == null) {
+                    break;
+                }
+
+                this.index(entry);
+                this.records++;
+            }
+
+            long end = Leaderboard.HEADER + (long) this.records * Leaderboard.RECORD;
+            if (this.channel.size() > end) {
+                this.channel.truncate(end);
+            }
+            this.channel.position(end);
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * EFFECTS: Get the leaderboard shared by all the games in the JVM, opening
+     * it on first use.
+     *
+     * @return The shared leaderboard
+     * @throws IOException If the log cannot be opened
+     */
+    public static synchronized Leaderboard instance() throws IOException {
+        if (Leaderboard.INSTANCE == null) {
+            Leaderboard.INSTANCE = new Leaderboard(Paths.get(Leaderboard.DEFAULT_PATH), Leaderboard.DEFAULT_SIZE,
+                    Durability.SYNC);
+        }
+
+        return Leaderboard.INSTANCE;
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(Leaderboard.HEADER);
+        header.put(Leaderboard.MAGIC);
+        header.put(Leaderboard.VERSION);
+        return header.flip();
+    }
+
+    /**
+     * EFFECTS: Read the next record of the log.
+     *
+     * @return The entry of the record; or null, if its checksum is wrong
+     */
+    private Entry read(ByteBuffer log) {
+        int start = log.position();
+        Entry entry = new Entry(log.getInt(), log.getInt(), log.getInt(), log.getLong(), log.getLong());
+
+        this.crc.reset();
+        this.crc.update(log.duplicate().position(start).limit(log.position()));
+
+        return (int) this.crc.getValue() == log.getInt() ? entry : null;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Add the entry to the best entries if it ranks among them.
+     */
+    private void index(Entry entry) {
+        if (this.count == this.size && Entry.RANKING.compare(entry, this.top[this.count - 1]) >= 0) {
+            return;
+        }
+
+        int i = Math.min(this.count, this.size - 1);
+        while (i > 0 && Entry.RANKING.compare(entry, this.top[i - 1]) < 0) {
+            this.top[i] = this.top[i - 1];
+            i--;
+        }
+
+        this.top[i] = entry;
+        this.count = Math.min(this.count + 1, this.size);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Append the result of a finished game to the log and rank it
+     * among the best entries, compacting the log if it has grown past the
+     * threshold.
+     *
+     * @param entry The result of the game
+     * @throws IOException If the entry cannot be appended
+     */
+    public void submit(Entry entry) throws IOException {
+        synchronized (this.lock) {
+            if (this.channel == null) {
+                throw new IOException("The leaderboard is closed.");
+            }
+
+            this.record.clear();
+            this.record.putInt(entry.points).putInt(entry.lines).putInt(entry.level)
+                    .putLong(entry.duration).putLong(entry.seed);
+
+            this.crc.reset();
+            this.crc.update(this.record.duplicate().flip());
+            this.record.putInt((int) this.crc.getValue());
+            this.record.flip();
+
+            while (this.record.hasRemaining()) {
+                this.channel.write(this.record);
+            }
+            this.force(false);
+
+            this.records++;
+            this.index(entry);
+
+            if (this.records >= this.compactThreshold) {
+                this.compact();
+            }
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Force the appended records to the storage device as required by
+     * the durability mode, or regardless of it if forced is true.
+     */
+    private void force(boolean forced) throws IOException {
+        long now = System.currentTimeMillis();
+
+        if (this.durability == Durability.SYNC
+                || this.durability == Durability.GROUP_SYNC
+                && (forced || now - this.lastForce >= AtomicFile.GROUP_COMMIT_INTERVAL)) {
+            this.channel.force(false);
+            this.lastForce = now;
+            this.unforced = false;
+        } else if (this.durability == Durability.GROUP_SYNC) {
+            // the records appended within the interval are forced together
+            // once it has passed, even if nothing is appended after them
+            this.unforced = true;
+
+            if (!this.forceScheduled) {
+                AtomicFile.schedule(this::scheduledForce,
+                        AtomicFile.GROUP_COMMIT_INTERVAL - (now - this.lastForce));
+                this.forceScheduled = true;
+            }
+        }
+    }
+
+    private void scheduledForce() {
+        synchronized (this.lock) {
+            this.forceScheduled = false;
+
+            if (this.channel == null || !this.unforced) {
+                return;
+            }
+
+            try {
+                this.force(true);
+            } catch (IOException e) {
+                // the records are forced by the next append or close
+            }
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Replace the log atomically with one holding only the best
+     * entries.
+     *
+     * @throws IOException If the log cannot be replaced
+     */
+    public void compact() throws IOException {
+        synchronized (this.lock) {
+            if (this.channel == null) {
+                throw new IOException("The leaderboard is closed.");
+            }
+
+            ByteBuffer log = ByteBuffer.allocate(Leaderboard.HEADER + this.count * Leaderboard.RECORD);
+            log.put(Leaderboard.header());
+
+            for (int i = 0; i < this.count; i++) {
+                Entry entry = this.top[i];
+                int start = log.position();
+                log.putInt(entry.points).putInt(entry.lines).putInt(entry.level)
+                        .putLong(entry.duration).putLong(entry.seed);
+
+                this.crc.reset();
+                this.crc.update(log.duplicate().position(start).limit(log.position()));
+                log.putInt((int) this.crc.getValue());
+            }
+
+            this.channel.close();
+            this.channel = null;
+
+            try {
+                AtomicFile.write(this.path, log.flip(), Durability.SYNC);
+            } finally {
+                this.open();
+            }
+        }
+    }
+
+    /**
+     * EFFECTS: Get the best entries of the leaderboard, best first.
+     *
+     * @return An unmodifiable list of at most the size of the leaderboard
+     */
+    public List<Entry> getTop() {
+        synchronized (this.lock) {
+            return Collections.unmodifiableList(new ArrayList<Entry>(Arrays.asList(this.top).subList(0, this.count)));
+        }
+    }
+
+    /**
+     * EFFECTS: Get the points of the best entry of the leaderboard.
+     *
+     * @return The most points; or 0, if there is no entry
+     */
+    public int getBest() {
+        synchronized (this.lock) {
+            return this.count == 0 ? 0 : this.top[0].points;
+        }
+    }
+
+    /**
+     * EFFECTS: Get the number of records in the log since it was last
+     * compacted.
+     *
+     * @return The number of records
+     */
+    public int getRecords() {
+        synchronized (this.lock) {
+            return this.records;
+        }
+    }
+
+    /**
+     * EFFECTS: Check whether every record appended so far has been forced to
+     * the storage device, if required by the durability mode.
+     */
+    boolean isForced() {
+        synchronized (this.lock) {
+            return !this.unforced;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this.lock) {
+            if (this.channel == null) {
+                return;
+            }
+
+            try {
+                this.force(true);
+            } finally {
+                this.channel.close();
+                this.channel = null;
+            }
+        }
+    }
+
+    /**
+     * The result of a finished game.
+     */
+    public static class Entry {
+        /**
+         * Ranks entries by points, then by lines cleared, then by duration,
+         * with the shortest game first.
+         */
+        public static final Comparator<Entry> RANKING = Comparator
+                .comparingInt((Entry e) -> -e.points)
+                .thenComparingInt(e -> -e.lines)
+                .thenComparingLong(e -> e.duration);
+
+        private final int points;
+        private final int lines;
+        private final int level;
+        private final long duration;
+        private final long seed;
+
+        /**
+         * Create an entry of the result of a game.
+         *
+         * @param points   The points scored
+         * @param lines    The number of lines cleared
+         * @param level    The level reached
+         * @param duration The duration of the game in milliseconds
+         * @param seed     The seed of the sequence of tetrominoes of the game
+         */
+        public Entry(int points, int lines, int level, long duration, long seed) {
+            this.points = points;
+            this.lines = lines;
+            this.level = level;
+            this.duration = duration;
+            this.seed = seed;
+        }
+
+        /**
+         * EFFECTS: Create an entry of the result of the given game.
+         *
+         * @param game     The finished game
+         * @param duration The duration of the game in milliseconds
+         * @return The entry
+         */
+        public static Entry of(Game game, long duration) {
+            return new Entry(game.getScore().getPoints(), game.getScore().getLines(), game.getScore().getLevel(),
+                    duration, game.getSeed());
+        }
+
+        public int getPoints() {
+            return this.points;
+        }
+
+        public int getLines() {
+            return this.lines;
+        }
+
+        public int getLevel() {
+            return this.level;
+        }
+
+        public long getDuration() {
+            return this.duration;
+        }
+
+        public long getSeed() {
+            return this.seed;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof Entry)) {
+                return false;
+            }
+
+            Entry entry = (Entry) o;
+            return this.points == entry.points && this.lines == entry.lines && this.level == entry.level
+                    && this.duration == entry.duration && this.seed == entry.seed;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(31 * (31 * (31 * (31L * this.points + this.lines) + this.level)
+                    + this.duration) + this.seed);
+        }
+    }
+}
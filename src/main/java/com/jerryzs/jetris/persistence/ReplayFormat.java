@@ -0,0 +1,66 @@
+package com.jerryzs.jetris.persistence;
+
+/**
+ * The constants and primitive codecs of the binary replay format.
+ * <p>
+ * A replay starts with a header made of the {@link #MAGIC} bytes, the
+ * {@link #VERSION} byte, the seed of the game as 8 bytes in big-endian and the
+ * initial framerate as a varint. It is followed by a sequence of records, each
+ * starting with a varint holding the number of frames since the previous
+ * record shifted left by 3 bits, and a 3-bit code in the lowest bits. Codes 0
+ * to 6 are the ordinals of the {@link com.jerryzs.jetris.model.Input} values,
+ * and code 7 is followed by a varint identifying a control record.
+ * <p>
+ * Varints are encoded as described by {@link com.jerryzs.jetris.model.Varint}.
+ */
+final class ReplayFormat {
+    static final byte[] MAGIC = {'J', 'T', 'R', 'R'};
+    static final byte VERSION = 1;
+
+    static final int CODE_BITS = 3;
+    static final int CONTROL = 7;
+
+    /**
+     * The control record ending a replay, which has no payload.
+     */
+    static final int END = 0;
+
+    /**
+     * The control record of a change of framerate, followed by the new
+     * framerate as a varint.
+     */
+    static final int FRAMERATE = 1;
+
+    /**
+     * The control record of the outcome of the game, written right before the
+     * end of a replay. It is followed by the points and the number of lines
+     * cleared as varints, and every row of the playfield, packed as in
+     * {@link com.jerryzs.jetris.model.Playfield#getRow(int)}, as a varint.
+     */
+    static final int OUTCOME = 2;
+
+    /**
+     * The control record of a keyframe, followed by the length of the state of
+     * the game as a varint and the state written by
+     * {@link com.jerryzs.jetris.model.Game#write(com.jerryzs.jetris.model.Game, java.nio.ByteBuffer)}.
+     * A keyframe holds the state of the game before the records following it
+     * at the same frame.
+     */
+    static final int KEYFRAME = 3;
+
+    static final int ROWS = 22;
+
+    /**
+     * The largest number of bytes a record may take, i.e., a 10-byte varint
+     * and two 5-byte varints.
+     */
+    static final int MAX_RECORD = 20;
+
+    /**
+     * The largest number of bytes the payload of an outcome record may take.
+     */
+    static final int MAX_OUTCOME = (2 + ReplayFormat.ROWS) * 5;
+
+    private ReplayFormat() {
+    }
+}
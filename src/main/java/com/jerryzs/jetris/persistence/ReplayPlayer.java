@@ -0,0 +1,401 @@
+package com.jerryzs.jetris.persistence;
+
+import com.jerryzs.jetris.model.Game;
+import com.jerryzs.jetris.model.Input;
+import com.jerryzs.jetris.model.Varint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A player that re-executes the inputs of a replay recorded by
+ * {@link ReplayRecorder} on a new game, headlessly and as fast as possible,
+ * and checks that the game reaches the recorded outcome.
+ * <p>
+ * The player can also seek to any frame of the replay, by restoring the game
+ * from the nearest keyframe before the frame, if any, and only running the
+ * frames after it.
+ */
+public class ReplayPlayer {
+    private final ByteBuffer replay;
+    private final long seed;
+    private final int framerate;
+    private final int start;
+
+    private Game game;
+    private long frame;
+
+    private long[] keyframes;
+    private int[] keyframeOffsets;
+    private int keyframeCount;
+
+    private Outcome recorded;
+    private boolean ended;
+
+    /**
+     * Create a player of the given replay, reading it from the position of the
+     * buffer.
+     * <p>
+     * REQUIRES: replay != null
+     *
+     * @param replay The buffer holding the replay
+     * @throws IOException If the replay has an invalid header
+     */
+    public ReplayPlayer(ByteBuffer replay) throws IOException {
+        this.replay = replay;
+
+        byte[] magic = new byte[ReplayFormat.MAGIC.length];
+        if (replay.remaining() < magic.length + 1 + Long.BYTES) {
+            throw new IOException("Truncated header");
+        }
+
+        replay.get(magic);
+        if (!Arrays.equals(magic, ReplayFormat.MAGIC) || replay.get() != ReplayFormat.VERSION) {
+            throw new IOException("Not a replay");
+        }
+
+        this.seed = replay.getLong();
+        this.framerate = ReplayPlayer.framerate(Varint.get(replay));
+        this.start = replay.position();
+        this.game = new Game(this.framerate, this.seed);
+    }
+
+    /**
+     * EFFECTS: Create a player of the replay file at the given path.
+     *
+     * @param path The path of the replay file
+     * @return The player
+     * @throws IOException If the file cannot be read or is not a replay
+     */
+    public static ReplayPlayer open(Path path) throws IOException {
+        return new ReplayPlayer(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    private static int framerate(long framerate) throws IOException {
+        if (framerate <= 0 || framerate > Integer.MAX_VALUE) {
+            throw new IOException("Invalid framerate");
+        }
+
+        return (int) framerate;
+    }
+
+    /**
+     * EFFECTS: Get the game the replay is played on.
+     *
+     * @return The game object
+     */
+    public Game getGame() {
+        return this.game;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * EFFECTS: Get whether the end of the replay has been reached.
+     *
+     * @return True if the replay has ended; otherwise, false
+     */
+    public boolean isEnded() {
+        return this.ended;
+    }
+
+    /**
+     * EFFECTS: Get the outcome of the game as recorded in the replay.
+     *
+     * @return The recorded outcome; or null, if the replay has not been played
+     * until its end
+     */
+    public Outcome getRecordedOutcome() {
+        return this.recorded;
+    }
+
+    /**
+     * MODIFIES: this, this.game
+     * <p>
+     * EFFECTS: Play the next record of the replay, running the game until the
+     * frame of the record first.
+     *
+     * @return False if the end of the replay has been reached; otherwise, true
+     * @throws IOException If the replay is malformed or does not match the game
+     */
+    public boolean step() throws IOException {
+        if (this.ended) {
+            return false;
+        }
+
+        long head = Varint.get(this.replay);
+        this.frame += head >>> ReplayFormat.CODE_BITS;
+        this.advanceTo(this.frame);
+
+        int code = (int) (head & (1 << ReplayFormat.CODE_BITS) - 1);
+        if (code != ReplayFormat.CONTROL) {
+            this.game.perform(Input.VALUES[code]);
+            return true;
+        }
+
+        long control = Varint.get(this.replay);
+        if (control == ReplayFormat.FRAMERATE) {
+            this.game.framerate(ReplayPlayer.framerate(Varint.get(this.replay)));
+        } else if (control == ReplayFormat.OUTCOME) {
+            this.recorded = Outcome.read(this.replay);
+        } else if (control == ReplayFormat.KEYFRAME) {
+            ReplayPlayer.skipKeyframe(this.replay);
+        } else if (control == ReplayFormat.END) {
+            this.ended = true;
+        } else {
+            throw new IOException("Unknown control record " + control);
+        }
+
+        return !this.ended;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Move the game to the given frame of the replay, or to the end
+     * of the replay if it ends before the frame. The game is restored from the
+     * nearest keyframe before the frame if that is closer than the current
+     * frame, or if the frame is before the current frame. The game object may
+     * be replaced as a result.
+     *
+     * @param frame The frame to seek to
+     * @throws IOException If the replay is malformed or does not match the game
+     */
+    public void seek(long frame) throws IOException {
+        if (this.keyframes == null) {
+            this.index();
+        }
+
+        int k = this.keyframeCount - 1;
+        while (k >= 0 && this.keyframes[k] > frame) {
+            k--;
+        }
+
+        long from = k >= 0 ? this.keyframes[k] : 0;
+
+        if (frame < this.game.getFrame() || from > this.game.getFrame()) {
+            if (k >= 0) {
+                this.restore(k);
+            } else {
+                this.replay.position(this.start);
+                this.game = new Game(this.framerate, this.seed);
+                this.frame = 0;
+                this.recorded = null;
+                this.ended = false;
+            }
+        }
+
+        while (!this.ended) {
+            int position = this.replay.position();
+            long next = this.frame + (Varint.get(this.replay) >>> ReplayFormat.CODE_BITS);
+            this.replay.position(position);
+
+            if (next > frame) {
+                this.advanceTo(frame);
+                return;
+            }
+
+            this.step();
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Replace the game with the one in the keyframe at the given
+     * index, and continue the replay from the records after the keyframe.
+     */
+    private void restore(int k) throws IOException {
+        this.replay.position(this.keyframeOffsets[k]);
+        int length = (int) Varint.get(this.replay);
+
+        ByteBuffer state = this.replay.slice();
+        state.limit(length);
+        this.game = Game.read(state);
+
+        this.replay.position(this.replay.position() + length);
+        this.frame = this.keyframes[k];
+        this.recorded = null;
+        this.ended = false;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Scan the records of the replay, without playing them, for the
+     * frames and offsets of its keyframes.
+     */
+    private void index() throws IOException {
+        ByteBuffer replay = this.replay.duplicate();
+        replay.position(this.start);
+
+        this.keyframes = new long[16];
+        this.keyframeOffsets = new int[16];
+
+        long frame = 0;
+        while (true) {
+            long head = Varint.get(replay);
+            frame += head >>> ReplayFormat.CODE_BITS;
+
+            if ((head & (1 << ReplayFormat.CODE_BITS) - 1) != ReplayFormat.CONTROL) {
+                continue;
+            }
+
+            long control = Varint.get(replay);
+            if (control == ReplayFormat.FRAMERATE) {
+                Varint.get(replay);
+            } else if (control == ReplayFormat.OUTCOME) {
+                Outcome.read(replay);
+            } else if (control == ReplayFormat.KEYFRAME) {
+                if (this.keyframeCount == this.keyframes.length) {
+                    this.keyframes = Arrays.copyOf(this.keyframes, 2 * this.keyframeCount);
+                    this.keyframeOffsets = Arrays.copyOf(this.keyframeOffsets, 2 * this.keyframeCount);
+                }
+
+                this.keyframes[this.keyframeCount] = frame;
+                this.keyframeOffsets[this.keyframeCount] = replay.position();
+                this.keyframeCount++;
+
+                ReplayPlayer.skipKeyframe(replay);
+            } else if (control == ReplayFormat.END) {
+                return;
+            } else {
+                throw new IOException("Unknown control record " + control);
+            }
+        }
+    }
+
+    private static void skipKeyframe(ByteBuffer replay) throws IOException {
+        long length = Varint.get(replay);
+
+        if (length > replay.remaining()) {
+            throw new IOException("Truncated keyframe");
+        }
+
+        replay.position(replay.position() + (int) length);
+    }
+
+    /**
+     * MODIFIES: this.game
+     * <p>
+     * EFFECTS: Run the game until it has run the given number of frames.
+     *
+     * @throws IOException If the game is over or paused before the frame
+     */
+    private void advanceTo(long frame) throws IOException {
+        while (this.game.getFrame() < frame) {
+            if (this.game.isPaused()) {
+                throw new IOException("The game stopped at frame " + this.game.getFrame() + " before " + frame);
+            }
+
+            this.game.run();
+        }
+    }
+
+    /**
+     * MODIFIES: this, this.game
+     * <p>
+     * EFFECTS: Play the rest of the replay.
+     *
+     * @return The outcome of the game at the end of the replay
+     * @throws IOException If the replay is malformed or does not match the game
+     */
+    public Outcome play() throws IOException {
+        while (this.step()) {
+            // keep playing
+        }
+
+        return Outcome.of(this.game);
+    }
+
+    /**
+     * MODIFIES: this, this.game
+     * <p>
+     * EFFECTS: Play the rest of the replay and check that the game reaches the
+     * outcome recorded.
+     *
+     * @return True if the replay has a recorded outcome and the game reaches
+     * it; otherwise, false
+     * @throws IOException If the replay is malformed or does not match the game
+     */
+    public boolean verify() throws IOException {
+        Outcome actual = this.play();
+        return actual.equals(this.recorded);
+    }
+
+    /**
+     * The points, the number of lines cleared and the locked blocks of the
+     * playfield of a game at some frame.
+     */
+    public static class Outcome {
+        private final int points;
+        private final int lines;
+        private final int[] rows;
+
+        private Outcome(int points, int lines, int[] rows) {
+            this.points = points;
+            this.lines = lines;
+            this.rows = rows;
+        }
+
+        /**
+         * EFFECTS: Get the current outcome of the given game.
+         */
+        public static Outcome of(Game game) {
+            int[] rows = new int[ReplayFormat.ROWS];
+            for (int y = 0; y < rows.length; y++) {
+                rows[y] = game.getPlayfield().getRow(y);
+            }
+
+            return new Outcome(game.getScore().getPoints(), game.getScore().getLines(), rows);
+        }
+
+        private static Outcome read(ByteBuffer replay) throws IOException {
+            int points = (int) Varint.get(replay);
+            int lines = (int) Varint.get(replay);
+
+            int[] rows = new int[ReplayFormat.ROWS];
+            for (int y = 0; y < rows.length; y++) {
+                rows[y] = (int) Varint.get(replay);
+            }
+
+            return new Outcome(points, lines, rows);
+        }
+
+        public int getPoints() {
+            return this.points;
+        }
+
+        public int getLines() {
+            return this.lines;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof Outcome)) {
+                return false;
+            }
+
+            Outcome outcome = (Outcome) o;
+            return this.points == outcome.points && this.lines == outcome.lines
+                    && Arrays.equals(this.rows, outcome.rows);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * this.points + this.lines) + Arrays.hashCode(this.rows);
+        }
+
+        @Override
+        public String toString() {
+            return "Outcome{points=" + this.points + ", lines=" + this.lines + "}";
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.jerryzs.jetris.persistence;
+
+import com.jerryzs.jetris.model.Game;
+import com.jerryzs.jetris.model.Input;
+import com.jerryzs.jetris.model.Varint;
+import com.jerryzs.jetris.model.InputListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A recorder of the inputs performed on a game, written to a channel in the
+ * compact binary format described by {@link ReplayFormat}. Inputs are
+ * buffered and only written to the channel when the buffer fills up, so an
+ * input typically costs 1 or 2 bytes and no system call.
+ * <p>
+ * A keyframe holding the complete state of the game is written with the first
+ * record after every given number of frames, so that a replay can be played
+ * from any keyframe instead of from the start.
+ * <p>
+ * As the listener methods cannot throw, an I/O error stops the recording and
+ * is thrown by {@link #close()} instead.
+ */
+public class ReplayRecorder implements InputListener, Closeable {
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * The default number of frames between keyframes, i.e., 1 minute at 60
+     * frames per second.
+     */
+    public static final long DEFAULT_KEYFRAME_INTERVAL = 3600;
+
+    private final Game game;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final ByteBuffer keyframe;
+
+    private final long keyframeInterval;
+    private long lastKeyframe;
+
+    private long lastFrame;
+
+    private IOException error;
+    private boolean closed;
+
+    /**
+     * Start recording the given game to the given channel. The game must not
+     * have run or been played yet, since it is replayed from its seed alone.
+     * <p>
+     * REQUIRES: game != null and game.getFrame() == 0 and channel != null
+     *
+     * @param game    The game to record
+     * @param channel The channel to write the replay to
+     * @throws IOException If the header of the replay cannot be written
+     */
+    public ReplayRecorder(Game game, WritableByteChannel channel) throws IOException {
+        this(game, channel, ReplayRecorder.DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Start recording the given game to the given channel, with a keyframe
+     * every given number of frames.
+     * <p>
+     * REQUIRES: game != null and game.getFrame() == 0 and channel != null
+     *
+     * @param game             The game to record
+     * @param channel          The channel to write the replay to
+     * @param keyframeInterval The number of frames between keyframes; or 0 to
+     *                         write no keyframe
+     * @throws IOException If the header of the replay cannot be written
+     */
+    public ReplayRecorder(Game game, WritableByteChannel channel, long keyframeInterval) throws IOException {
+        this.game = game;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(ReplayRecorder.BUFFER_SIZE);
+        this.keyframe = ByteBuffer.allocate(Game.MAX_BINARY_LENGTH);
+        this.keyframeInterval = keyframeInterval;
+
+        this.buffer.put(ReplayFormat.MAGIC);
+        this.buffer.put(ReplayFormat.VERSION);
+        this.buffer.putLong(game.getSeed());
+        Varint.put(this.buffer, game.framerate());
+        this.flush();
+
+        this.game.setInputListener(this);
+    }
+
+    /**
+     * EFFECTS: Start recording the given game to the file at the given path,
+     * replacing the file if it exists.
+     *
+     * @param game The game to record
+     * @param path The path of the replay file
+     * @return The recorder
+     * @throws IOException If the file cannot be opened or written to
+     */
+    public static ReplayRecorder open(Game game, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            return new ReplayRecorder(game, channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void onInput(Input input, long frame) {
+        this.keyframe(frame);
+        this.record(frame, input.ordinal());
+    }
+
+    @Override
+    public void onFramerate(int framerate, long frame) {
+        this.keyframe(frame);
+        if (this.record(frame, ReplayFormat.CONTROL)) {
+            Varint.put(this.buffer, ReplayFormat.FRAMERATE);
+            Varint.put(this.buffer, framerate);
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Write a keyframe holding the state of the game at the given
+     * frame, if the keyframe interval has passed since the last keyframe.
+     */
+    private void keyframe(long frame) {
+        if (this.keyframeInterval <= 0 || frame - this.lastKeyframe < this.keyframeInterval
+                || this.game.getPlayfield().getCurrent() == null) {
+            return;
+        }
+
+        this.keyframe.clear();
+        Game.write(this.game, this.keyframe);
+        this.keyframe.flip();
+
+        if (this.record(frame, ReplayFormat.CONTROL, Varint.MAX_BYTES + this.keyframe.remaining())) {
+            Varint.put(this.buffer, ReplayFormat.KEYFRAME);
+            Varint.put(this.buffer, this.keyframe.remaining());
+            this.buffer.put(this.keyframe);
+            this.lastKeyframe = frame;
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Write the head of a record with the given code, flushing the
+     * buffer first if it may not fit a whole record.
+     *
+     * @return False if the recording has stopped; otherwise, true
+     */
+    private boolean record(long frame, int code) {
+        return this.record(frame, code, 0);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Write the head of a record with the given code, flushing the
+     * buffer first if it may not fit a whole record and a payload of the
+     * given size.
+     *
+     * @return False if the recording has stopped; otherwise, true
+     */
+    private boolean record(long frame, int code, int payload) {
+        if (this.closed || this.error != null) {
+            return false;
+        }
+
+        if (this.buffer.remaining() < ReplayFormat.MAX_RECORD + payload) {
+            try {
+                this.flush();
+            } catch (IOException e) {
+                this.error = e;
+                return false;
+            }
+        }
+
+        Varint.put(this.buffer, (frame - this.lastFrame) << ReplayFormat.CODE_BITS | code);
+        this.lastFrame = frame;
+
+        return true;
+    }
+
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Stop recording, end the replay with the outcome of the game at
+     * its current frame and close the channel.
+     *
+     * @throws IOException If the replay could not be completely written
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+
+        if (this.record(this.game.getFrame(), ReplayFormat.CONTROL, ReplayFormat.MAX_OUTCOME)) {
+            Varint.put(this.buffer, ReplayFormat.OUTCOME);
+            Varint.put(this.buffer, this.game.getScore().getPoints());
+            Varint.put(this.buffer, this.game.getScore().getLines());
+            for (int y = 0; y < ReplayFormat.ROWS; y++) {
+                Varint.put(this.buffer, this.game.getPlayfield().getRow(y));
+            }
+        }
+
+        if (this.record(this.game.getFrame(), ReplayFormat.CONTROL)) {
+            Varint.put(this.buffer, ReplayFormat.END);
+        }
+
+        this.closed = true;
+        this.game.setInputListener(null);
+
+        try {
+            if (this.error != null) {
+                throw this.error;
+            }
+
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+}
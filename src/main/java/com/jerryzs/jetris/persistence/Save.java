@@ -5,15 +5,54 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
  * A tool that facilitates the saving and recovering the complete state of a
- * Jetris game to and from a JSON file.
+ * Jetris game to and from a file, either in the compact binary format or as
+ * JSON. The format of a save file is detected when it is loaded.
  */
 public class Save {
-    private static final String DEFAULT_PATH = "./save.json";
+    private static final String DEFAULT_PATH = "./save";
+
+    /**
+     * The path of the JSON save file written by earlier versions, which is
+     * loaded if there is no save file at the default path.
+     */
+    private static final String LEGACY_PATH = "./save.json";
+
+    private static final byte[] MAGIC = {'J', 'T', 'R', 'S'};
+    private static final byte VERSION = 1;
+
+    /**
+     * The largest number of bytes of a binary save file.
+     */
+    static final int MAX_BINARY_LENGTH = Save.MAGIC.length + 1 + Game.MAX_BINARY_LENGTH;
+
+    /**
+     * The formats in which a save file can be written.
+     */
+    public enum Format {
+        /**
+         * The magic bytes "JTRS", a version byte and the state of the game
+         * written by {@link Game#write(Game, ByteBuffer)}.
+         */
+        BINARY,
+
+        /**
+         * The JSON object created by {@link Game#toJson(Game)}.
+         */
+        JSON
+    }
 
     private final File file;
+    private final Format format;
+
+    private Durability durability;
 
     private Game game;
 
@@ -51,22 +90,53 @@ public class Save {
 
     /**
      * EFFECTS: Initialize a Save object with a specified path and a specified
-     * game object.
+     * game object, saving in the binary format.
      *
      * @param game The game object to save
      * @param path The path to load from and save to
      */
     public Save(Game game, String path) {
+        this(game, path, Format.BINARY);
+    }
+
+    /**
+     * EFFECTS: Initialize a Save object with a specified path, a specified
+     * game object and the format to save in.
+     *
+     * @param game   The game object to save
+     * @param path   The path to load from and save to
+     * @param format The format to save in
+     */
+    public Save(Game game, String path, Format format) {
         this.file = new File(path);
         this.game = game;
+        this.format = format;
+        this.durability = Durability.SYNC;
     }
 
     public Game getGame() {
         return this.game;
     }
 
+    public String getPath() {
+        return this.file.getPath();
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Set the durability mode of the writes of the save file, which
+     * is {@link Durability#SYNC} by default.
+     *
+     * @param durability The durability mode
+     */
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
     /**
-     * EFFECTS: Write the current game state to the save file.
+     * EFFECTS: Write the current game state to the save file, replacing the
+     * previous save file atomically.
      *
      * @return True if the game state is successfully saved to the file;
      * otherwise, false
@@ -76,32 +146,138 @@ public class Save {
             throw new IllegalStateException("No game has been loaded.");
         }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(this.file))) {
-            writer.write(Game.toJson(this.game).toString());
-            return true;
+        SaveEvent event = new SaveEvent();
+        event.begin();
+
+        ByteBuffer buffer = this.format == Format.BINARY
+                ? Save.toBinary(this.game)
+                : ByteBuffer.wrap(Game.toJson(this.game).toString().getBytes(StandardCharsets.UTF_8));
+
+        event.bytes = buffer.remaining();
+
+        try {
+            AtomicFile.write(this.file.toPath(), buffer, this.durability);
+            event.succeeded = true;
         } catch (IOException e) {
-            return false;
+            event.succeeded = false;
         }
+
+        if (event.shouldCommit()) {
+            event.operation = SaveEvent.STORE;
+            event.path = this.file.getPath();
+            event.format = this.format.name();
+            event.commit();
+        }
+
+        return event.succeeded;
     }
 
     /**
-     * EFFECTS: Read the save file and recover the saved game state.
+     * EFFECTS: Read the save file and recover the saved game state, in
+     * whichever format it was saved.
      *
      * @return The game object recovered from the save file or null, if the file
      * does not exist or the save data is incorrect
      */
     public Game load(int framerate) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(this.file))) {
-            StringBuilder json = new StringBuilder();
+        File file = this.file;
+        if (!file.exists() && this.file.getPath().equals(new File(Save.DEFAULT_PATH).getPath())) {
+            file = new File(Save.LEGACY_PATH);
+        }
 
-            int r;
-            while ((r = reader.read()) != -1) {
-                json.append((char) r);
-            }
+        SaveEvent event = new SaveEvent();
+        event.begin();
+
+        Game game = null;
+        Format format = null;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= Integer.MAX_VALUE) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // read until the buffer is full
+                }
+                buffer.flip();
 
-            return this.game = Game.fromJson(new JSONObject(json.toString()), framerate);
+                event.bytes = buffer.remaining();
+                format = Save.isBinary(buffer) ? Format.BINARY : Format.JSON;
+
+                game = format == Format.BINARY
+                        ? Save.fromBinary(buffer, framerate)
+                        : Game.fromJson(new JSONObject(StandardCharsets.UTF_8.decode(buffer).toString()), framerate);
+            }
         } catch (IOException | JSONException e) {
-            return null;
+            game = null;
         }
+
+        if (event.shouldCommit()) {
+            event.operation = SaveEvent.LOAD;
+            event.path = file.getPath();
+            event.format = format == null ? null : format.name();
+            event.succeeded = game != null;
+            event.commit();
+        }
+
+        return game == null ? null : (this.game = game);
+    }
+
+    /**
+     * EFFECTS: Write the state of the given game in the binary format into a
+     * new buffer.
+     *
+     * @return The buffer, ready to be read
+     */
+    static ByteBuffer toBinary(Game game) {
+        ByteBuffer buffer = ByteBuffer.allocate(Save.MAX_BINARY_LENGTH);
+        Save.writeBinary(game, buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * REQUIRES: buffer has at least {@link #MAX_BINARY_LENGTH} bytes remaining
+     * <p>
+     * MODIFIES: buffer
+     * <p>
+     * EFFECTS: Write the state of the given game in the binary format into the
+     * buffer.
+     */
+    static void writeBinary(Game game, ByteBuffer buffer) {
+        buffer.put(Save.MAGIC);
+        buffer.put(Save.VERSION);
+        Game.write(game, buffer);
+    }
+
+    /**
+     * EFFECTS: Recover the game from the content of a binary save file. The
+     * game is resumed if it was saved while paused, as a JSON save would be.
+     *
+     * @throws IOException If the content is not a valid binary save
+     */
+    static Game fromBinary(ByteBuffer buffer, int framerate) throws IOException {
+        buffer.position(buffer.position() + Save.MAGIC.length);
+        if (buffer.get() != Save.VERSION) {
+            throw new IOException("Unsupported save version");
+        }
+
+        Game game = Game.read(buffer);
+        game.framerate(framerate);
+
+        if (game.isPaused()) {
+            game.toggleGame();
+        }
+
+        return game;
+    }
+
+    private static boolean isBinary(ByteBuffer buffer) {
+        if (buffer.remaining() <= Save.MAGIC.length) {
+            return false;
+        }
+
+        byte[] magic = new byte[Save.MAGIC.length];
+        buffer.duplicate().get(magic);
+
+        return Arrays.equals(magic, Save.MAGIC);
     }
 }
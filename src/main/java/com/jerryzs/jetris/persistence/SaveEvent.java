@@ -0,0 +1,44 @@
+package com.jerryzs.jetris.persistence;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder event of a game being stored to or loaded from a
+ * save file, whose duration is the time spent encoding and writing, or reading
+ * and decoding, the game. The event is disabled by default, and costs next to
+ * nothing until a recording enables it, as saves are rare.
+ */
+@Name("com.jerryzs.jetris.Save")
+@Label("Save")
+@Category({"Jetris", "Persistence"})
+@Description("A game stored to or loaded from a save file")
+@Enabled(false)
+@StackTrace(false)
+class SaveEvent extends Event {
+    static final String STORE = "Store";
+    static final String LOAD = "Load";
+    static final String AUTOSAVE = "Autosave";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Path")
+    String path;
+
+    @Label("Format")
+    String format;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
@@ -0,0 +1,225 @@
+package com.jerryzs.jetris.ui;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.terminal.Terminal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A renderer writing ANSI escape sequences straight to the output stream of a
+ * terminal, bypassing the screen of Lanterna. Each run of changed characters
+ * is drawn as a cursor move, skipped if the cursor is already in place, and
+ * the characters of the run, with a color sequence only where the color
+ * changes. Everything drawn in a frame is encoded into a single buffer and
+ * written to the stream at once by {@link #refresh()}.
+ * <p>
+ * The terminal is still used to set up and restore the terminal, and for its
+ * size and inputs.
+ */
+public class AnsiRenderer implements TerminalRenderer {
+    private static final byte ESC = 0x1B;
+
+    private static final byte[] CLEAR = AnsiRenderer.sequence("2J");
+    private static final byte[] RESET = AnsiRenderer.sequence("0m");
+
+    private final Terminal terminal;
+    private final OutputStream out;
+
+    /**
+     * The color sequence of each color of a cell buffer.
+     */
+    private final byte[][] colors;
+
+    private byte[] bytes;
+    private int length;
+
+    // the state of the terminal as of the bytes encoded so far; -1 if unknown
+    private int cursorX;
+    private int cursorY;
+    private int pen;
+
+    private TerminalSize size;
+    private volatile TerminalSize resized;
+
+    /**
+     * EFFECTS: Set up the given terminal for drawing by writing to the given
+     * output stream, which must be the output stream of the terminal.
+     *
+     * @param terminal The terminal to draw on
+     * @param out      The output stream of the terminal
+     * @throws IOException Error propagated from the underlying stream.
+     */
+    public AnsiRenderer(Terminal terminal, OutputStream out) throws IOException {
+        this.terminal = terminal;
+        this.out = out;
+
+        TextColor[] palette = TerminalRenderer.palette();
+        this.colors = new byte[palette.length][];
+        this.colors[0] = AnsiRenderer.sequence("39m");
+        for (int i = 1; i < palette.length; i++) {
+            this.colors[i] = AnsiRenderer.sequence(
+                    new String(palette[i].getForegroundSGRSequence(), StandardCharsets.US_ASCII) + "m");
+        }
+
+        this.bytes = new byte[4096];
+        this.cursorX = -1;
+        this.cursorY = -1;
+        this.pen = -1;
+
+        this.terminal.enterPrivateMode();
+        this.terminal.setCursorVisible(false);
+        this.terminal.flush();
+
+        this.size = this.terminal.getTerminalSize();
+        this.terminal.addResizeListener((t, size) -> this.resized = size);
+    }
+
+    private static byte[] sequence(String parameters) {
+        byte[] sequence = new byte[parameters.length() + 2];
+        sequence[0] = AnsiRenderer.ESC;
+        sequence[1] = '[';
+        for (int i = 0; i < parameters.length(); i++) {
+            sequence[i + 2] = (byte) parameters.charAt(i);
+        }
+        return sequence;
+    }
+
+    @Override
+    public TerminalSize getSize() {
+        return this.size;
+    }
+
+    @Override
+    public TerminalSize doResizeIfNecessary() {
+        TerminalSize resized = this.resized;
+
+        if (resized == null) {
+            return null;
+        }
+
+        this.resized = null;
+        this.size = resized;
+
+        // the terminal may have reflowed what was shown, which is redrawn
+        this.append(AnsiRenderer.CLEAR);
+        this.cursorX = -1;
+        this.cursorY = -1;
+
+        return resized;
+    }
+
+    @Override
+    public void draw(int x, int y, char[] chars, byte[] colors, int offset, int length) {
+        if (x != this.cursorX || y != this.cursorY) {
+            this.moveCursor(x, y);
+        }
+
+        for (int i = offset; i < offset + length; i++) {
+            if (colors[i] != this.pen) {
+                this.pen = colors[i];
+                this.append(this.colors[this.pen]);
+            }
+
+            this.append(chars[i]);
+        }
+
+        this.cursorX = x + length;
+        this.cursorY = y;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Encode a cursor move to the given 0-based column and row.
+     */
+    private void moveCursor(int x, int y) {
+        this.ensure(16);
+        this.bytes[this.length++] = AnsiRenderer.ESC;
+        this.bytes[this.length++] = '[';
+        this.appendNumber(y + 1);
+        this.bytes[this.length++] = ';';
+        this.appendNumber(x + 1);
+        this.bytes[this.length++] = 'H';
+    }
+
+    private void appendNumber(int n) {
+        if (n >= 10) {
+            this.appendNumber(n / 10);
+        }
+
+        this.bytes[this.length++] = (byte) ('0' + n % 10);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Encode the given character in UTF-8. Every character drawn is
+     * in the basic multilingual plane.
+     */
+    private void append(char c) {
+        this.ensure(3);
+
+        if (c < 0x80) {
+            this.bytes[this.length++] = (byte) c;
+        } else if (c < 0x800) {
+            this.bytes[this.length++] = (byte) (0xC0 | c >> 6);
+            this.bytes[this.length++] = (byte) (0x80 | c & 0x3F);
+        } else {
+            this.bytes[this.length++] = (byte) (0xE0 | c >> 12);
+            this.bytes[this.length++] = (byte) (0x80 | c >> 6 & 0x3F);
+            this.bytes[this.length++] = (byte) (0x80 | c & 0x3F);
+        }
+    }
+
+    private void append(byte[] sequence) {
+        this.ensure(sequence.length);
+        System.arraycopy(sequence, 0, this.bytes, this.length, sequence.length);
+        this.length += sequence.length;
+    }
+
+    private void ensure(int space) {
+        if (this.length + space > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(2 * this.bytes.length, this.length + space));
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Write everything drawn since the last refresh to the output
+     * stream in a single write, and flush it.
+     *
+     * @throws IOException Error propagated from the underlying stream.
+     */
+    @Override
+    public void refresh() throws IOException {
+        if (this.length == 0) {
+            return;
+        }
+
+        this.out.write(this.bytes, 0, this.length);
+        this.out.flush();
+        this.length = 0;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Reset the color, and restore the terminal.
+     *
+     * @throws IOException Error propagated from the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        this.append(AnsiRenderer.RESET);
+        this.refresh();
+
+        this.terminal.setCursorVisible(true);
+        this.terminal.exitPrivateMode();
+        this.terminal.flush();
+    }
+}
@@ -1,18 +1,18 @@
 package com.jerryzs.jetris.ui;
 
 import com.googlecode.lanterna.TerminalSize;
-import com.googlecode.lanterna.graphics.TextGraphics;
 import com.googlecode.lanterna.input.KeyStroke;
 import com.googlecode.lanterna.input.KeyType;
-import com.googlecode.lanterna.screen.TerminalScreen;
 import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
+import com.googlecode.lanterna.terminal.Terminal;
+import com.jerryzs.jetris.model.Input;
+import com.jerryzs.jetris.model.Snapshot;
 import com.jerryzs.jetris.model.Tetromino;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 /**
  * The interface between an underlying Jetris game and a terminal environment.
@@ -26,11 +26,30 @@ import java.util.List;
 // suppress warnings on necessary workarounds for ascii auto-test programs
 @SuppressWarnings({"AvoidEscapedUnicodeCharacters", "checkstyle:SuppressWarnings"})
 public class CLI extends UserInterface {
-    private final TerminalScreen screen;
-    private final TextGraphics textGraphics;
+    /**
+     * The ways a CLI can draw on its terminal.
+     */
+    public enum Backend {
+        /**
+         * Through a Lanterna screen.
+         */
+        LANTERNA,
+        /**
+         * By writing ANSI escape sequences straight to the output stream.
+         */
+        ANSI
+    }
+
+    private final Terminal terminal;
+    private final TerminalRenderer renderer;
+    private final CellBuffer buffer;
 
     private TerminalSize terminalSize;
     private int scale;
+    private GlyphTiles tiles;
+
+    private int fps;
+    private char[] fpsText;
 
     /**
      * REQUIRES: in != null and out != null and refreshRate > 0
@@ -44,21 +63,58 @@ public class CLI extends UserInterface {
      *                  second
      */
     public CLI(InputStream in, OutputStream out, int framerate) {
-        super(framerate);
+        this(in, out, framerate, framerate);
+    }
+
+    /**
+     * REQUIRES: in != null and out != null and tickRate > 0 and renderRate >
+     * 0
+     * <p>
+     * EFFECTS: Set up the Lanterna terminal screen and create a new game
+     * session, run and drawn at the given independent rates.
+     *
+     * @param in         InputStream of the terminal
+     * @param out        OutputStream of the terminal
+     * @param tickRate   The number of times the game is updated per second
+     * @param renderRate The number of times the screen is updated per second
+     */
+    public CLI(InputStream in, OutputStream out, int tickRate, int renderRate) {
+        this(in, out, tickRate, renderRate, Backend.LANTERNA);
+    }
+
+    /**
+     * REQUIRES: in != null and out != null and tickRate > 0 and renderRate >
+     * 0 and backend != null
+     * <p>
+     * EFFECTS: Set up the terminal to draw on with the given backend and
+     * create a new game session, run and drawn at the given independent
+     * rates.
+     *
+     * @param in         InputStream of the terminal
+     * @param out        OutputStream of the terminal
+     * @param tickRate   The number of times the game is updated per second
+     * @param renderRate The number of times the screen is updated per second
+     * @param backend    The way to draw on the terminal
+     */
+    public CLI(InputStream in, OutputStream out, int tickRate, int renderRate, Backend backend) {
+        super(tickRate, renderRate);
 
         try {
-            this.screen = new DefaultTerminalFactory(out, in, StandardCharsets.UTF_8).createScreen();
-            this.screen.startScreen();
-            this.screen.setCursorPosition(null);
-			this.terminalSize = this.screen.getTerminalSize();
-            this.textGraphics = this.screen.newTextGraphics();
-            this.scale = Math.max(this.screen.getTerminalSize().getRows() / 22, 1);
+            this.terminal = new DefaultTerminalFactory(out, in, StandardCharsets.UTF_8).createTerminal();
+            this.renderer = backend == Backend.ANSI
+                    ? new AnsiRenderer(this.terminal, out) : new LanternaRenderer(this.terminal);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
+        this.terminalSize = this.renderer.getSize();
+        this.setScale(this.terminalSize.getRows() / 22);
+
+        this.buffer = new CellBuffer(this.terminalSize.getColumns(), this.terminalSize.getRows());
+        this.fpsText = new char[0];
+
         this.mainMenu();
-        this.startTimer();
+        this.startLoop();
     }
 
     @Override
@@ -92,21 +148,27 @@ public class CLI extends UserInterface {
     }
 
     /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Handle every keystroke received since the previous frame. A
+     * terminal does not report the release of a key, so held keys are only
+     * repeated by the terminal itself.
+     *
      * @throws IOException Error propagated from the underlying stream.
      */
     private void checkInput() throws IOException {
-        KeyStroke key = this.screen.pollInput();
+        KeyStroke key;
 
-        if (key != null) {
+        while ((key = this.terminal.pollInput()) != null) {
             if (key.getKeyType() == KeyType.EOF) {
                 this.exit();
             }
 
             if (key.getKeyType() == KeyType.Character) {
-                if (key.getCharacter() == '=' && this.scale < 5) {
-                    this.scale++;
-                } else if (key.getCharacter() == '-' && this.scale > 1) {
-                    this.scale--;
+                if (key.getCharacter() == '=') {
+                    this.setScale(this.scale + 1);
+                } else if (key.getCharacter() == '-') {
+                    this.setScale(this.scale - 1);
                 }
             }
 
@@ -139,7 +201,7 @@ public class CLI extends UserInterface {
     }
 
     /**
-     * REQUIRES: this.screen != null and this.game != null
+     * REQUIRES: this.game != null
      * <p>
      * MODIFIES: this
      * <p>
@@ -157,45 +219,59 @@ public class CLI extends UserInterface {
     }
 
     /**
-     * REQUIRES: this.game != null
-     * <p>
-     * MODIFIES" this.game
+     * MODIFIES: this
      * <p>
-     * EFFECTS" Perform the appropriate action for a keyboard character (ideally
-     * retrieved as a user input).
+     * EFFECTS: Queue the appropriate input for a keyboard character (ideally
+     * retrieved as a user input), to be performed by the game in its next
+     * frame.
      *
      * @param key The keyboard character.
      */
     private void handleInput(char key) {
         if (key == ' ') {
-            this.game.hold();
+            this.getInputQueue().offer(Input.HOLD);
         } else if (key == 'w') {
-            this.game.hardDrop();
+            this.getInputQueue().offer(Input.HARD_DROP);
         } else if (key == 'a') {
-            this.game.moveLeft();
+            this.getInputQueue().offer(Input.MOVE_LEFT);
         } else if (key == 's') {
-            this.game.softDrop();
+            this.getInputQueue().offer(Input.SOFT_DROP);
         } else if (key == 'd') {
-            this.game.moveRight();
+            this.getInputQueue().offer(Input.MOVE_RIGHT);
         } else if (key == 'q' || key == 'k') {
-            this.game.rotateLeft();
+            this.getInputQueue().offer(Input.ROTATE_LEFT);
         } else if (key == 'e' || key == 'l') {
-            this.game.rotateRight();
+            this.getInputQueue().offer(Input.ROTATE_RIGHT);
         }
     }
 
     /**
-     * REQUIRES: this.screen != null
+     * MODIFIES: this
      * <p>
+     * EFFECTS: Set the scale the game is drawn at, clamped to the scales with
+     * tiles, and build the tiles of the scale if it changed.
+     *
+     * @param scale The new scale
+     */
+    private void setScale(int scale) {
+        this.scale = Math.max(GlyphTiles.MIN_SCALE, Math.min(scale, GlyphTiles.MAX_SCALE));
+
+        if (this.tiles == null || this.tiles.getScale() != this.scale) {
+            this.tiles = new GlyphTiles(this.scale);
+        }
+    }
+
+    /**
      * MODIFIES: this
      * <p>
      * EFFECTS: Check if the terminal has been resized and update this with the
      * new terminal size.
      */
     private void updateTerminalSize() {
-        TerminalSize newSize = this.screen.doResizeIfNecessary();
+        TerminalSize newSize = this.renderer.doResizeIfNecessary();
         if (newSize != null) {
             this.terminalSize = newSize;
+            this.buffer.resize(newSize.getColumns(), newSize.getRows());
         }
     }
 
@@ -217,246 +293,176 @@ public class CLI extends UserInterface {
     }
 
     /**
-     * REQUIRES: sb != null
+     * REQUIRES: snapshot != null
      * <p>
-     * MODIFIES: sb
+     * MODIFIES: this.buffer
      * <p>
-     * EFFECTS: Append a scaled square block with box drawing unicode characters
-     * to the StringBuilder if the condition is true; otherwise, append an empty
-     * space the size of a scaled square block.
+     * EFFECTS: Draw the given snapshot of the game into the cell buffer, with
+     * its top left corner at the given column, by copying the tiles of the
+     * current scale, and color the tetrominoes.
      *
-     * @param sb        The StringBuilder object to append to
-     * @param condition Whether to append a solid block or an empty space
+     * @param snapshot The snapshot of the game to draw
+     * @param left     The column to start drawing from
      */
-    private void appendHorizontalBlock(StringBuilder sb, boolean condition) {
-        sb.append((condition ? "\u2588\u2588" : "  ").repeat(this.scale));
-    }
+    private void drawGame(Snapshot snapshot, int left) {
+        GlyphTiles tiles = this.tiles;
+        int scale = tiles.getScale();
+        int margin = tiles.getMarginWidth();
+        int playfield = left + margin + 1;
+        int right = left + tiles.getWidth() - margin;
+
+        this.buffer.put(left, 0, tiles.getTop());
+
+        for (int i = 0; i < Snapshot.HEIGHT * scale; i++) {
+            int line = i + 1;
+            int y = Snapshot.HEIGHT - 1 - i / scale;
+
+            this.drawHoldLine(snapshot, i, left, line);
+            this.buffer.put(left + margin, line, '\u2502');
+            this.buffer.put(playfield, line, tiles.getRow(snapshot.getMask(y)));
+            this.buffer.put(right - 1, line, '\u2502');
+            this.drawNextLine(snapshot, i, right, line);
+
+            if (snapshot.getMask(y) == 0) {
+                continue;
+            }
 
-    /**
-     * REQUIRES: sb != null and line in {0, 1} and tetromino != null
-     * <p>
-     * MODIFIES: sb
-     * <p>
-     * EFFECTS: Append the specific line of the default state of a tetromino to
-     * the StringBuilder.
-     *
-     * @param sb        The StringBuilder object to append to
-     * @param line      The line of the tetromino to append. Since the maximum
-     *                  number of lines occupied by the default state of any
-     *                  tetromino is 2, this argument can only accept 0 or 1.
-     * @param tetromino The tetromino whose default state is to be used
-     */
-    private void appendStandaloneTetromino(StringBuilder sb, int line, Tetromino tetromino) {
-        int l = line / this.scale;
-        for (int k = 0; k < 4; k++) {
-            this.appendHorizontalBlock(sb, tetromino.getType().getStandalone()[4 * l + k] != 0);
+            for (int x = 0; x < Snapshot.WIDTH; x++) {
+                int id = snapshot.get(x, y);
+                if (id != 0) {
+                    this.buffer.color(playfield + x * 2 * scale, line, 2 * scale,
+                            id > 0 ? (byte) id : CellBuffer.GHOST);
+                }
+            }
         }
+
+        this.buffer.put(left, Snapshot.HEIGHT * scale + 1, tiles.getBottom());
     }
 
     /**
-     * REQUIRES: sb != null and line >= 0 and this.game != null
-     * <p>
-     * MODIFIES: sb
+     * MODIFIES: this.buffer
      * <p>
-     * EFFECTS: Append the appropriate texts or drawings for the left margin in
-     * the specified line to the StringBuilder.
-     *
-     * @param sb   The StringBuilder to append to
-     * @param line The line which the left margin is for
+     * EFFECTS: Draw the given line of the left margin, with the held
+     * tetromino, at the given column and row.
      */
-    private void appendLeftPadding(StringBuilder sb, int line) {
-        if (line < this.scale) {
-            sb.append(" ".repeat(this.scale * 2))
-                    .append(CLI.HOLD_TEXT[this.scale - 1][line])
-                    .append(" ".repeat(this.scale * 2));
-        } else if (line < 2 * this.scale || line >= 4 * this.scale || this.game.getHold() == null) {
-            sb.append(" ".repeat(12 * this.scale));
+    private void drawHoldLine(Snapshot snapshot, int line, int x, int y) {
+        int scale = this.tiles.getScale();
+
+        if (line < scale) {
+            this.buffer.put(x, y, this.tiles.getHoldHeader(line));
+        } else if (line < 2 * scale || line >= 4 * scale || snapshot.getHold() == null) {
+            this.buffer.put(x, y, this.tiles.getBlank());
         } else {
-            sb.append(" ".repeat(this.scale * 2));
-            this.appendStandaloneTetromino(sb, line - 2 * this.scale, this.game.getHold());
-            sb.append(" ".repeat(this.scale * 2));
+            this.drawPiece(snapshot.getHold(), line - 2 * scale, x, y);
         }
-
-        sb.append("\u2502");
     }
 
     /**
-     * REQUIRES: line >= 0 and this.game != null
+     * MODIFIES: this.buffer
      * <p>
-     * MODIFIES: sb
-     * <p>
-     * EFFECTS: Append the appropriate texts or drawings for the right margin in
-     * the specified line to the StringBuilder.
-     *
-     * @param sb   The StringBuilder to append to
-     * @param line The line which the right margin is for
+     * EFFECTS: Draw the given line of the right margin, with the preview, at
+     * the given column and row.
      */
-    private void appendRightPadding(StringBuilder sb, int line) {
-        sb.append("\u2502");
-
-        if (line < this.scale) {
-            sb.append(" ".repeat(this.scale * 2))
-                    .append(CLI.NEXT_TEXT[this.scale - 1][line])
-                    .append(" ".repeat(this.scale * 2));
-        } else if (line < 2 * this.scale
-                || (line - 2 * this.scale) % (3 * this.scale) >= 2 * this.scale
-                || line > 16 * this.scale) {
-            sb.append(" ".repeat(12 * this.scale));
+    private void drawNextLine(Snapshot snapshot, int line, int x, int y) {
+        int scale = this.tiles.getScale();
+        int l = line - 2 * scale;
+
+        if (line < scale) {
+            this.buffer.put(x, y, this.tiles.getNextHeader(line));
+        } else if (l < 0 || l % (3 * scale) >= 2 * scale || line > 16 * scale) {
+            this.buffer.put(x, y, this.tiles.getBlank());
         } else {
-            List<Tetromino> next = this.game.getPreview();
-
-            int l = line - 2 * this.scale;
-
-            sb.append(" ".repeat(this.scale * 2));
-            this.appendStandaloneTetromino(sb, l % (3 * this.scale), next.get(l / (3 * this.scale)));
-            sb.append(" ".repeat(this.scale * 2));
+            this.drawPiece(snapshot.getPreview(l / (3 * scale)), l % (3 * scale), x, y);
         }
+    }
+
+    private void drawPiece(Tetromino.Type type, int line, int x, int y) {
+        char[] tile = this.tiles.getPiece(type, line);
 
-        sb.append("\n");
+        this.buffer.put(x, y, tile);
+        this.buffer.color(x, y, tile.length, (byte) (type.ordinal() + 1));
     }
 
     /**
-     * REQUIRES: this.game != null
+     * MODIFIES: this
      * <p>
-     * EFFECTS: Create an array of strings as the graphical representation of
-     * the current state of the game, using unicode box drawing characters. Each
-     * element of the array corresponds to a line that can be printed to a
-     * terminal to form a 2-dimensional drawing of the game.
-     *
-     * @return An array of String objects that represents the game
+     * EFFECTS: Read the pending keystrokes of the terminal.
      */
-    private String[] getGameRepresentation() {
-        StringBuilder sb = new StringBuilder((this.scale * 18 + 5) * this.scale * 20);
-
-        sb
-                .append("  ".repeat(6 * this.scale))
-                .append("\u250C").append("\u2500".repeat(this.scale * 20)).append("\u2510")
-                .append("  ".repeat(6 * this.scale))
-                .append("\n");
-
-        for (int i = 0; i < this.scale * 20; i++) {
-            this.appendLeftPadding(sb, i);
-
-            int y = 19 - i / this.scale;
-            for (int x = 0; x < 10; x++) {
-                this.appendHorizontalBlock(sb, this.game.get(x, y) != 0);
-            }
-
-            this.appendRightPadding(sb, i);
+    @Override
+    protected void pollInput() {
+        try {
+            this.checkInput();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-
-        sb
-                .append("  ".repeat(6 * this.scale))
-                .append("\u2514").append("\u2500".repeat(this.scale * 20)).append("\u2518")
-                .append("  ".repeat(6 * this.scale))
-                .append("\n");
-
-        return sb.toString().split("\n");
     }
 
     /**
-     * REQUIRES: this.screen != null and this.textGraphics != null and this.game
-     * != null
-     * <p>
-     * MODIFIES: this.screen
+     * MODIFIES: this
      * <p>
      * EFFECTS: Draw the most up-to-date frame of the game to the terminal
-     * screen.
+     * screen. The frame is built in the cell buffer, and only the characters
+     * that changed since the previous frame are drawn by the renderer; the
+     * terminal is not refreshed at all if none did. The cells of the terminal
+     * are too coarse to interpolate the fall of the tetromino, so the given
+     * alpha is ignored.
      */
     @Override
-    public void run() {
+    public void render(double alpha) {
+        FrameTimer timer = this.getFrameTimer();
+
         this.updateTerminalSize();
 
-        try {
-            this.screen.clear();
+        Snapshot snapshot = this.getSnapshot();
 
-            String[] text = this.getMenu() != null
-                    ? this.getMenu().getRepresentation(this.terminalSize.getRows()) : this.getGameRepresentation();
+        if (this.getMenu() == null && snapshot == null) {
+            return;
+        }
+
+        this.buffer.clear();
+
+        if (this.getMenu() != null) {
+            String[] text = this.getMenu().getRepresentation(this.terminalSize.getRows());
 
             int x = this.getCenterLeftLimit(text[0].length());
             for (int i = 0; i < text.length; i++) {
-                this.textGraphics.putString(x, i, text[i]);
+                this.buffer.put(x, i, text[i]);
             }
+        } else {
+            this.drawGame(snapshot, this.getCenterLeftLimit(this.tiles.getWidth()));
 
-            this.checkInput();
+            if (this.getFramesPerSecond() != this.fps) {
+                this.fps = this.getFramesPerSecond();
+                this.fpsText = ("FPS: " + this.fps).toCharArray();
+            }
+            this.buffer.put(0, 0, this.fpsText);
+        }
 
-            super.run();
+        timer.mark(FrameTimer.Phase.BUILD);
 
-            if (this.game != null) {
-                this.textGraphics.putString(0, 0, String.format("FPS: %d", this.game.framerate()));
+        try {
+            if (this.buffer.flush(this.renderer) > 0) {
+                this.renderer.refresh();
             }
-
-            this.screen.refresh();
+            timer.mark(FrameTimer.Phase.REFRESH);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public static void main(String[] args) {
-        new CLI(System.in, System.out, 60);
-    }
+    @Override
+    protected void exit() {
+        try {
+            this.renderer.close();
+        } catch (IOException e) {
+            // ignore
+        }
 
-    /**
-     * The "HOLD" text at scale 1-5. {@code CLI.HOLD_TEXT[scale - 1]} gives an
-     * array of {@code length == scale}, with each element being a line to be
-     * printed for the scaled text.
-     */
-    private static final String[][] HOLD_TEXT = new String[][]{
-            {"  HOLD  "},
-            {
-                    " \u2599\u259F  \u259B\u259C  \u259B   \u259B\u259A ",
-                    " \u2598\u259D  \u2580\u2580  \u2580\u2580  \u2580\u2580 ",
-            },
-            {
-                    "   \u2588 \u2588  \u2588\u2580\u2588  \u2588    \u2588\u2580\u2584   ",
-                    "   \u2588\u2584\u2588  \u2588 \u2588  \u2588    \u2588 \u2588   ",
-                    "   \u2588 \u2588  \u2588\u2584\u2588  \u2588\u2584\u2584  \u2588\u2584\u2580   "
-            },
-            {
-                    "  \u2588  \u2588     \u2588\u2588     \u2588       \u2588\u2588\u2588   ",
-                    "  \u2588\u2584\u2584\u2588    \u2588  \u2588    \u2588       \u2588  \u2588  ",
-                    "  \u2588\u2580\u2580\u2588    \u2588  \u2588    \u2588       \u2588  \u2588  ",
-                    "  \u2588  \u2588     \u2588\u2588     \u2588\u2588\u2588\u2588    \u2588\u2588\u2588   "
-            },
-            {
-                    "    \u2588   \u2588     \u2588\u2588\u2588     \u2588        \u2588\u2588\u2588\u2588     ",
-                    "    \u2588   \u2588    \u2588   \u2588    \u2588        \u2588   \u2588    ",
-                    "    \u2588\u2588\u2588\u2588\u2588    \u2588   \u2588    \u2588        \u2588   \u2588    ",
-                    "    \u2588   \u2588    \u2588   \u2588    \u2588        \u2588   \u2588    ",
-                    "    \u2588   \u2588     \u2588\u2588\u2588     \u2588\u2588\u2588\u2588\u2588    "
-                            + "\u2588\u2588\u2588\u2588     "
-            }
-    };
+        super.exit();
+    }
 
-    /**
-     * The "NEXT" text at scale 1-5. {@code CLI.NEXT_TEXT[scale - 1]} gives an
-     * array of {@code length == scale}, with each element being a line to be
-     * printed for the scaled text.
-     */
-    private static final String[][] NEXT_TEXT = new String[][]{
-            {"  NEXT  "},
-            {
-                    " \u259B\u259C  \u259B\u2598  \u259A\u259E  \u259C\u259B ",
-                    " \u2598\u259D  \u2580\u2580  \u2598\u259D  \u259D\u2598 "
-            },
-            {
-                    "   \u2588\u2580\u2588  \u2588\u2580\u2580  \u2588 \u2588  \u2588\u2588\u2588   ",
-                    "   \u2588 \u2588  \u2588\u2584    \u2588    \u2588    ",
-                    "   \u2588 \u2588  \u2588\u2584\u2584  \u2588 \u2588   \u2588    "
-            },
-            {
-                    "  \u2588\u258C \u2588    \u2588\u2588\u2588\u2588    \u2588  \u2588    \u2588\u2588\u2588\u2588  ",
-                    "  \u2588\u2590 \u2588    \u2588        \u259A\u259B      \u2590\u258C   ",
-                    "  \u2588 \u258C\u2588    \u2588\u2580\u2580      \u259E\u2599      \u2590\u258C   ",
-                    "  \u2588 \u2590\u2588    \u2588\u2584\u2584\u2584    \u2588  \u2588     \u2590\u258C   "
-            },
-            {
-                    "    \u2588\u258C  \u2588    \u2588\u2588\u2588\u2588    \u2588   \u2588    "
-                            + "\u2588\u2588\u2588\u2588\u2588    ",
-                    "    \u2588\u2590\u258C \u2588    \u2588        \u2588 \u2588       \u2588      ",
-                    "    \u2588 \u2588 \u2588    \u2588\u2588\u2588       \u2588        \u2588      ",
-                    "    \u2588 \u2590\u258C\u2588    \u2588        \u2588 \u2588       \u2588      ",
-                    "    \u2588  \u2590\u2588    \u2588\u2588\u2588\u2588    \u2588   \u2588      \u2588      "
-            }
-    };
+    public static void main(String[] args) {
+        boolean ansi = args.length > 0 && args[0].equals("--ansi");
+        new CLI(System.in, System.out, 60, 60, ansi ? Backend.ANSI : Backend.LANTERNA);
+    }
 }
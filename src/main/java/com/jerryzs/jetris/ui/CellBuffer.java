@@ -0,0 +1,253 @@
+package com.jerryzs.jetris.ui;
+
+import java.util.Arrays;
+
+/**
+ * A grid of the characters of a terminal screen, double buffered. A frame is
+ * drawn into the back grid from scratch, then compared with the grid of the
+ * frame shown before it, and only the runs of characters that changed are
+ * handed to the terminal. A frame identical to the one before it outputs
+ * nothing at all.
+ * <p>
+ * Each cell also has a color, 0 being the default color of the terminal, 1
+ * to 7 the color of the tetromino with that id, and {@link #GHOST} the color
+ * of the ghost piece. A cell whose color changed is drawn again.
+ */
+public class CellBuffer {
+    /**
+     * The receiver of the runs of characters that changed in a frame.
+     */
+    public interface Sink {
+        /**
+         * EFFECTS: Draw the given run of characters on the given row, starting
+         * at the given column.
+         *
+         * @param x      The column of the first character of the run
+         * @param y      The row of the run
+         * @param chars  The characters of the whole row
+         * @param colors The colors of the whole row
+         * @param offset The index of the first character of the run in chars
+         * @param length The number of characters in the run
+         */
+        void draw(int x, int y, char[] chars, byte[] colors, int offset, int length);
+    }
+
+    /**
+     * The color of the cells of the ghost piece.
+     */
+    public static final byte GHOST = 8;
+
+    /**
+     * The most unchanged characters between 2 changed ones for them to still
+     * be output as a single run, since moving the cursor costs about as much
+     * as writing a few characters.
+     */
+    private static final int MAX_GAP = 4;
+
+    private int width;
+    private int height;
+
+    private char[][] cells;
+    private char[][] shown;
+    private byte[][] colors;
+    private byte[][] shownColors;
+
+    /**
+     * REQUIRES: width >= 0 and height >= 0
+     * <p>
+     * EFFECTS: Create a blank buffer of the given size, none of which is shown
+     * yet.
+     *
+     * @param width  The number of columns
+     * @param height The number of rows
+     */
+    public CellBuffer(int width, int height) {
+        this.resize(width, height);
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * REQUIRES: width >= 0 and height >= 0
+     * <p>
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Resize the buffer to the given size, if different, after which
+     * the whole grid is drawn again by the next flush.
+     *
+     * @param width  The number of columns
+     * @param height The number of rows
+     */
+    public void resize(int width, int height) {
+        if (this.cells != null && width == this.width && height == this.height) {
+            return;
+        }
+
+        this.width = width;
+        this.height = height;
+        this.cells = new char[height][width];
+        this.shown = new char[height][width];
+        this.colors = new byte[height][width];
+        this.shownColors = new byte[height][width];
+
+        this.clear();
+        this.invalidate();
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Forget what is shown on the terminal, so that the whole grid is
+     * drawn again by the next flush.
+     */
+    public void invalidate() {
+        for (char[] row : this.shown) {
+            // a character that is never drawn
+            Arrays.fill(row, '\0');
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Blank the grid of the next frame, in the default color.
+     */
+    public void clear() {
+        for (char[] row : this.cells) {
+            Arrays.fill(row, ' ');
+        }
+
+        for (byte[] row : this.colors) {
+            Arrays.fill(row, (byte) 0);
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Write the given text into the grid of the next frame, starting
+     * at the given column of the given row. The text is clipped to the grid.
+     *
+     * @param x    The column of the first character
+     * @param y    The row
+     * @param text The text to write
+     */
+    public void put(int x, int y, String text) {
+        if (y < 0 || y >= this.height) {
+            return;
+        }
+
+        int from = Math.max(0, -x);
+        int to = Math.min(text.length(), this.width - x);
+
+        if (from < to) {
+            text.getChars(from, to, this.cells[y], x + from);
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Same as {@link #put(int, int, String)}, with the given
+     * characters.
+     */
+    public void put(int x, int y, char[] chars) {
+        if (y < 0 || y >= this.height) {
+            return;
+        }
+
+        int from = Math.max(0, -x);
+        int to = Math.min(chars.length, this.width - x);
+
+        if (from < to) {
+            System.arraycopy(chars, from, this.cells[y], x + from, to - from);
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Write the given character into the grid of the next frame at
+     * the given column of the given row, if within the grid.
+     */
+    public void put(int x, int y, char c) {
+        if (x >= 0 && x < this.width && y >= 0 && y < this.height) {
+            this.cells[y][x] = c;
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Color the given number of cells of the next frame in the given
+     * row, starting at the given column. The cells are clipped to the grid.
+     *
+     * @param x      The column of the first cell
+     * @param y      The row
+     * @param length The number of cells
+     * @param color  The color of the cells
+     */
+    public void color(int x, int y, int length, byte color) {
+        if (y < 0 || y >= this.height) {
+            return;
+        }
+
+        int from = Math.max(0, x);
+        int to = Math.min(x + length, this.width);
+
+        if (from < to) {
+            Arrays.fill(this.colors[y], from, to, color);
+        }
+    }
+
+    /**
+     * MODIFIES: this, sink
+     * <p>
+     * EFFECTS: Hand the runs of characters of the next frame that differ from
+     * the frame shown to the given sink, and make the next frame the one
+     * shown.
+     *
+     * @param sink The receiver of the runs
+     * @return The number of runs handed to the sink; 0 if nothing changed
+     */
+    public int flush(Sink sink) {
+        int runs = 0;
+
+        for (int y = 0; y < this.height; y++) {
+            char[] row = this.cells[y];
+            char[] old = this.shown[y];
+            byte[] colors = this.colors[y];
+            byte[] oldColors = this.shownColors[y];
+
+            int x = 0;
+            while (x < this.width) {
+                if (row[x] == old[x] && colors[x] == oldColors[x]) {
+                    x++;
+                    continue;
+                }
+
+                int start = x;
+                int end = x + 1;
+                for (x = end; x < this.width && x - end <= CellBuffer.MAX_GAP; x++) {
+                    if (row[x] != old[x] || colors[x] != oldColors[x]) {
+                        end = x + 1;
+                    }
+                }
+
+                sink.draw(start, y, row, colors, start, end - start);
+                System.arraycopy(row, start, old, start, end - start);
+                System.arraycopy(colors, start, oldColors, start, end - start);
+                runs++;
+                x = end;
+            }
+        }
+
+        return runs;
+    }
+}
@@ -0,0 +1,262 @@
+package com.jerryzs.jetris.ui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.Arrays;
+
+/**
+ * A timer of the phases of the frames of a user interface, recording the time
+ * spent in each phase of every frame, and in the whole frame, in histograms.
+ * A frame that takes longer than the frame budget misses its deadline, and is
+ * blamed on the phase that took the longest in it.
+ * <p>
+ * The phases of a frame are timed by calling {@link #begin()} at its start,
+ * {@link #mark(Phase)} at the end of each phase, and {@link #end()} at its
+ * end, all from the thread running the frames. A phase run by another thread,
+ * such as painting on the Swing event dispatch thread, can be timed with
+ * {@link #record(Phase, long)} instead, from that thread only, and is then not
+ * part of the frame time.
+ * <p>
+ * A frame missing its deadline also emits a Java Flight Recorder event, which
+ * is disabled by default.
+ */
+public class FrameTimer {
+    /**
+     * The phases of a frame.
+     */
+    public enum Phase {
+        /**
+         * Polling and handling the inputs of the user.
+         */
+        INPUT,
+        /**
+         * Running the game by 1 frame.
+         */
+        RUN,
+        /**
+         * Building the representation of the game or menu.
+         */
+        BUILD,
+        /**
+         * Drawing the representation to the screen.
+         */
+        REFRESH;
+
+        private static final Phase[] VALUES = Phase.values();
+    }
+
+    private static final EventType OVERRUN = EventType.getEventType(Overrun.class);
+
+    private final long budget;
+
+    private final Histogram[] phases;
+    private final Histogram frames;
+
+    private final long[] elapsed;
+    private final long[] missed;
+    private volatile long missedTotal;
+
+    private long start;
+    private long last;
+
+    /**
+     * REQUIRES: budget > 0
+     * <p>
+     * EFFECTS: Create a timer of frames that must each take at most the given
+     * number of nanoseconds.
+     *
+     * @param budget The frame budget in nanoseconds
+     */
+    public FrameTimer(long budget) {
+        this.budget = budget;
+
+        this.phases = new Histogram[Phase.VALUES.length];
+        for (int i = 0; i < this.phases.length; i++) {
+            this.phases[i] = new Histogram();
+        }
+        this.frames = new Histogram();
+
+        this.elapsed = new long[Phase.VALUES.length];
+        this.missed = new long[Phase.VALUES.length];
+    }
+
+    public long getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Start timing a frame.
+     */
+    public void begin() {
+        this.start = System.nanoTime();
+        this.last = this.start;
+        Arrays.fill(this.elapsed, 0);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: End the given phase of the frame, which started at the end of
+     * the previous phase or at the start of the frame.
+     *
+     * @param phase The phase just run
+     */
+    public void mark(Phase phase) {
+        long now = System.nanoTime();
+        long time = now - this.last;
+
+        this.phases[phase.ordinal()].record(time);
+        this.elapsed[phase.ordinal()] += time;
+        this.last = now;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Record the given time spent in a phase outside of the frames.
+     *
+     * @param phase The phase run
+     * @param time  The time spent in the phase in nanoseconds
+     */
+    public void record(Phase phase, long time) {
+        this.phases[phase.ordinal()].record(time);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: End the frame, and count it as missing its deadline if it took
+     * longer than the budget.
+     */
+    public void end() {
+        long time = System.nanoTime() - this.start;
+        this.frames.record(time);
+
+        if (time <= this.budget) {
+            return;
+        }
+
+        int slowest = 0;
+        for (int i = 1; i < this.elapsed.length; i++) {
+            if (this.elapsed[i] > this.elapsed[slowest]) {
+                slowest = i;
+            }
+        }
+
+        this.missed[slowest]++;
+        this.missedTotal++;
+
+        if (FrameTimer.OVERRUN.isEnabled()) {
+            Overrun event = new Overrun();
+            event.time = time;
+            event.budget = this.budget;
+            event.slowest = Phase.VALUES[slowest].name();
+            event.input = this.elapsed[Phase.INPUT.ordinal()];
+            event.run = this.elapsed[Phase.RUN.ordinal()];
+            event.build = this.elapsed[Phase.BUILD.ordinal()];
+            event.refresh = this.elapsed[Phase.REFRESH.ordinal()];
+            event.commit();
+        }
+    }
+
+    /**
+     * EFFECTS: Get the histogram of the time spent in the given phase, in
+     * nanoseconds.
+     *
+     * @param phase The phase
+     * @return The histogram of the phase
+     */
+    public Histogram getHistogram(Phase phase) {
+        return this.phases[phase.ordinal()];
+    }
+
+    /**
+     * EFFECTS: Get the histogram of the time taken by whole frames, in
+     * nanoseconds.
+     *
+     * @return The histogram of the frames
+     */
+    public Histogram getFrameHistogram() {
+        return this.frames;
+    }
+
+    /**
+     * EFFECTS: Get the number of frames that took longer than the budget.
+     *
+     * @return The number of frames that missed their deadline
+     */
+    public long getMissedDeadlines() {
+        return this.missedTotal;
+    }
+
+    /**
+     * EFFECTS: Get the number of frames that took longer than the budget and
+     * spent the longest in the given phase.
+     *
+     * @param phase The phase
+     * @return The number of missed deadlines blamed on the phase
+     */
+    public long getMissedDeadlines(Phase phase) {
+        return this.missed[phase.ordinal()];
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Clear all the times recorded.
+     */
+    public void reset() {
+        for (Histogram histogram : this.phases) {
+            histogram.reset();
+        }
+        this.frames.reset();
+
+        Arrays.fill(this.missed, 0);
+        this.missedTotal = 0;
+    }
+
+    @Name("com.jerryzs.jetris.FrameOverrun")
+    @Label("Frame Overrun")
+    @Category({"Jetris", "Interface"})
+    @Description("A frame that took longer than the frame budget")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Overrun extends Event {
+        @Label("Frame Time")
+        @Timespan
+        long time;
+
+        @Label("Budget")
+        @Timespan
+        long budget;
+
+        @Label("Slowest Phase")
+        String slowest;
+
+        @Label("Input")
+        @Timespan
+        long input;
+
+        @Label("Run")
+        @Timespan
+        long run;
+
+        @Label("Build")
+        @Timespan
+        long build;
+
+        @Label("Refresh")
+        @Timespan
+        long refresh;
+    }
+}
@@ -1,7 +1,9 @@
 package com.jerryzs.jetris.ui;
 
 import com.jerryzs.jetris.model.Game;
-import com.jerryzs.jetris.model.Score;
+import com.jerryzs.jetris.model.Input;
+import com.jerryzs.jetris.model.InputQueue;
+import com.jerryzs.jetris.model.Snapshot;
 import com.jerryzs.jetris.model.Tetromino;
 import com.jerryzs.jetris.persistence.HighScore;
 
@@ -9,16 +11,40 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
-import java.util.LinkedList;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executors;
 
 public class GUI extends UserInterface implements WindowListener {
     private final JFrame frame;
 
+    /**
+     * The view of the game shown, if any, which is replaced on the event
+     * dispatch thread and drawn by the thread running the game.
+     */
+    private volatile GameGraphics graphics;
+
     public GUI(int framerate) {
-        super(framerate);
+        this(framerate, framerate);
+    }
+
+    /**
+     * REQUIRES: tickRate > 0 and renderRate > 0
+     * <p>
+     * EFFECTS: Open a window running games at the given tick rate, and
+     * drawing them at the given render rate.
+     *
+     * @param tickRate   The number of frames of the game per second
+     * @param renderRate The number of frames drawn per second
+     */
+    public GUI(int tickRate, int renderRate) {
+        super(tickRate, renderRate);
 
         this.frame = new JFrame();
         this.frame.setBackground(Color.WHITE);
@@ -28,9 +54,16 @@ public class GUI extends UserInterface implements WindowListener {
         this.frame.setFocusable(true);
 
         this.frame.addWindowListener(this);
+        this.frame.addWindowFocusListener(new WindowAdapter() {
+            @Override
+            public void windowLostFocus(WindowEvent e) {
+                // the releases of the keys held go elsewhere from now on
+                GUI.this.getInputQueue().releaseAll(System.nanoTime());
+            }
+        });
 
         this.mainMenu();
-        this.startTimer();
+        this.startLoop();
     }
 
     @Override
@@ -43,19 +76,19 @@ public class GUI extends UserInterface implements WindowListener {
         return new GUMenu("JETRIS",
                 "High score: " + HighScore.instance().get(),
                 List.of(
-                    new GUMenu.Item("Start", this::start),
-                    new GUMenu.Item("Load save", this::load),
-                    new GUMenu.Item("Exit", this::exit)
+                    new GUMenu.Item("Start", this.onLoop(this::start)),
+                    new GUMenu.Item("Load save", this.onLoop(this::load)),
+                    new GUMenu.Item("Exit", this.onLoop(this::exit))
                 ));
     }
 
     @Override
     protected Menu getPauseMenu() {
-        return new GUMenu("PAUSED", this::resume, List.of(
-                new GUMenu.Item("Resume", this::resume),
-                new GUMenu.Item("Save", this::save),
-                new GUMenu.Item("Main menu", this::mainMenu),
-                new GUMenu.Item("Exit", this::exit)
+        return new GUMenu("PAUSED", this.onLoop(this::resumeIfPaused), List.of(
+                new GUMenu.Item("Resume", this.onLoop(this::resumeIfPaused)),
+                new GUMenu.Item("Save", this.onLoop(this::save)),
+                new GUMenu.Item("Main menu", this.onLoop(this::mainMenu)),
+                new GUMenu.Item("Exit", this.onLoop(this::exit))
         ));
     }
 
@@ -63,17 +96,29 @@ public class GUI extends UserInterface implements WindowListener {
     protected Menu getGameOverMenu() {
         return new GUMenu("GAME OVER",
                 "Score: " + this.game.getScore().getPoints(),
-				this::mainMenu,
+				this.onLoop(this::mainMenu),
                 List.of(
-                        new GUMenu.Item("Retry", this::start),
-                        new GUMenu.Item("Main menu", this::mainMenu),
-                        new GUMenu.Item("Exit", this::exit)
+                        new GUMenu.Item("Retry", this.onLoop(this::start)),
+                        new GUMenu.Item("Main menu", this.onLoop(this::mainMenu)),
+                        new GUMenu.Item("Exit", this.onLoop(this::exit))
                 ));
     }
 
+    /**
+     * EFFECTS: Wrap the given action of a menu, which is triggered on the event
+     * dispatch thread, so that it runs on the thread running the game, between
+     * its frames.
+     */
+    private Runnable onLoop(Runnable action) {
+        return () -> this.submit(Executors.callable(action));
+    }
+
     @Override
     protected void save() {
-        super.save();
+        // the menu may be gone by the time a click is handled
+        if (this.getMenu() != null) {
+            super.save();
+        }
     }
 
     @Override
@@ -112,29 +157,51 @@ public class GUI extends UserInterface implements WindowListener {
         this.update();
     }
 
+    /**
+     * EFFECTS: Show the menu or the game of this interface as it is now, on
+     * the event dispatch thread.
+     */
     private void update() {
-        this.frame.getContentPane().removeAll();
+        GUMenu menu = this.getMenu();
+        Game game = this.game;
 
-        for (KeyListener listener : this.frame.getKeyListeners()) {
-            this.frame.removeKeyListener(listener);
+        // stop drawing the game right away, rather than once the menu is shown
+        if (menu != null) {
+            this.graphics = null;
         }
 
-        if (this.getMenu() != null) {
-            this.frame.add(this.getMenu());
-            this.frame.addKeyListener(this.getMenu());
-        } else {
-            GUI.GameGraphics graphics = new GUI.GameGraphics(this.game, this);
-            this.frame.add(graphics);
-            this.frame.addKeyListener(graphics);
-        }
+        SwingUtilities.invokeLater(() -> {
+            this.frame.getContentPane().removeAll();
 
-        this.frame.revalidate();
+            for (KeyListener listener : this.frame.getKeyListeners()) {
+                this.frame.removeKeyListener(listener);
+            }
+
+            if (menu != null) {
+                this.graphics = null;
+                this.frame.add(menu);
+                this.frame.addKeyListener(menu);
+            } else {
+                GUI.GameGraphics graphics = new GUI.GameGraphics(game, this);
+                this.frame.add(graphics);
+                this.frame.addKeyListener(graphics);
+                this.graphics = graphics;
+            }
+
+            this.frame.revalidate();
+        });
     }
 
     @Override
-    public void run() {
-        super.run();
-        this.frame.repaint();
+    public void render(double alpha) {
+        GUI.GameGraphics graphics = this.graphics;
+
+        // a game is drawn actively on this thread; a menu is left to Swing
+        if (graphics != null) {
+            graphics.render(alpha);
+        } else {
+            this.frame.repaint();
+        }
     }
 
     public static void main(String[] args) {
@@ -146,81 +213,220 @@ public class GUI extends UserInterface implements WindowListener {
         this.exit();
     }
 
-    private static class GameGraphics extends JPanel implements KeyListener {
+    /**
+     * The view of a game, drawn actively by the thread running the game into
+     * the buffers of a {@link BufferStrategy}, rather than painted on the
+     * event dispatch thread. Everything that only depends on the size of the
+     * view, i.e., the fonts, the boxes with their headings, and a sprite of a
+     * block of each tetromino, is drawn once per size into images the graphics
+     * pipeline can keep in video memory, so that a frame is mostly a few
+     * image copies.
+     */
+    private static class GameGraphics extends Canvas implements KeyListener {
         private final Game game;
 
         private final GUI gui;
 
+        private BufferStrategy strategy;
+
+        private int width;
+        private int height;
+
+        private int blockSize;
+        private int playfieldLeft;
+        private int holdLeft;
+        private int holdBottom;
+        private int nextLeft;
+
+        private Font scoreFont;
+        private int scoreLineHeight;
+
+        /**
+         * The boxes and headings drawn under every frame.
+         */
+        private BufferedImage chrome;
+
+        /**
+         * A block of the tetromino of each id, the ghost piece at index 0.
+         */
+        private final BufferedImage[] sprites = new BufferedImage[Tetromino.Type.values().length + 1];
+
+        private Snapshot scored;
+        private int level = -1;
+        private int points = -1;
+        private int[] lastScore;
+        private List<String> scoreLines;
+
         private GameGraphics(Game game, GUI gui) {
             this.game = game;
             this.gui = gui;
             this.setBackground(Color.WHITE);
+            this.setIgnoreRepaint(true);
+
+            // the keys are listened to by the window
+            this.setFocusable(false);
         }
 
-        @Override
-        public void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2d = (Graphics2D) g;
+        /**
+         * MODIFIES: this
+         * <p>
+         * EFFECTS: Draw the frame last published by the game, with the given
+         * fraction of a tick elapsed since, and show it. Nothing is drawn
+         * before the view is on screen, or if it is too small for a block.
+         *
+         * @param alpha The fraction of a tick elapsed since the last tick
+         */
+        private void render(double alpha) {
+            // read the frame published by the game, never the live game
+            Snapshot snapshot = this.game.getSnapshot();
+            if (snapshot == null || !this.isDisplayable() || this.getHeight() < Snapshot.HEIGHT) {
+                return;
+            }
 
-            int blockSize = (this.getHeight() / 20);
+            if (this.strategy == null) {
+                this.createBufferStrategy(2);
+                this.strategy = this.getBufferStrategy();
+            }
 
-            int top = 0;
-            int bottom = blockSize * 20;
+            if (this.getWidth() != this.width || this.getHeight() != this.height) {
+                this.layOut(this.getWidth(), this.getHeight());
+            }
 
-            int playfieldLeft = (this.getWidth() - 10 * blockSize) / 2;
-            int playfieldRight = playfieldLeft + 10 * blockSize;
+            this.updateScoreLines(snapshot);
 
-            int holdRight = playfieldLeft - blockSize / 2;
-            int holdLeft = holdRight - blockSize * 5;
-            int holdBottom = blockSize * 5;
+            FrameTimer timer = this.gui.getFrameTimer();
 
-            int nextLeft = playfieldRight + blockSize / 2;
-            int nextRight = nextLeft + blockSize * 5;
-            int nextBottom = blockSize * 17;
+            do {
+                do {
+                    Graphics2D g = (Graphics2D) this.strategy.getDrawGraphics();
+                    try {
+                        this.draw(snapshot, g, alpha);
+                    } finally {
+                        g.dispose();
+                    }
+                } while (this.strategy.contentsRestored());
 
-            this.drawPlayfield(g2d, blockSize, playfieldLeft, playfieldRight, top, bottom);
-            this.drawHold(g2d, blockSize, holdLeft, holdRight, top, holdBottom);
-            this.drawNext(g2d, blockSize, nextLeft, nextRight, top, nextBottom);
-            this.drawScore(this.game.getScore(), g2d, holdLeft, holdBottom + blockSize, bottom);
+                timer.mark(FrameTimer.Phase.BUILD);
+                this.strategy.show();
+            } while (this.strategy.contentsLost());
+
+            Toolkit.getDefaultToolkit().sync();
+            timer.mark(FrameTimer.Phase.REFRESH);
         }
 
-        private void drawPlayfield(Graphics2D g, int s, int pl, int pr, int pt, int pb) {
-            g.drawLine(pl, pt, pl, pb);
-            g.drawLine(pr, pt, pr, pb);
-            g.drawLine(pl, pb, pr, pb);
+        /**
+         * REQUIRES: height >= 20
+         * <p>
+         * MODIFIES: this
+         * <p>
+         * EFFECTS: Lay the view out for the given size, and draw its fonts,
+         * boxes and sprites again for it.
+         */
+        private void layOut(int width, int height) {
+            this.width = width;
+            this.height = height;
 
-            Tetromino.Type[] types = Tetromino.Type.values();
+            int s = height / Snapshot.HEIGHT;
+            int bottom = s * Snapshot.HEIGHT;
 
-            for (int i = 19; i >= 0; i--) {
-                for (int j = 0; j < 10; j++) {
-                    int t = this.game.get(j, i);
+            this.blockSize = s;
 
-                    if (t == 0) {
-                        continue;
-                    }
+            this.playfieldLeft = (width - Snapshot.WIDTH * s) / 2;
+            int playfieldRight = this.playfieldLeft + Snapshot.WIDTH * s;
+
+            int holdRight = this.playfieldLeft - s / 2;
+            this.holdLeft = holdRight - s * 5;
+            this.holdBottom = s * 5;
+
+            this.nextLeft = playfieldRight + s / 2;
+            int nextRight = this.nextLeft + s * 5;
+            int nextBottom = s * 17;
+
+            this.scoreFont = new Font(Font.MONOSPACED, Font.PLAIN, bottom / 35);
+            this.scoreLineHeight = this.getFontMetrics(this.scoreFont).getHeight();
+
+            GraphicsConfiguration config = this.getGraphicsConfiguration();
+
+            this.chrome = config.createCompatibleImage(width, height);
+            Graphics2D g = this.chrome.createGraphics();
+            try {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+
+                g.setColor(Color.BLACK);
+                g.drawLine(this.playfieldLeft, 0, this.playfieldLeft, bottom);
+                g.drawLine(playfieldRight, 0, playfieldRight, bottom);
+                g.drawLine(this.playfieldLeft, bottom, playfieldRight, bottom);
+
+                g.setFont(new Font(Font.MONOSPACED, Font.BOLD, height / 25));
+                this.drawOpenBoxWithHeading("HOLD", g, s, this.holdLeft, holdRight, 0, this.holdBottom);
+                this.drawOpenBoxWithHeading("NEXT", g, s, this.nextLeft, nextRight, 0, nextBottom);
+            } finally {
+                g.dispose();
+            }
+
+            this.sprites[0] = config.createCompatibleImage(s, s);
+            g = this.sprites[0].createGraphics();
+            g.setColor(Color.LIGHT_GRAY);
+            g.fillRect(0, 0, s, s);
+            g.dispose();
+
+            for (Tetromino.Type type : Tetromino.Type.values()) {
+                BufferedImage sprite = config.createCompatibleImage(s + 1, s + 1);
+                g = sprite.createGraphics();
+                g.setColor(Color.BLACK);
+                g.drawRect(0, 0, s, s);
+                g.setColor(type.getColor());
+                g.fillRect(0, 0, s, s);
+                g.dispose();
+
+                this.sprites[type.ordinal() + 1] = sprite;
+            }
+        }
+
+        private void draw(Snapshot snapshot, Graphics2D g, double alpha) {
+            g.drawImage(this.chrome, 0, 0, null);
+
+            int s = this.blockSize;
+
+            this.drawPlayfield(snapshot, g, s, this.playfieldLeft, alpha);
+            this.drawHold(snapshot, g, s, this.holdLeft);
+            this.drawNext(snapshot, g, s, this.nextLeft);
+            this.drawScore(g, this.holdLeft, this.holdBottom + s);
+        }
 
+        private void drawPlayfield(Snapshot snapshot, Graphics2D g, int s, int pl, double alpha) {
+            int fall = (int) (snapshot.getFall(alpha) * s);
+
+            for (int i = Snapshot.HEIGHT - 1; i >= 0; i--) {
+                int row = snapshot.getRow(i);
+                int active = snapshot.getActiveMask(i);
+                int ghost = snapshot.getGhostMask(i);
+
+                if (row == 0 && ghost == 0) {
+                    continue;
+                }
+
+                for (int j = 0; j < Snapshot.WIDTH; j++) {
+                    int t = row >>> 3 * j & 7;
                     int x = pl + j * s;
                     int y = (19 - i) * s;
 
                     if (t > 0) {
-                        g.setColor(Color.BLACK);
-                        g.drawRect(x, y, s, s);
-                        g.setColor(types[t - 1].getColor());
-                    } else {
-                        g.setColor(Color.LIGHT_GRAY);
+                        if ((active >>> j & 1) != 0) {
+                            y += fall;
+                        }
+                    } else if ((ghost >>> j & 1) == 0) {
+                        continue;
                     }
 
-                    g.fillRect(x, y, s, s);
+                    g.drawImage(this.sprites[t], x, y, null);
                 }
             }
-
-            g.setColor(Color.BLACK);
         }
 
-        private void drawHold(Graphics2D g, int s, int hl, int hr, int ht, int hb) {
-            Tetromino t = this.game.getHold();
-
-            this.drawOpenBoxWithHeading("HOLD", g, s, hl, hr, ht, hb);
+        private void drawHold(Snapshot snapshot, Graphics2D g, int s, int hl) {
+            Tetromino.Type t = snapshot.getHold();
 
             if (t == null) {
                 return;
@@ -229,38 +435,58 @@ public class GUI extends UserInterface implements WindowListener {
             this.drawStandaloneTetromino(t, g, s, hl, s);
         }
 
-        private void drawNext(Graphics2D g, int s, int nl, int nr, int nt, int nb) {
-            List<Tetromino> next = this.game.getPreview();
-
-            this.drawOpenBoxWithHeading("NEXT", g, s, nl, nr, nt, nb);
-
-            for (int i = 0; i < next.size(); i++) {
-                this.drawStandaloneTetromino(next.get(i), g, s, nl, s + i * 3 * s);
+        private void drawNext(Snapshot snapshot, Graphics2D g, int s, int nl) {
+            for (int i = 0; i < Snapshot.PREVIEW_LENGTH; i++) {
+                this.drawStandaloneTetromino(snapshot.getPreview(i), g, s, nl, s + i * 3 * s);
             }
         }
 
-        private void drawScore(Score score, Graphics2D g, int x, int y, int b) {
-            int size = b / 35;
-
-            g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, size));
-            int h = g.getFontMetrics().getHeight();
+        private void drawScore(Graphics2D g, int x, int y) {
+            g.setColor(Color.BLACK);
+            g.setFont(this.scoreFont);
+            int h = this.scoreLineHeight;
 
             int i = 1;
-            for (String line : this.getScoreLines(score)) {
+            for (String line : this.scoreLines) {
                 g.drawString(line, x, y + h * i);
                 i++;
             }
         }
 
-        private LinkedList<String> getScoreLines(Score score) {
-            LinkedList<String> lines = new LinkedList<String>();
+        /**
+         * MODIFIES: this
+         * <p>
+         * EFFECTS: Format the lines of the score again, if the score of the
+         * given snapshot differs from the one they were formatted for.
+         */
+        private void updateScoreLines(Snapshot snapshot) {
+            if (snapshot == this.scored) {
+                return;
+            }
+            this.scored = snapshot;
+
+            int[] lastScore = snapshot.getLastScore();
+
+            if (snapshot.getLevel() == this.level && snapshot.getPoints() == this.points
+                    && Arrays.equals(lastScore, this.lastScore)) {
+                return;
+            }
+
+            this.level = snapshot.getLevel();
+            this.points = snapshot.getPoints();
+            this.lastScore = lastScore;
+            this.scoreLines = this.getScoreLines(snapshot);
+        }
 
-            lines.add(String.format("LEVEL: %8s", score.getLevel()));
+        private List<String> getScoreLines(Snapshot snapshot) {
+            List<String> lines = new ArrayList<String>();
+
+            lines.add(String.format("LEVEL: %8s", snapshot.getLevel()));
             lines.add("");
 
-            lines.add(String.format("SCORE: %8s", score.getPoints()));
+            lines.add(String.format("SCORE: %8s", snapshot.getPoints()));
 
-            int[] prev = score.getLastScore();
+            int[] prev = this.lastScore;
 
             if (prev != null) {
                 this.appendScoreChangeLines(lines, prev);
@@ -298,55 +524,58 @@ public class GUI extends UserInterface implements WindowListener {
             g.drawLine(r, t, r, b);
             g.drawLine(l, b, r, b);
 
-            g.setFont(new Font(Font.MONOSPACED, Font.BOLD, this.getHeight() / 25));
             g.drawString(h, l + s * 1.5f, s);
         }
 
-        private void drawStandaloneTetromino(Tetromino at, Graphics2D g, int s, int l, int t) {
-            int[] standalone = at.getType().getStandalone();
+        private void drawStandaloneTetromino(Tetromino.Type type, Graphics2D g, int s, int l, int t) {
+            int[] standalone = type.getStandalone();
+            BufferedImage sprite = this.sprites[type.ordinal() + 1];
 
             for (int i = 0; i < standalone.length; i++) {
                 if (standalone[i] == 0) {
                     continue;
                 }
 
-                int x = l + s / 2 + i % 4 * s;
-                int y = t + s + i / 4 * s;
-
-                g.setColor(Color.BLACK);
-                g.drawRect(x, y, s, s);
-                g.setColor(at.getType().getColor());
-                g.fillRect(x, y, s, s);
+                g.drawImage(sprite, l + s / 2 + i % 4 * s, t + s + i / 4 * s, null);
             }
-
-            g.setColor(Color.BLACK);
         }
 
         @Override
         public void keyPressed(KeyEvent e) {
             int c = e.getKeyCode();
+            InputQueue inputs = this.gui.getInputQueue();
 
+            // key events arrive on the event dispatch thread, so they are
+            // queued for the thread running the game
             if (c == KeyEvent.VK_A) {
-                this.game.moveLeft();
+                inputs.press(Input.MOVE_LEFT, System.nanoTime());
             } else if (c == KeyEvent.VK_D) {
-                this.game.moveRight();
+                inputs.press(Input.MOVE_RIGHT, System.nanoTime());
             } else if (c == KeyEvent.VK_S) {
-                this.game.softDrop();
+                inputs.offer(Input.SOFT_DROP);
             } else if (c == KeyEvent.VK_W) {
-                this.game.hardDrop();
+                inputs.offer(Input.HARD_DROP);
             } else if (c == KeyEvent.VK_Q) {
-                this.game.rotateLeft();
+                inputs.offer(Input.ROTATE_LEFT);
             } else if (c == KeyEvent.VK_E) {
-                this.game.rotateRight();
+                inputs.offer(Input.ROTATE_RIGHT);
             } else if (c == KeyEvent.VK_ESCAPE) {
-                this.gui.pause();
+                this.gui.submit(this.gui::pauseIfPlaying);
             } else if (c == KeyEvent.VK_SPACE) {
-                this.game.hold();
+                inputs.offer(Input.HOLD);
             }
         }
 
         @Override
         public void keyReleased(KeyEvent e) {
+            int c = e.getKeyCode();
+
+            // held moves are repeated by the auto-shift until released
+            if (c == KeyEvent.VK_A) {
+                this.gui.getInputQueue().release(Input.MOVE_LEFT, System.nanoTime());
+            } else if (c == KeyEvent.VK_D) {
+                this.gui.getInputQueue().release(Input.MOVE_RIGHT, System.nanoTime());
+            }
         }
 
         @Override
@@ -124,7 +124,8 @@ public class GUMenu extends JPanel implements Menu, KeyListener {
 
     @Override
     public void setMessage(String message) {
-        this.buttons.get(this.active).setText(message);
+        // set by the thread running the game
+        SwingUtilities.invokeLater(() -> this.buttons.get(this.active).setText(message));
     }
 
     protected static class Item extends AbstractMap.SimpleImmutableEntry<String, Runnable> {
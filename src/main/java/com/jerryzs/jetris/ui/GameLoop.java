@@ -0,0 +1,190 @@
+package com.jerryzs.jetris.ui;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed-timestep loop running on its own thread, timed by
+ * {@link System#nanoTime()}. The logic of the target is ticked at a fixed
+ * rate, by as many ticks as the time elapsed calls for, and the target is
+ * rendered at its own rate in between, with the fraction of a tick elapsed
+ * since the last tick so that it can interpolate what it draws.
+ * <p>
+ * When the loop falls behind, e.g. because a render or the whole process
+ * stalled, it catches up by at most {@link #MAX_CATCH_UP} ticks at once and
+ * drops the rest of the time, so that the game slows down for a moment rather
+ * than spiralling into ever longer catch-ups.
+ */
+public class GameLoop implements Runnable {
+    /**
+     * The most ticks run back to back to catch up with the time elapsed.
+     */
+    public static final int MAX_CATCH_UP = 5;
+
+    /**
+     * The logic and rendering driven by a loop.
+     */
+    public interface Target {
+        /**
+         * MODIFIES: this
+         * <p>
+         * EFFECTS: Advance the logic by 1 tick.
+         */
+        void tick();
+
+        /**
+         * MODIFIES: this
+         * <p>
+         * EFFECTS: Draw the latest state of the logic.
+         *
+         * @param alpha The fraction of a tick elapsed since the last tick,
+         *              from 0 inclusive to 1 exclusive
+         */
+        void render(double alpha);
+    }
+
+    private final Target target;
+    private final long step;
+    private final long interval;
+    private final FrameTimer timer;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    private volatile long ticks;
+    private volatile long renders;
+    private volatile long dropped;
+
+    /**
+     * REQUIRES: target != null and tickRate > 0 and renderRate > 0
+     * <p>
+     * EFFECTS: Create a loop ticking and rendering the given target at the
+     * given rates, timing each iteration with the given frame timer, if any.
+     *
+     * @param target     The target to drive
+     * @param tickRate   The number of ticks per second
+     * @param renderRate The number of renders per second
+     * @param timer      The frame timer; or null
+     */
+    public GameLoop(Target target, int tickRate, int renderRate, FrameTimer timer) {
+        this.target = target;
+        this.step = 1_000_000_000L / tickRate;
+        this.interval = 1_000_000_000L / renderRate;
+        this.timer = timer;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Start running the loop on a new thread, if not running.
+     */
+    public synchronized void start() {
+        if (this.running) {
+            return;
+        }
+
+        this.running = true;
+        this.thread = new Thread(this, "jetris-loop");
+        this.thread.start();
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Stop the loop after its current iteration. If called from a
+     * thread other than the loop, wait for the loop to stop.
+     */
+    public void stop() {
+        Thread thread;
+
+        synchronized (this) {
+            this.running = false;
+            thread = this.thread;
+        }
+
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+
+        LockSupport.unpark(thread);
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long lag = 0;
+        long nextRender = previous;
+
+        while (this.running) {
+            long now = System.nanoTime();
+            lag += now - previous;
+            previous = now;
+
+            if (lag >= (GameLoop.MAX_CATCH_UP + 1) * this.step) {
+                long excess = lag - GameLoop.MAX_CATCH_UP * this.step;
+                this.dropped += excess / this.step;
+                lag -= excess / this.step * this.step;
+            }
+
+            boolean render = now - nextRender >= 0;
+
+            if (lag >= this.step || render) {
+                if (this.timer != null) {
+                    this.timer.begin();
+                }
+
+                while (lag >= this.step) {
+                    this.target.tick();
+                    this.ticks++;
+                    lag -= this.step;
+                }
+
+                if (render) {
+                    this.target.render((double) lag / this.step);
+                    this.renders++;
+
+                    nextRender += this.interval;
+                    if (now - nextRender >= 0) {
+                        // skip the renders that are already late
+                        nextRender = now + this.interval;
+                    }
+                }
+
+                if (this.timer != null) {
+                    this.timer.end();
+                }
+            }
+
+            long wait = Math.min(this.step - lag, nextRender - System.nanoTime());
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+
+    /**
+     * EFFECTS: Get the number of ticks run so far.
+     */
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * EFFECTS: Get the number of renders run so far.
+     */
+    public long getRenders() {
+        return this.renders;
+    }
+
+    /**
+     * EFFECTS: Get the number of ticks dropped so far to cap the catch-up.
+     */
+    public long getDropped() {
+        return this.dropped;
+    }
+}
@@ -0,0 +1,258 @@
+package com.jerryzs.jetris.ui;
+
+import com.jerryzs.jetris.model.Snapshot;
+import com.jerryzs.jetris.model.Tetromino;
+
+import java.util.Arrays;
+
+/**
+ * The character tiles from which the CLI draws a game at a given scale, built
+ * once per scale so that drawing a frame only copies whole tiles into the
+ * cell buffer, without building any string.
+ * <p>
+ * A game is drawn as a left margin with the held tetromino, the playfield in
+ * a box, and a right margin with the preview. Each of the 1024 patterns of a
+ * row of the playfield has its own tile, as does each line of the default
+ * state of each tetromino, padded to the width of a margin.
+ */
+final class GlyphTiles {
+    public static final int MIN_SCALE = 1;
+    public static final int MAX_SCALE = 5;
+
+    private static final char BLOCK = '\u2588';
+
+    private final int scale;
+
+    private final char[][] rows;
+    private final char[][][] pieces;
+    private final char[] blank;
+    private final char[][] holdHeader;
+    private final char[][] nextHeader;
+    private final char[] top;
+    private final char[] bottom;
+
+    /**
+     * REQUIRES: MIN_SCALE <= scale <= MAX_SCALE
+     * <p>
+     * EFFECTS: Build the tiles of the given scale, at which every cell of the
+     * playfield is scale rows high and 2 * scale columns wide.
+     *
+     * @param scale The scale of the tiles
+     */
+    GlyphTiles(int scale) {
+        this.scale = scale;
+
+        this.rows = new char[1 << Snapshot.WIDTH][];
+        for (int mask = 0; mask < this.rows.length; mask++) {
+            char[] row = new char[Snapshot.WIDTH * 2 * scale];
+            for (int x = 0; x < Snapshot.WIDTH; x++) {
+                this.fillCell(row, x * 2 * scale, (mask >>> x & 1) != 0);
+            }
+            this.rows[mask] = row;
+        }
+
+        Tetromino.Type[] types = Tetromino.Type.values();
+        this.pieces = new char[types.length][2][];
+        for (Tetromino.Type type : types) {
+            int[] standalone = type.getStandalone();
+
+            for (int l = 0; l < 2; l++) {
+                char[] line = this.blankMargin();
+                for (int k = 0; k < 4; k++) {
+                    this.fillCell(line, 2 * scale + k * 2 * scale, standalone[4 * l + k] != 0);
+                }
+                this.pieces[type.ordinal()][l] = line;
+            }
+        }
+
+        this.blank = this.blankMargin();
+        this.holdHeader = this.header(GlyphTiles.HOLD_TEXT[scale - 1]);
+        this.nextHeader = this.header(GlyphTiles.NEXT_TEXT[scale - 1]);
+
+        this.top = this.border('\u250C', '\u2510');
+        this.bottom = this.border('\u2514', '\u2518');
+    }
+
+    private void fillCell(char[] line, int offset, boolean block) {
+        Arrays.fill(line, offset, offset + 2 * this.scale, block ? GlyphTiles.BLOCK : ' ');
+    }
+
+    private char[] blankMargin() {
+        char[] margin = new char[this.getMarginWidth()];
+        Arrays.fill(margin, ' ');
+        return margin;
+    }
+
+    private char[][] header(String[] text) {
+        char[][] header = new char[text.length][];
+
+        for (int i = 0; i < text.length; i++) {
+            header[i] = this.blankMargin();
+            text[i].getChars(0, text[i].length(), header[i], 2 * this.scale);
+        }
+
+        return header;
+    }
+
+    private char[] border(char left, char right) {
+        char[] border = new char[this.getWidth()];
+        Arrays.fill(border, ' ');
+
+        int margin = this.getMarginWidth();
+        border[margin] = left;
+        Arrays.fill(border, margin + 1, margin + 1 + Snapshot.WIDTH * 2 * this.scale, '\u2500');
+        border[border.length - margin - 1] = right;
+
+        return border;
+    }
+
+    public int getScale() {
+        return this.scale;
+    }
+
+    /**
+     * EFFECTS: Get the width of a margin beside the playfield, in columns.
+     */
+    public int getMarginWidth() {
+        return 12 * this.scale;
+    }
+
+    /**
+     * EFFECTS: Get the width of the whole drawing of a game, in columns.
+     */
+    public int getWidth() {
+        return 2 * this.getMarginWidth() + 2 + Snapshot.WIDTH * 2 * this.scale;
+    }
+
+    /**
+     * EFFECTS: Get the height of the whole drawing of a game, in rows.
+     */
+    public int getHeight() {
+        return Snapshot.HEIGHT * this.scale + 2;
+    }
+
+    /**
+     * REQUIRES: 0 <= mask < 1024
+     * <p>
+     * EFFECTS: Get the tile of a line of a row of the playfield, with a block
+     * in each column whose bit is set in the given mask.
+     */
+    public char[] getRow(int mask) {
+        return this.rows[mask];
+    }
+
+    /**
+     * REQUIRES: 0 <= line < 2 * scale
+     * <p>
+     * EFFECTS: Get the tile of the given line of the default state of the
+     * given tetromino, padded to the width of a margin.
+     */
+    public char[] getPiece(Tetromino.Type type, int line) {
+        return this.pieces[type.ordinal()][line / this.scale];
+    }
+
+    /**
+     * EFFECTS: Get a blank margin.
+     */
+    public char[] getBlank() {
+        return this.blank;
+    }
+
+    /**
+     * REQUIRES: 0 <= line < scale
+     * <p>
+     * EFFECTS: Get the given line of the heading of the hold margin.
+     */
+    public char[] getHoldHeader(int line) {
+        return this.holdHeader[line];
+    }
+
+    /**
+     * REQUIRES: 0 <= line < scale
+     * <p>
+     * EFFECTS: Get the given line of the heading of the preview margin.
+     */
+    public char[] getNextHeader(int line) {
+        return this.nextHeader[line];
+    }
+
+    /**
+     * EFFECTS: Get the top line of the drawing, with the top of the box of
+     * the playfield.
+     */
+    public char[] getTop() {
+        return this.top;
+    }
+
+    /**
+     * EFFECTS: Get the bottom line of the drawing, with the bottom of the box
+     * of the playfield.
+     */
+    public char[] getBottom() {
+        return this.bottom;
+    }
+
+    /**
+     * The "HOLD" text at scale 1-5. {@code GlyphTiles.HOLD_TEXT[scale - 1]}
+     * gives an array of {@code length == scale}, with each element being a
+     * line to be printed for the scaled text.
+     */
+    private static final String[][] HOLD_TEXT = new String[][]{
+            {"  HOLD  "},
+            {
+                    " \u2599\u259F  \u259B\u259C  \u259B   \u259B\u259A ",
+                    " \u2598\u259D  \u2580\u2580  \u2580\u2580  \u2580\u2580 ",
+            },
+            {
+                    "   \u2588 \u2588  \u2588\u2580\u2588  \u2588    \u2588\u2580\u2584   ",
+                    "   \u2588\u2584\u2588  \u2588 \u2588  \u2588    \u2588 \u2588   ",
+                    "   \u2588 \u2588  \u2588\u2584\u2588  \u2588\u2584\u2584  \u2588\u2584\u2580   "
+            },
+            {
+                    "  \u2588  \u2588     \u2588\u2588     \u2588       \u2588\u2588\u2588   ",
+                    "  \u2588\u2584\u2584\u2588    \u2588  \u2588    \u2588       \u2588  \u2588  ",
+                    "  \u2588\u2580\u2580\u2588    \u2588  \u2588    \u2588       \u2588  \u2588  ",
+                    "  \u2588  \u2588     \u2588\u2588     \u2588\u2588\u2588\u2588    \u2588\u2588\u2588   "
+            },
+            {
+                    "    \u2588   \u2588     \u2588\u2588\u2588     \u2588        \u2588\u2588\u2588\u2588     ",
+                    "    \u2588   \u2588    \u2588   \u2588    \u2588        \u2588   \u2588    ",
+                    "    \u2588\u2588\u2588\u2588\u2588    \u2588   \u2588    \u2588        \u2588   \u2588    ",
+                    "    \u2588   \u2588    \u2588   \u2588    \u2588        \u2588   \u2588    ",
+                    "    \u2588   \u2588     \u2588\u2588\u2588     \u2588\u2588\u2588\u2588\u2588    "
+                            + "\u2588\u2588\u2588\u2588     "
+            }
+    };
+
+    /**
+     * The "NEXT" text at scale 1-5. {@code GlyphTiles.NEXT_TEXT[scale - 1]}
+     * gives an array of {@code length == scale}, with each element being a
+     * line to be printed for the scaled text.
+     */
+    private static final String[][] NEXT_TEXT = new String[][]{
+            {"  NEXT  "},
+            {
+                    " \u259B\u259C  \u259B\u2598  \u259A\u259E  \u259C\u259B ",
+                    " \u2598\u259D  \u2580\u2580  \u2598\u259D  \u259D\u2598 "
+            },
+            {
+                    "   \u2588\u2580\u2588  \u2588\u2580\u2580  \u2588 \u2588  \u2588\u2588\u2588   ",
+                    "   \u2588 \u2588  \u2588\u2584    \u2588    \u2588    ",
+                    "   \u2588 \u2588  \u2588\u2584\u2584  \u2588 \u2588   \u2588    "
+            },
+            {
+                    "  \u2588\u258C \u2588    \u2588\u2588\u2588\u2588    \u2588  \u2588    \u2588\u2588\u2588\u2588  ",
+                    "  \u2588\u2590 \u2588    \u2588        \u259A\u259B      \u2590\u258C   ",
+                    "  \u2588 \u258C\u2588    \u2588\u2580\u2580      \u259E\u2599      \u2590\u258C   ",
+                    "  \u2588 \u2590\u2588    \u2588\u2584\u2584\u2584    \u2588  \u2588     \u2590\u258C   "
+            },
+            {
+                    "    \u2588\u258C  \u2588    \u2588\u2588\u2588\u2588    \u2588   \u2588    "
+                            + "\u2588\u2588\u2588\u2588\u2588    ",
+                    "    \u2588\u2590\u258C \u2588    \u2588        \u2588 \u2588       \u2588      ",
+                    "    \u2588 \u2588 \u2588    \u2588\u2588\u2588       \u2588        \u2588      ",
+                    "    \u2588 \u2590\u258C\u2588    \u2588        \u2588 \u2588       \u2588      ",
+                    "    \u2588  \u2590\u2588    \u2588\u2588\u2588\u2588    \u2588   \u2588      \u2588      "
+            }
+    };
+}
@@ -0,0 +1,139 @@
+package com.jerryzs.jetris.ui;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative long values, such as durations in nanoseconds,
+ * in the style of an HDR histogram. Values are counted in buckets whose width
+ * grows with the magnitude of the values, so that any value is reported with
+ * a relative error of at most 1 in {@code 2^SUB_BITS}, from a fixed array of
+ * counts. Recording a value takes a few arithmetic operations and never
+ * allocates.
+ * <p>
+ * A histogram is meant to be recorded by a single thread. Other threads may
+ * read it at any time, but may then see the counts of a value before its
+ * maximum, or the other way around.
+ */
+public class Histogram {
+    /**
+     * The number of bits of precision of the values counted.
+     */
+    public static final int SUB_BITS = 5;
+
+    private static final int SUB_COUNT = 1 << Histogram.SUB_BITS;
+
+    private final long[] counts;
+
+    private volatile long count;
+    private volatile long max;
+
+    public Histogram() {
+        this.counts = new long[Histogram.index(Long.MAX_VALUE) + 1];
+    }
+
+    /**
+     * EFFECTS: Get the index of the bucket counting the given value. Values
+     * below {@code 2 * SUB_COUNT} are counted exactly, and each following
+     * power of 2 is split into {@code SUB_COUNT} buckets.
+     */
+    private static int index(long value) {
+        if (value < 2 * Histogram.SUB_COUNT) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - Histogram.SUB_BITS;
+        return (shift << Histogram.SUB_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * EFFECTS: Get the highest value counted by the bucket at the given index.
+     */
+    private static long highest(int index) {
+        if (index < 2 * Histogram.SUB_COUNT) {
+            return index;
+        }
+
+        int shift = (index >>> Histogram.SUB_BITS) - 1;
+        long sub = index - ((long) shift << Histogram.SUB_BITS);
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Count the given value, or 0 if the value is negative.
+     *
+     * @param value The value to count
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        this.counts[Histogram.index(value)]++;
+        this.count++;
+
+        if (value > this.max) {
+            this.max = value;
+        }
+    }
+
+    /**
+     * EFFECTS: Get the number of values counted.
+     *
+     * @return The count
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * EFFECTS: Get the largest value counted, exactly.
+     *
+     * @return The largest value; or 0, if no value has been counted
+     */
+    public long getMax() {
+        return this.max;
+    }
+
+    /**
+     * REQUIRES: 0 <= percentile <= 100
+     * <p>
+     * EFFECTS: Get the value at the given percentile of the values counted,
+     * such that the given percentage of the values are at most the value,
+     * within the precision of the histogram.
+     *
+     * @param percentile The percentile, e.g. 99 for the 99th percentile
+     * @return The value at the percentile; or 0, if no value has been counted
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (long count : this.counts) {
+            total += count;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+
+            if (seen >= rank) {
+                return Math.min(Histogram.highest(i), this.max);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Clear all the values counted.
+     */
+    public void reset() {
+        Arrays.fill(this.counts, 0);
+        this.count = 0;
+        this.max = 0;
+    }
+}
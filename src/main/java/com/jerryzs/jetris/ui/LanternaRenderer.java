@@ -0,0 +1,64 @@
+package com.jerryzs.jetris.ui;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.graphics.TextGraphics;
+import com.googlecode.lanterna.screen.Screen;
+import com.googlecode.lanterna.screen.TerminalScreen;
+import com.googlecode.lanterna.terminal.Terminal;
+
+import java.io.IOException;
+
+/**
+ * A renderer drawing on a Lanterna screen, which keeps its own copy of the
+ * terminal and works out the changes to send on each refresh.
+ */
+public class LanternaRenderer implements TerminalRenderer {
+    private final TerminalScreen screen;
+    private final TextGraphics graphics;
+    private final TextColor[] palette;
+
+    /**
+     * EFFECTS: Start a screen on the given terminal, without a cursor.
+     *
+     * @param terminal The terminal to draw on
+     * @throws IOException Error propagated from the underlying stream.
+     */
+    public LanternaRenderer(Terminal terminal) throws IOException {
+        this.screen = new TerminalScreen(terminal);
+        this.screen.startScreen();
+        this.screen.setCursorPosition(null);
+
+        this.graphics = this.screen.newTextGraphics();
+        this.palette = TerminalRenderer.palette();
+    }
+
+    @Override
+    public TerminalSize getSize() {
+        return this.screen.getTerminalSize();
+    }
+
+    @Override
+    public TerminalSize doResizeIfNecessary() {
+        return this.screen.doResizeIfNecessary();
+    }
+
+    @Override
+    public void draw(int x, int y, char[] chars, byte[] colors, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            TextColor color = this.palette[colors[offset + i]];
+            this.graphics.setForegroundColor(color == null ? TextColor.ANSI.DEFAULT : color);
+            this.graphics.setCharacter(x + i, y, chars[offset + i]);
+        }
+    }
+
+    @Override
+    public void refresh() throws IOException {
+        this.screen.refresh(Screen.RefreshType.DELTA);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.screen.stopScreen();
+    }
+}
@@ -0,0 +1,194 @@
+package com.jerryzs.jetris.ui;
+
+import com.jerryzs.jetris.model.InputQueue;
+import com.jerryzs.jetris.model.Snapshot;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The MBean of a session of a user interface. See {@link SessionMXBean}. Its
+ * attributes are read by the threads of the MBean server, so the state of the
+ * game is read from its latest snapshot rather than from the live game.
+ */
+class Session implements SessionMXBean {
+    /**
+     * The number of milliseconds an operation waits for the thread of the
+     * session to run it.
+     */
+    private static final long OPERATION_TIMEOUT = 5000;
+
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private final UserInterface ui;
+    private final ObjectName name;
+
+    private Session(UserInterface ui, ObjectName name) {
+        this.ui = ui;
+        this.name = name;
+    }
+
+    /**
+     * EFFECTS: Register a new session of the given user interface with the
+     * platform MBean server.
+     *
+     * @return The session; or null, if it cannot be registered
+     */
+    static Session register(UserInterface ui) {
+        try {
+            ObjectName name = new ObjectName("com.jerryzs.jetris:type=Session,id=" + Session.IDS.incrementAndGet());
+            Session session = new Session(ui, name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(session, name);
+            return session;
+        } catch (JMException e) {
+            return null;
+        }
+    }
+
+    ObjectName getName() {
+        return this.name;
+    }
+
+    /**
+     * EFFECTS: Remove this session from the platform MBean server.
+     */
+    void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            if (server.isRegistered(this.name)) {
+                server.unregisterMBean(this.name);
+            }
+        } catch (JMException e) {
+            // ignore
+        }
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return this.ui.game != null;
+    }
+
+    @Override
+    public boolean isPaused() {
+        Snapshot snapshot = this.ui.getSnapshot();
+        return snapshot != null && snapshot.isPaused();
+    }
+
+    @Override
+    public int getFramesPerSecond() {
+        return this.ui.game == null ? 0 : this.ui.getFramesPerSecond();
+    }
+
+    @Override
+    public int getLevel() {
+        Snapshot snapshot = this.ui.getSnapshot();
+        return snapshot == null ? 0 : snapshot.getLevel();
+    }
+
+    @Override
+    public int getPoints() {
+        Snapshot snapshot = this.ui.getSnapshot();
+        return snapshot == null ? 0 : snapshot.getPoints();
+    }
+
+    @Override
+    public int getLines() {
+        Snapshot snapshot = this.ui.getSnapshot();
+        return snapshot == null ? 0 : snapshot.getLines();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    @Override
+    public double getFrameTimeP50() {
+        return Session.millis(this.ui.getFrameTimer().getFrameHistogram().getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getFrameTimeP99() {
+        return Session.millis(this.ui.getFrameTimer().getFrameHistogram().getValueAtPercentile(99));
+    }
+
+    @Override
+    public double getFrameTimeMax() {
+        return Session.millis(this.ui.getFrameTimer().getFrameHistogram().getMax());
+    }
+
+    @Override
+    public long getMissedDeadlines() {
+        return this.ui.getFrameTimer().getMissedDeadlines();
+    }
+
+    @Override
+    public double getAutoShiftDelay() {
+        return Session.millis(this.ui.getInputQueue().getDelay());
+    }
+
+    @Override
+    public void setAutoShiftDelay(double delay) {
+        if (!(delay >= 0)) {
+            throw new IllegalArgumentException("The delay must not be negative.");
+        }
+
+        InputQueue inputs = this.ui.getInputQueue();
+        inputs.setAutoShift((long) (delay * 1e6), inputs.getRate());
+    }
+
+    @Override
+    public double getAutoRepeatRate() {
+        return Session.millis(this.ui.getInputQueue().getRate());
+    }
+
+    @Override
+    public void setAutoRepeatRate(double rate) {
+        if (!(rate >= 0)) {
+            throw new IllegalArgumentException("The rate must not be negative.");
+        }
+
+        InputQueue inputs = this.ui.getInputQueue();
+        inputs.setAutoShift(inputs.getDelay(), (long) (rate * 1e6));
+    }
+
+    /**
+     * EFFECTS: Wait for the result of an operation run by the thread of the
+     * session.
+     *
+     * @return The result; or false, if the operation failed or timed out
+     */
+    private static boolean await(Future<Boolean> result) {
+        try {
+            return result.get(Session.OPERATION_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            result.cancel(false);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean pause() {
+        return Session.await(this.ui.submit(this.ui::pauseIfPlaying));
+    }
+
+    @Override
+    public boolean resume() {
+        return Session.await(this.ui.submit(this.ui::resumeIfPaused));
+    }
+
+    @Override
+    public boolean save() {
+        return Session.await(this.ui.submit(this.ui::store));
+    }
+}
@@ -0,0 +1,87 @@
+package com.jerryzs.jetris.ui;
+
+/**
+ * The management interface of a session of a user interface, registered with
+ * the platform MBean server under
+ * {@code com.jerryzs.jetris:type=Session,id=<id>} for as long as the session
+ * runs. The attributes read the latest state of the session without
+ * synchronizing with it, and the operations are run by the thread of the
+ * session between 2 frames.
+ */
+public interface SessionMXBean {
+    /**
+     * EFFECTS: Get whether a game is being played, paused or not.
+     */
+    boolean isPlaying();
+
+    boolean isPaused();
+
+    /**
+     * EFFECTS: Get the number of frames run in the last second.
+     */
+    int getFramesPerSecond();
+
+    int getLevel();
+
+    int getPoints();
+
+    int getLines();
+
+    /**
+     * EFFECTS: Get the median time taken by a frame, in milliseconds.
+     */
+    double getFrameTimeP50();
+
+    /**
+     * EFFECTS: Get the 99th percentile of the time taken by a frame, in
+     * milliseconds.
+     */
+    double getFrameTimeP99();
+
+    /**
+     * EFFECTS: Get the longest time taken by a frame, in milliseconds.
+     */
+    double getFrameTimeMax();
+
+    /**
+     * EFFECTS: Get the number of frames that took longer than the frame
+     * budget.
+     */
+    long getMissedDeadlines();
+
+    /**
+     * EFFECTS: Get the delayed auto-shift of held moves, in milliseconds.
+     */
+    double getAutoShiftDelay();
+
+    void setAutoShiftDelay(double delay);
+
+    /**
+     * EFFECTS: Get the auto-repeat rate of held moves, in milliseconds, where
+     * 0 shifts as far as possible at once.
+     */
+    double getAutoRepeatRate();
+
+    void setAutoRepeatRate(double rate);
+
+    /**
+     * EFFECTS: Pause the game being played, as from the pause menu.
+     *
+     * @return True if the game was paused; otherwise, false
+     */
+    boolean pause();
+
+    /**
+     * EFFECTS: Resume the paused game, as from the pause menu.
+     *
+     * @return True if the game was resumed; otherwise, false
+     */
+    boolean resume();
+
+    /**
+     * EFFECTS: Write the game being played to its save file.
+     *
+     * @return True if the game was saved; otherwise, false
+     */
+    boolean save();
+}
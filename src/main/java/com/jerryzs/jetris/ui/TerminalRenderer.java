@@ -0,0 +1,60 @@
+package com.jerryzs.jetris.ui;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextColor;
+import com.jerryzs.jetris.model.Tetromino;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The output of the CLI to a terminal. The runs of characters that changed in
+ * a frame are drawn by a renderer as they are flushed from the cell buffer,
+ * then sent to the terminal at once by {@link #refresh()}.
+ */
+public interface TerminalRenderer extends CellBuffer.Sink, Closeable {
+    /**
+     * EFFECTS: Get the current size of the terminal.
+     */
+    TerminalSize getSize();
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Take the new size of the terminal, if it was resized since the
+     * last call.
+     *
+     * @return The new size; or null, if the terminal was not resized
+     */
+    TerminalSize doResizeIfNecessary();
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Send everything drawn since the last refresh to the terminal.
+     *
+     * @throws IOException Error propagated from the underlying stream.
+     */
+    void refresh() throws IOException;
+
+    /**
+     * EFFECTS: Get the terminal colors of the colors of a cell buffer, indexed
+     * by the color of a cell, with null for the default color. Tetrominoes
+     * are drawn in the 256-color palette color closest to their color in the
+     * GUI, and the ghost piece in dark gray.
+     *
+     * @return A new array of the colors
+     */
+    static TextColor[] palette() {
+        TextColor[] palette = new TextColor[CellBuffer.GHOST + 1];
+
+        for (Tetromino.Type type : Tetromino.Type.values()) {
+            Color color = type.getColor();
+            palette[type.ordinal() + 1] = TextColor.Indexed.fromRGB(color.getRed(), color.getGreen(), color.getBlue());
+        }
+
+        palette[CellBuffer.GHOST] = TextColor.ANSI.BLACK_BRIGHT;
+        return palette;
+    }
+}
@@ -1,29 +1,180 @@
 package com.jerryzs.jetris.ui;
 
 import com.jerryzs.jetris.model.Game;
+import com.jerryzs.jetris.model.InputQueue;
+import com.jerryzs.jetris.model.Snapshot;
+import com.jerryzs.jetris.persistence.AutoSave;
+import com.jerryzs.jetris.persistence.Durability;
+import com.jerryzs.jetris.persistence.HighScore;
+import com.jerryzs.jetris.persistence.Leaderboard;
+import com.jerryzs.jetris.persistence.ReplayRecorder;
 import com.jerryzs.jetris.persistence.Save;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+public abstract class UserInterface implements GameLoop.Target {
+    private static final Path REPLAY_DIRECTORY = Paths.get("./replays");
+
+    /**
+     * The number of seconds of play between autosaves.
+     */
+    private static final int AUTOSAVE_INTERVAL = 5;
 
-public abstract class UserInterface extends TimerTask {
     private final int framerate;
+    private final int renderRate;
+    private final FrameTimer frameTimer;
+    private GameLoop loop;
 
-    protected Game game;
+    // read by the threads of the MBean server
+    protected volatile Game game;
 
     private int frameCounter;
     private long frameCountStartTime;
+    private volatile int framesPerSecond;
+
+    private long startTime;
 
     private Save save;
     private Menu menu;
 
+    private ReplayRecorder recorder;
+    private AutoSave autosave;
+    private Future<?> closing;
+
+    private final InputQueue inputs;
+    private final ConcurrentLinkedQueue<Runnable> tasks;
+    private final ExecutorService background;
+    private final Session session;
+
     protected UserInterface(int framerate) {
-        this.framerate = framerate;
+        this(framerate, framerate);
+    }
+
+    /**
+     * REQUIRES: tickRate > 0 and renderRate > 0
+     * <p>
+     * EFFECTS: Create an interface running its games at the given tick rate,
+     * and drawing them at the given render rate.
+     *
+     * @param tickRate   The number of frames of the game per second
+     * @param renderRate The number of renders per second
+     */
+    protected UserInterface(int tickRate, int renderRate) {
+        this.framerate = tickRate;
+        this.renderRate = renderRate;
+        this.frameTimer = new FrameTimer(1_000_000_000L / Math.max(tickRate, renderRate));
+
+        this.inputs = new InputQueue();
+        this.tasks = new ConcurrentLinkedQueue<Runnable>();
+        this.background = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jetris-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.session = Session.register(this);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Start the loop ticking and rendering this interface on its own
+     * thread, if not started.
+     */
+    protected void startLoop() {
+        if (this.loop != null) {
+            return;
+        }
+
+        this.loop = new GameLoop(this, this.framerate, this.renderRate, this.frameTimer);
+        this.loop.start();
+    }
+
+    /**
+     * EFFECTS: Get the timer of the phases of the frames of this interface,
+     * whose budget is the shorter of 1 tick and 1 render of this interface.
+     *
+     * @return The frame timer
+     */
+    public FrameTimer getFrameTimer() {
+        return this.frameTimer;
+    }
+
+    /**
+     * EFFECTS: Get the number of frames of the game being played run in the
+     * last second, as measured by the clock rather than set in the game.
+     *
+     * @return The number of frames; or 0, if no second has been measured yet
+     */
+    public int getFramesPerSecond() {
+        return this.framesPerSecond;
+    }
+
+    /**
+     * EFFECTS: Get the queue of the inputs of the game being played, which is
+     * drained by the game at the start of each of its frames. Only 1 thread
+     * may queue inputs.
+     *
+     * @return The input queue
+     */
+    protected InputQueue getInputQueue() {
+        return this.inputs;
+    }
+
+    /**
+     * EFFECTS: Get the latest snapshot of the game being played, from which
+     * the game is drawn rather than from the live game.
+     *
+     * @return The snapshot; or null, if no game is being played
+     */
+    protected Snapshot getSnapshot() {
+        Game game = this.game;
+        return game == null ? null : game.getSnapshot();
+    }
+
+    /**
+     * EFFECTS: Get the MBean of this interface.
+     *
+     * @return The session; or null, if it could not be registered
+     */
+    Session getSession() {
+        return this.session;
     }
 
-    protected void startTimer() {
-        Timer timer = new Timer();
-        timer.schedule(this, 0, 500 / this.framerate);
+    /**
+     * EFFECTS: Queue the given task to be run by the thread of this interface
+     * at the start of its next frame, so that it may safely change the state
+     * of this interface from any other thread.
+     *
+     * @param task The task to run
+     * @return The future result of the task
+     */
+    <T> Future<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<T>(task);
+        this.tasks.add(future);
+        return future;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Run the tasks queued by other threads.
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            task.run();
+        }
     }
 
     protected Menu getMenu() {
@@ -31,13 +182,18 @@ public abstract class UserInterface extends TimerTask {
     }
 
     protected void save() {
-        this.menu.setMessage(this.save.store() ? "Saved!" : "Failed to save");
+        this.menu.setMessage(this.store() ? "Saved!" : "Failed to save");
     }
 
     protected void load() {
+        this.stopRecording();
+        this.stopAutosave();
+
         this.frameCountStartTime = System.currentTimeMillis();
         this.frameCounter = 0;
 
+        // the save file is read only once the last autosave is committed
+        this.awaitAutosave();
         this.save = new Save();
         this.game = this.save.load(this.framerate);
 
@@ -46,7 +202,15 @@ public abstract class UserInterface extends TimerTask {
             return;
         }
 
+        this.inputs.clear();
+        this.inputs.reset();
+        this.game.setInputQueue(this.inputs);
+        this.game.setPublishing(true);
+
         this.menu = null;
+        this.startTime = System.currentTimeMillis();
+
+        this.startAutosave();
 
         this.frameCountStartTime = System.currentTimeMillis();
     }
@@ -56,18 +220,46 @@ public abstract class UserInterface extends TimerTask {
         this.frameCounter = 0;
 
         this.game = new Game(this.framerate);
+        this.inputs.clear();
+        this.inputs.reset();
+        this.game.setInputQueue(this.inputs);
+        this.game.setPublishing(true);
         this.save = new Save(this.game);
         this.menu = null;
+        this.startTime = System.currentTimeMillis();
+
+        this.startRecording();
+        this.startAutosave();
 
         this.frameCountStartTime = System.currentTimeMillis();
     }
 
     protected void pause() {
+        // the releases of the keys held are not received by the menus
+        this.inputs.reset();
         this.game.toggleGame();
         this.menu = this.getPauseMenu();
     }
 
     protected void over() {
+        // the high score and the entry are written with a sync, which is left
+        // to the background rather than stalling a frame
+        int points = this.game.getScore().getPoints();
+        Leaderboard.Entry entry = Leaderboard.Entry.of(this.game, System.currentTimeMillis() - this.startTime);
+        this.background.execute(() -> {
+            HighScore.instance().offer(points);
+
+            try {
+                Leaderboard.instance().submit(entry);
+            } catch (IOException e) {
+                // ignore
+            }
+        });
+
+        this.stopRecording();
+        this.stopAutosave();
+        this.inputs.reset();
+
         this.menu = this.getGameOverMenu();
         this.game = null;
     }
@@ -78,40 +270,234 @@ public abstract class UserInterface extends TimerTask {
     }
 
     protected void mainMenu() {
+        this.stopRecording();
+        this.stopAutosave();
         this.game = null;
         this.menu = this.getMainMenu();
     }
 
     protected void exit() {
+        this.stopRecording();
+        this.stopAutosave();
+        this.awaitAutosave();
+
+        if (this.session != null) {
+            this.session.unregister();
+        }
+
+        if (this.loop != null) {
+            this.loop.stop();
+        }
+
+        this.background.shutdown();
+        try {
+            this.background.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
         System.exit(0);
     }
 
-    protected abstract Menu getMainMenu();
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Pause the game, if one is being played and is not paused.
+     *
+     * @return True if the game was paused; otherwise, false
+     */
+    boolean pauseIfPlaying() {
+        if (this.game == null || this.game.isPaused()) {
+            return false;
+        }
 
-    protected abstract Menu getPauseMenu();
+        this.pause();
+        return true;
+    }
 
-    protected abstract Menu getGameOverMenu();
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Resume the game, if one is paused and not over.
+     *
+     * @return True if the game was resumed; otherwise, false
+     */
+    boolean resumeIfPaused() {
+        if (this.game == null || !this.game.isPaused() || this.game.isOver()) {
+            return false;
+        }
 
-    @Override
-    public void run() {
-        if (this.game == null) {
+        this.resume();
+        return true;
+    }
+
+    /**
+     * EFFECTS: Write the game being played, if any, to its save file.
+     *
+     * @return True if the game was saved; otherwise, false
+     */
+    boolean store() {
+        if (this.game == null || this.save == null) {
+            return false;
+        }
+
+        // the snapshots of the autosave are committed first, so that none of
+        // them lands on top of this save
+        this.stopAutosave();
+        this.awaitAutosave();
+        boolean stored = this.save.store();
+        this.startAutosave();
+
+        return stored;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Start recording the replay of the current game to a new file in
+     * the replay directory. The game is played without a recording if the
+     * file cannot be created.
+     */
+    private void startRecording() {
+        this.stopRecording();
+
+        try {
+            Files.createDirectories(UserInterface.REPLAY_DIRECTORY);
+            this.recorder = ReplayRecorder.open(this.game,
+                    UserInterface.REPLAY_DIRECTORY.resolve(System.currentTimeMillis() + ".jtr"));
+        } catch (IOException e) {
+            this.recorder = null;
+        }
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Start saving the current game to its save file in the
+     * background every few seconds of play.
+     */
+    private void startAutosave() {
+        this.stopAutosave();
+        this.autosave = new AutoSave(this.save.getPath(), Durability.GROUP_SYNC,
+                (long) UserInterface.AUTOSAVE_INTERVAL * this.framerate);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Stop saving the current game in the background. Its latest
+     * snapshot is written and committed to the save file on the background
+     * thread, so that the thread of this interface is never blocked on the
+     * disk; {@link #awaitAutosave()} waits for it.
+     */
+    private void stopAutosave() {
+        if (this.autosave == null) {
             return;
         }
 
-        this.game.run();
+        AutoSave autosave = this.autosave;
+        this.closing = this.background.submit(autosave::close);
+        this.autosave = null;
+    }
 
-        if (this.game.isOver()) {
-            this.over();
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Wait for the last autosave stopped, if any, to be committed to
+     * the save file, before the save file is read or written.
+     */
+    private void awaitAutosave() {
+        if (this.closing == null) {
+            return;
+        }
+
+        try {
+            this.closing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // ignore
+        }
+
+        this.closing = null;
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Finish the replay being recorded, if any.
+     */
+    private void stopRecording() {
+        if (this.recorder == null) {
+            return;
+        }
+
+        try {
+            this.recorder.close();
+        } catch (IOException e) {
+            // ignore
+        }
+
+        this.recorder = null;
+    }
+
+    protected abstract Menu getMainMenu();
+
+    protected abstract Menu getPauseMenu();
+
+    protected abstract Menu getGameOverMenu();
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Poll the inputs of the user, if this interface has to poll for
+     * them rather than receive them as events. Called at the start of each
+     * tick.
+     */
+    protected void pollInput() {
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Run the tasks queued by other threads, poll the inputs, and run
+     * the game being played, if any, by 1 frame.
+     */
+    @Override
+    public void tick() {
+        this.runTasks();
+        this.pollInput();
+        this.frameTimer.mark(FrameTimer.Phase.INPUT);
+
+        if (this.game != null) {
+            this.game.run();
+
+            if (this.autosave != null) {
+                this.autosave.update(this.game);
+            }
+
+            if (this.game.isOver()) {
+                this.over();
+            } else {
+                this.countFrame();
+            }
         }
 
-        this.countFrame();
+        this.frameTimer.mark(FrameTimer.Phase.RUN);
     }
 
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Count a frame run, and every second, report the number of
+     * frames run in it. The rate measured is never written into the game,
+     * whose gravity and lock delay are timed in frames of its own fixed rate.
+     */
     private void countFrame() {
         this.frameCounter++;
 
         if (System.currentTimeMillis() - frameCountStartTime >= 1000) {
-            this.game.framerate(this.frameCounter);
+            this.framesPerSecond = this.frameCounter;
             this.frameCounter = 0;
             this.frameCountStartTime = System.currentTimeMillis();
         }
@@ -0,0 +1,173 @@
+package com.jerryzs.jetris.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Regression tests asserting that a running game does not allocate on the heap
+ * from one frame to the next. Frames in which the game ends are excluded, as
+ * is the creation of a new game.
+ */
+public class AllocationTest {
+    private static final int WARMUP_FRAMES = 20000;
+    private static final int FRAMES = 20000;
+
+    /**
+     * The JVM may occasionally allocate on the thread when a compiled method
+     * is deoptimized and objects it had eliminated are rematerialized. This
+     * is far below what a single allocation per lockdown would add up to over
+     * the measured frames.
+     */
+    private static final long TOLERANCE = 1024;
+
+    Random inputs;
+    Game game;
+
+    int sink;
+
+    @BeforeEach
+    void runBefore() {
+        this.inputs = new Random(210);
+        this.game = new Game(60);
+    }
+
+    /**
+     * MODIFIES: this
+     * <p>
+     * EFFECTS: Perform a random input, if any, and advance the game by one
+     * frame.
+     */
+    private void frame() {
+        int r = this.inputs.nextInt(100);
+
+        if (r < 10) {
+            this.game.moveLeft();
+        } else if (r < 20) {
+            this.game.moveRight();
+        } else if (r < 24) {
+            this.game.rotateLeft();
+        } else if (r < 28) {
+            this.game.rotateRight();
+        } else if (r < 36) {
+            this.game.softDrop();
+        } else if (r < 38) {
+            this.game.hardDrop();
+        } else if (r < 39) {
+            this.game.hold();
+        }
+
+        this.game.run();
+    }
+
+    /**
+     * EFFECTS: Read everything a renderer reads from the game in one frame.
+     */
+    private void render() {
+        for (int y = 0; y < 22; y++) {
+            for (int x = 0; x < 10; x++) {
+                this.sink += this.game.get(x, y);
+            }
+        }
+
+        for (int i = 0; i < 5; i++) {
+            this.sink += this.game.getPreview(i).getType().ordinal();
+        }
+
+        if (this.game.getHold() != null) {
+            this.sink += this.game.getHold().getType().ordinal();
+        }
+
+        if (this.game.getScore().getLastScore() != null) {
+            this.sink += this.game.getScore().getLastScore()[0];
+        }
+
+        this.sink += this.game.getScore().getPoints() + this.game.getScore().getLevel();
+    }
+
+    /**
+     * EFFECTS: Read everything a renderer reads from the latest snapshot
+     * published by the game.
+     */
+    private void renderSnapshot() {
+        Snapshot snapshot = this.game.getSnapshot();
+
+        for (int y = 0; y < Snapshot.HEIGHT; y++) {
+            this.sink += snapshot.getRow(y) + snapshot.getMask(y) + snapshot.getActiveMask(y)
+                    + snapshot.getGhostMask(y);
+        }
+
+        for (int i = 0; i < Snapshot.PREVIEW_LENGTH; i++) {
+            this.sink += snapshot.getPreview(i).ordinal();
+        }
+
+        if (snapshot.getHold() != null) {
+            this.sink += snapshot.getHold().ordinal();
+        }
+
+        this.sink += snapshot.getPoints() + snapshot.getLevel() + (int) snapshot.getFall(0.5);
+    }
+
+    /**
+     * EFFECTS: Run the given number of frames, starting a new game whenever
+     * the game is over, and return the number of bytes allocated by frames of
+     * a running game.
+     */
+    private long play(int frames, boolean render) {
+        return this.play(frames, render, false);
+    }
+
+    /**
+     * EFFECTS: Same as {@link #play(int, boolean)}, with the games publishing
+     * a snapshot of every frame, read instead of the game if rendering.
+     */
+    private long play(int frames, boolean render, boolean publishing) {
+        long allocated = 0;
+
+        for (int i = 0; i < frames; i++) {
+            if (this.game.isOver() || publishing && this.game.getSnapshot() == null) {
+                this.game = new Game(60);
+                this.game.setPublishing(publishing);
+            }
+
+            long before = Allocations.allocated();
+            this.frame();
+            if (render && publishing) {
+                this.renderSnapshot();
+            } else if (render) {
+                this.render();
+            }
+            long after = Allocations.allocated();
+
+            if (!this.game.isOver()) {
+                allocated += after - before;
+            }
+        }
+
+        return allocated;
+    }
+
+    @Test
+    void testFrameDoesNotAllocate() {
+        this.play(AllocationTest.WARMUP_FRAMES, false);
+        long allocated = this.play(AllocationTest.FRAMES, false);
+        assertTrue(allocated <= AllocationTest.TOLERANCE, allocated + " bytes allocated");
+    }
+
+    @Test
+    void testFrameWithRenderDoesNotAllocate() {
+        this.play(AllocationTest.WARMUP_FRAMES, true);
+        long allocated = this.play(AllocationTest.FRAMES, true);
+        assertTrue(allocated <= AllocationTest.TOLERANCE, allocated + " bytes allocated");
+    }
+
+    @Test
+    void testPublishingFrameDoesNotAllocate() {
+        this.play(AllocationTest.WARMUP_FRAMES, true, true);
+        long allocated = this.play(AllocationTest.FRAMES, true, true);
+        assertTrue(allocated <= AllocationTest.TOLERANCE, allocated + " bytes allocated");
+    }
+}
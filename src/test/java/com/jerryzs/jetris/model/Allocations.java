@@ -0,0 +1,56 @@
+package com.jerryzs.jetris.model;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A utility for measuring the number of bytes allocated on the heap by the
+ * current thread.
+ */
+final class Allocations {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Allocations() {
+    }
+
+    /**
+     * EFFECTS: Get the total number of bytes allocated by the current thread
+     * so far.
+     *
+     * @return The number of bytes allocated
+     */
+    static long allocated() {
+        return Allocations.THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * EFFECTS: Run the action the given number of times after warming it up,
+     * and measure the average number of bytes allocated per run.
+     *
+     * @param action     The action to measure
+     * @param iterations The number of runs to measure over
+     * @return The average number of bytes allocated per run
+     */
+    static double perCall(Runnable action, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            action.run();
+        }
+
+        long before = Allocations.allocated();
+        for (int i = 0; i < iterations; i++) {
+            action.run();
+        }
+        long after = Allocations.allocated();
+
+        return (double) (after - before - Allocations.overhead()) / iterations;
+    }
+
+    /**
+     * EFFECTS: Measure the number of bytes allocated by the measurement itself.
+     */
+    private static long overhead() {
+        long before = Allocations.allocated();
+        long after = Allocations.allocated();
+        return after - before;
+    }
+}
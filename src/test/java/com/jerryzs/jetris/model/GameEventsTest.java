@@ -0,0 +1,80 @@
+package com.jerryzs.jetris.model;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameEventsTest {
+    @TempDir
+    Path directory;
+
+    private long count(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).count();
+    }
+
+    @Test
+    void testEventsRecorded() throws IOException {
+        Path path = this.directory.resolve("game.jfr");
+        Simulation simulation;
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.jerryzs.jetris.Spawn");
+            recording.enable("com.jerryzs.jetris.Lockdown");
+            recording.enable("com.jerryzs.jetris.LineClear");
+            recording.enable("com.jerryzs.jetris.Hold");
+            recording.enable("com.jerryzs.jetris.GameOver");
+            recording.start();
+
+            simulation = SimulationTest.play(7, 100000);
+            // a tetromino can only be held once it has fallen into view
+            Simulation held = new Simulation(7);
+            held.advance(2 * Simulation.TICK_RATE);
+            assertTrue(held.getGame().hold());
+
+            recording.stop();
+            recording.dump(path);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+        Game game = simulation.getGame();
+
+        long lockdowns = this.count(events, "com.jerryzs.jetris.Lockdown");
+        assertTrue(lockdowns > 0);
+        assertTrue(this.count(events, "com.jerryzs.jetris.Spawn") >= lockdowns);
+        assertTrue(this.count(events, "com.jerryzs.jetris.Hold") > 0);
+
+        long lines = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.jerryzs.jetris.LineClear"))
+                .mapToLong(e -> e.getInt("lines"))
+                .sum();
+        assertEquals(game.getScore().getLines(), lines);
+
+        if (game.isOver()) {
+            assertEquals(1, this.count(events, "com.jerryzs.jetris.GameOver"));
+        }
+    }
+
+    @Test
+    void testDisabledByDefault() throws IOException {
+        Path path = this.directory.resolve("default.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.start();
+            SimulationTest.play(7, 1000);
+            recording.stop();
+            recording.dump(path);
+        }
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(path)) {
+            assertFalse(event.getEventType().getName().startsWith("com.jerryzs.jetris."));
+        }
+    }
+}
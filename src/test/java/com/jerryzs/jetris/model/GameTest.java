@@ -3,8 +3,11 @@ package com.jerryzs.jetris.model;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -239,4 +242,69 @@ public class GameTest {
 
         assertTrue(this.game.isOver());
     }
+
+    @Test
+    void testBinaryRoundTrip() throws IOException {
+        Game game = SimulationTest.play(4, 400).getGame();
+        assertFalse(game.isOver());
+        ByteBuffer buffer = ByteBuffer.allocate(Game.MAX_BINARY_LENGTH);
+        Game.write(game, buffer);
+        assertTrue(buffer.position() < 100, buffer.position() + " bytes");
+
+        buffer.flip();
+        Game recovered = Game.read(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(Game.toJson(game).toString(), Game.toJson(recovered).toString());
+
+        Random inputs = new Random(4);
+        for (int i = 0; i < 20000 && !game.isOver(); i++) {
+            if (inputs.nextInt(10) == 0) {
+                Input input = Input.VALUES[inputs.nextInt(Input.VALUES.length)];
+                game.perform(input);
+                recovered.perform(input);
+            }
+            game.run();
+            recovered.run();
+        }
+
+        assertEquals(game.getFrame(), recovered.getFrame());
+        assertEquals(Game.toJson(game).toString(), Game.toJson(recovered).toString());
+    }
+
+    @Test
+    void testBinaryHoldState() throws IOException {
+        this.game.toggleGame();
+        while (this.tetromino.isHidden()) {
+            this.game.run();
+        }
+        this.game.toggleGame();
+
+        this.game.moveLeft();
+        this.game.rotateRight();
+        assertTrue(this.game.hold());
+        Tetromino hold = this.game.getHold();
+
+        ByteBuffer buffer = ByteBuffer.allocate(Game.MAX_BINARY_LENGTH);
+        Game.write(this.game, buffer);
+        buffer.flip();
+        Tetromino recovered = Game.read(buffer).getHold();
+
+        assertEquals(hold.getType(), recovered.getType());
+        assertArrayEquals(hold.getCoords(), recovered.getCoords());
+        assertEquals(hold.getOrientation(), recovered.getOrientation());
+        assertArrayEquals(hold.getLastCoords(), recovered.getLastCoords());
+        assertEquals(hold.getLastOrientation(), recovered.getLastOrientation());
+        // not the blank state of a newly created tetromino
+        assertNotEquals(0, recovered.getLastY());
+    }
+
+    @Test
+    void testBinaryTruncated() {
+        ByteBuffer buffer = ByteBuffer.allocate(Game.MAX_BINARY_LENGTH);
+        Game.write(this.defaultGame, buffer);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 1);
+
+        assertThrows(IOException.class, () -> Game.read(buffer));
+    }
 }
@@ -0,0 +1,274 @@
+package com.jerryzs.jetris.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InputQueueTest {
+    private static final Input[] PATTERN = {
+            Input.MOVE_LEFT, Input.MOVE_RIGHT, Input.ROTATE_LEFT, Input.ROTATE_RIGHT
+    };
+
+    /**
+     * A listener checking that every input performed is the one queued with
+     * the timestamp last applied.
+     */
+    private static class Checker implements InputListener {
+        private final Game game;
+        private long performed;
+        private volatile String error;
+
+        private Checker(Game game) {
+            this.game = game;
+        }
+
+        @Override
+        public void onInput(Input input, long frame) {
+            long timestamp = this.game.getLastInputTime();
+
+            if (input != InputQueueTest.PATTERN[(int) (timestamp % InputQueueTest.PATTERN.length)]) {
+                this.error = input + " performed for timestamp " + timestamp;
+            }
+
+            this.performed++;
+        }
+
+        @Override
+        public void onFramerate(int framerate, long frame) {
+        }
+    }
+
+    @Test
+    void testDrainInOrder() {
+        Game game = new Game(60, 3);
+        InputQueue inputs = new InputQueue(4);
+        List<Input> performed = new ArrayList<>();
+
+        game.setInputQueue(inputs);
+        game.setInputListener(new InputListener() {
+            @Override
+            public void onInput(Input input, long frame) {
+                performed.add(input);
+                assertEquals(0, frame);
+            }
+
+            @Override
+            public void onFramerate(int framerate, long frame) {
+            }
+        });
+
+        assertTrue(inputs.isEmpty());
+        assertTrue(inputs.offer(Input.MOVE_LEFT, 1));
+        assertTrue(inputs.offer(Input.ROTATE_RIGHT, 2));
+        assertTrue(inputs.offer(Input.MOVE_LEFT, 3));
+        assertTrue(inputs.offer(Input.SOFT_DROP, 4));
+        assertFalse(inputs.offer(Input.HOLD, 5));
+
+        game.run();
+
+        assertTrue(inputs.isEmpty());
+        assertEquals(List.of(Input.MOVE_LEFT, Input.ROTATE_RIGHT, Input.MOVE_LEFT, Input.SOFT_DROP), performed);
+        assertEquals(4, game.getLastInputTime());
+        assertEquals(1, game.getFrame());
+
+        // the slots are reused once drained
+        assertTrue(inputs.offer(Input.HOLD, 6));
+    }
+
+    @Test
+    void testPausedGameDropsInputs() {
+        Game game = new Game(60, 3);
+        InputQueue inputs = new InputQueue();
+        Tetromino current = game.getPlayfield().getCurrent();
+        int x = current.getX();
+
+        game.setInputQueue(inputs);
+        game.toggleGame();
+
+        inputs.offer(Input.MOVE_LEFT);
+        game.run();
+
+        assertTrue(inputs.isEmpty());
+        assertEquals(x, current.getX());
+    }
+
+    @Test
+    void testClear() {
+        Game game = new Game(60, 3);
+        InputQueue inputs = new InputQueue(4);
+        Tetromino current = game.getPlayfield().getCurrent();
+        int x = current.getX();
+
+        game.setInputQueue(inputs);
+        inputs.offer(Input.MOVE_LEFT);
+        inputs.offer(Input.MOVE_LEFT);
+        inputs.clear();
+
+        assertTrue(inputs.isEmpty());
+        game.run();
+        assertEquals(x, current.getX());
+    }
+
+    @Test
+    void testConcurrentProducer() throws InterruptedException {
+        // at this framerate, the tetromino hardly falls in the frames run
+        Game game = new Game(1000000, 3);
+        InputQueue inputs = new InputQueue(16);
+        Checker checker = new Checker(game);
+        int count = 10000;
+
+        game.setInputQueue(inputs);
+        game.setInputListener(checker);
+
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= count; i++) {
+                while (!inputs.offer(InputQueueTest.PATTERN[i % InputQueueTest.PATTERN.length], i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+
+        long last = 0;
+        while (last < count) {
+            if (inputs.isEmpty()) {
+                Thread.yield();
+                continue;
+            }
+
+            game.run();
+            assertFalse(game.isOver());
+
+            assertTrue(game.getLastInputTime() >= last);
+            last = game.getLastInputTime();
+        }
+
+        producer.join();
+
+        assertNull(checker.error, checker.error);
+        assertEquals(count, checker.performed);
+    }
+
+    private static final long MS = 1_000_000L;
+
+    /**
+     * EFFECTS: Create a game whose first tetromino has fallen into view, so
+     * that it can be moved.
+     */
+    private static Game visibleGame() {
+        Simulation simulation = new Simulation(3);
+        simulation.advance(2 * Simulation.TICK_RATE);
+        return simulation.getGame();
+    }
+
+    @Test
+    void testAutoShift() {
+        Game game = InputQueueTest.visibleGame();
+        Tetromino current = game.getPlayfield().getCurrent();
+        InputQueue inputs = new InputQueue();
+        inputs.setAutoShift(100 * InputQueueTest.MS, 10 * InputQueueTest.MS);
+        int x = current.getX();
+
+        inputs.press(Input.MOVE_RIGHT, 0);
+        inputs.drain(game, 0);
+        assertEquals(x + 1, current.getX());
+
+        // a key repeat of the platform is not a new press
+        inputs.press(Input.MOVE_RIGHT, 30 * InputQueueTest.MS);
+        inputs.drain(game, 99 * InputQueueTest.MS);
+        assertEquals(x + 1, current.getX());
+
+        inputs.drain(game, 100 * InputQueueTest.MS);
+        assertEquals(x + 2, current.getX());
+
+        // several repeats may be due in a single drain
+        inputs.drain(game, 115 * InputQueueTest.MS);
+        assertEquals(x + 3, current.getX());
+
+        inputs.release(Input.MOVE_RIGHT, 116 * InputQueueTest.MS);
+        inputs.drain(game, 200 * InputQueueTest.MS);
+        assertEquals(x + 3, current.getX());
+    }
+
+    @Test
+    void testInstantRepeat() {
+        Game game = InputQueueTest.visibleGame();
+        InputQueue inputs = new InputQueue();
+        inputs.setAutoShift(0, 0);
+
+        inputs.press(Input.MOVE_LEFT, 0);
+        inputs.drain(game, 0);
+        assertFalse(game.getPlayfield().canMove(Tetromino.Direction.LEFT));
+
+        inputs.release(Input.MOVE_LEFT, 0);
+        inputs.press(Input.MOVE_RIGHT, 10 * InputQueueTest.MS);
+        inputs.drain(game, 10 * InputQueueTest.MS);
+        assertFalse(game.getPlayfield().canMove(Tetromino.Direction.RIGHT));
+    }
+
+    @Test
+    void testReleaseAndPressRepeatGlitch() {
+        Game game = InputQueueTest.visibleGame();
+        Tetromino current = game.getPlayfield().getCurrent();
+        InputQueue inputs = new InputQueue();
+        inputs.setAutoShift(100 * InputQueueTest.MS, 50 * InputQueueTest.MS);
+        int x = current.getX();
+
+        inputs.press(Input.MOVE_RIGHT, 0);
+        inputs.release(Input.MOVE_RIGHT, 40 * InputQueueTest.MS);
+        inputs.press(Input.MOVE_RIGHT, 40 * InputQueueTest.MS + 1);
+        inputs.drain(game, 100 * InputQueueTest.MS);
+
+        // the hold continues through the platform key repeat
+        assertEquals(x + 2, current.getX());
+
+        inputs.release(Input.MOVE_RIGHT, 110 * InputQueueTest.MS);
+        inputs.press(Input.MOVE_RIGHT, 120 * InputQueueTest.MS);
+        inputs.drain(game, 200 * InputQueueTest.MS);
+
+        // a new press shifts once and charges the auto-shift anew
+        assertEquals(x + 3, current.getX());
+    }
+
+    @Test
+    void testReset() {
+        Game game = InputQueueTest.visibleGame();
+        Tetromino current = game.getPlayfield().getCurrent();
+        InputQueue inputs = new InputQueue();
+        inputs.setAutoShift(100 * InputQueueTest.MS, 10 * InputQueueTest.MS);
+        int x = current.getX();
+
+        inputs.press(Input.MOVE_RIGHT, 0);
+        inputs.drain(game, 0);
+        inputs.reset();
+
+        // the release of the key is never queued
+        inputs.drain(game, 200 * InputQueueTest.MS);
+        assertEquals(x + 1, current.getX());
+
+        // a new press after a reset is not mistaken for a key repeat
+        inputs.press(Input.MOVE_RIGHT, 200 * InputQueueTest.MS);
+        inputs.drain(game, 200 * InputQueueTest.MS);
+        assertEquals(x + 2, current.getX());
+    }
+
+    @Test
+    void testReleaseAll() {
+        Game game = InputQueueTest.visibleGame();
+        Tetromino current = game.getPlayfield().getCurrent();
+        InputQueue inputs = new InputQueue();
+        inputs.setAutoShift(100 * InputQueueTest.MS, 10 * InputQueueTest.MS);
+        int x = current.getX();
+
+        inputs.press(Input.MOVE_LEFT, 0);
+        inputs.press(Input.MOVE_RIGHT, 10 * InputQueueTest.MS);
+        inputs.releaseAll(20 * InputQueueTest.MS);
+        inputs.drain(game, 300 * InputQueueTest.MS);
+
+        assertEquals(x, current.getX());
+        assertTrue(inputs.isEmpty());
+    }
+}
@@ -0,0 +1,180 @@
+package com.jerryzs.jetris.model;
+
+import org.json.JSONArray;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlayfieldTest {
+    Playfield playfield;
+
+    @BeforeEach
+    void runBefore() {
+        this.playfield = new Playfield();
+    }
+
+    /**
+     * EFFECTS: Build a playfield whose bottom rows are filled according to the
+     * given strings, with the first string being the bottom row, '#' being an
+     * occupied cell of color 1 and any other character being an empty cell.
+     */
+    static Playfield fill(String... rows) throws IOException {
+        JSONArray array = new JSONArray();
+
+        for (String row : rows) {
+            int bin = 0;
+            for (int i = 0; i < row.length(); i++) {
+                bin += row.charAt(i) == '#' ? 1 << (i * 3) : 0;
+            }
+            array.put(bin);
+        }
+
+        for (int i = rows.length; i < 22; i++) {
+            array.put(0);
+        }
+
+        return Playfield.fromJsonArray(array);
+    }
+
+    @Test
+    void testJsonRoundTrip() throws IOException {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < 22; i++) {
+            array.put(i < 5 ? 0b001_010_011_100_101_110_111_000_001_010 - i : 0);
+        }
+
+        Playfield recovered = Playfield.fromJsonArray(array);
+
+        assertEquals(array.toString(), Playfield.toJsonArray(recovered).toString());
+        assertEquals(2, recovered.getMatrix()[0][0]);
+        assertEquals(1, recovered.getMatrix()[0][9]);
+        assertEquals(0, recovered.getMatrix()[5][3]);
+    }
+
+    @Test
+    void testFromJsonArrayTooLong() {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < 23; i++) {
+            array.put(0);
+        }
+
+        assertThrows(IOException.class, () -> Playfield.fromJsonArray(array));
+    }
+
+    @Test
+    void testMoveBlocked() throws IOException {
+        this.playfield = fill(
+                "#########.",
+                "#########.",
+                "#########.",
+                "#########."
+        );
+
+        Tetromino i = new Tetromino(Tetromino.Type.I);
+        assertTrue(this.playfield.spawn(i));
+
+        while (this.playfield.move(Tetromino.Direction.DOWN)) {
+            assertFalse(this.playfield.isReadyToLock());
+        }
+
+        assertTrue(this.playfield.isReadyToLock());
+        assertEquals(4, i.getCoords()[1]);
+    }
+
+    @Test
+    void testLockdownClearsLines() throws IOException {
+        this.playfield = fill(
+                "#########.",
+                "#########.",
+                "##.######.",
+                "#########.",
+                ".........."
+        );
+
+        Tetromino i = new Tetromino(Tetromino.Type.I);
+        assertTrue(this.playfield.spawn(i));
+
+        this.playfield.move(Tetromino.Direction.DOWN);
+        assertTrue(this.playfield.rotate(1));
+        for (int j = 0; j < 4; j++) {
+            this.playfield.move(Tetromino.Direction.RIGHT);
+        }
+        while (this.playfield.move(Tetromino.Direction.DOWN)) {
+            assertTrue(i.getCoords()[1] >= 2);
+        }
+
+        assertEquals(3, this.playfield.lockdown());
+
+        int[][] matrix = this.playfield.getMatrix();
+        assertArrayEquals(new int[]{1, 1, 0, 1, 1, 1, 1, 1, 1, 1}, matrix[0]);
+        assertArrayEquals(new int[10], matrix[1]);
+        assertFalse(this.playfield.isEmpty());
+    }
+
+    @Test
+    void testGhostMatchesStepping() throws IOException {
+        Random random = new Random(5);
+        Tetromino.Type[] types = Tetromino.Type.values();
+
+        for (int n = 0; n < 500; n++) {
+            String[] rows = new String[random.nextInt(12)];
+            for (int y = 0; y < rows.length; y++) {
+                StringBuilder row = new StringBuilder();
+                for (int x = 0; x < 10; x++) {
+                    row.append(random.nextInt(3) == 0 ? '#' : '.');
+                }
+                rows[y] = row.toString();
+            }
+
+            this.playfield = fill(rows);
+            Tetromino t = new Tetromino(types[random.nextInt(types.length)]);
+            if (!this.playfield.spawn(t)) {
+                continue;
+            }
+
+            for (int i = random.nextInt(6); i > 0; i--) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        this.playfield.move(Tetromino.Direction.LEFT);
+                        break;
+                    case 1:
+                        this.playfield.move(Tetromino.Direction.RIGHT);
+                        break;
+                    case 2:
+                        this.playfield.move(Tetromino.Direction.DOWN);
+                        break;
+                    default:
+                        this.playfield.rotate(1);
+                }
+            }
+
+            int ghost = this.playfield.getGhostY();
+            int x = t.getX();
+            while (this.playfield.move(Tetromino.Direction.DOWN)) {
+                assertEquals(x, t.getX());
+            }
+
+            assertEquals(t.getY(), ghost);
+        }
+    }
+
+    @Test
+    void testDrop() throws IOException {
+        this.playfield = fill(
+                "#########.",
+                "#########."
+        );
+
+        Tetromino i = new Tetromino(Tetromino.Type.I);
+        assertTrue(this.playfield.spawn(i));
+
+        assertEquals(i.getY() - 2, this.playfield.drop());
+        assertEquals(2, i.getY());
+        assertTrue(this.playfield.isReadyToLock());
+        assertEquals(0, this.playfield.drop());
+    }
+}
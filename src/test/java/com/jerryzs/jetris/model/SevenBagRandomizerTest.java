@@ -0,0 +1,57 @@
+package com.jerryzs.jetris.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SevenBagRandomizerTest {
+    @Test
+    void testEveryBagIsPermutation() {
+        Randomizer randomizer = new SevenBagRandomizer(1);
+
+        for (int i = 0; i < 1000; i++) {
+            int seen = 0;
+            for (int j = 0; j < 7; j++) {
+                seen |= 1 << randomizer.next();
+            }
+            assertEquals(0b1111111, seen);
+        }
+
+        assertEquals(7000, randomizer.getPosition());
+    }
+
+    @Test
+    void testSameSeedSameSequence() {
+        Randomizer a = new SevenBagRandomizer(-8);
+        Randomizer b = new SevenBagRandomizer(-8);
+        Randomizer c = new SevenBagRandomizer(9);
+
+        boolean differs = false;
+        for (int i = 0; i < 700; i++) {
+            byte next = a.next();
+            assertEquals(next, b.next());
+            differs |= next != c.next();
+        }
+
+        assertTrue(differs);
+        assertEquals(-8, a.getSeed());
+    }
+
+    @Test
+    void testSeek() {
+        Randomizer sequential = new SevenBagRandomizer(3);
+        byte[] sequence = new byte[1000];
+        for (int i = 0; i < sequence.length; i++) {
+            sequence[i] = sequential.next();
+        }
+
+        Randomizer randomizer = new SevenBagRandomizer(3);
+        for (int position : new int[]{500, 7, 999, 0, 13, 14}) {
+            randomizer.seek(position);
+            assertEquals(position, randomizer.getPosition());
+            for (int i = position; i < Math.min(position + 20, sequence.length); i++) {
+                assertEquals(sequence[i], randomizer.next());
+            }
+        }
+    }
+}
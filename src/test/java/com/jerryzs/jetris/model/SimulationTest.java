@@ -0,0 +1,102 @@
+package com.jerryzs.jetris.model;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulationTest {
+    /**
+     * EFFECTS: Play a game from the given seed with random inputs, also drawn
+     * from the seed, until it is over or the given number of ticks have passed.
+     */
+    static Simulation play(long seed, long ticks) {
+        Simulation simulation = new Simulation(seed);
+        Random inputs = new Random(seed);
+
+        while (simulation.getTicks() < ticks) {
+            int r = inputs.nextInt(100);
+            Game game = simulation.getGame();
+
+            if (r < 10) {
+                game.moveLeft();
+            } else if (r < 20) {
+                game.moveRight();
+            } else if (r < 24) {
+                game.rotateRight();
+            } else if (r < 26) {
+                game.hardDrop();
+            } else if (r < 27) {
+                game.hold();
+            }
+
+            if (!simulation.tick()) {
+                break;
+            }
+        }
+
+        return simulation;
+    }
+
+    @Test
+    void testDeterministic() {
+        Simulation a = SimulationTest.play(42, 100000);
+        Simulation b = SimulationTest.play(42, 100000);
+
+        assertEquals(a.getTicks(), b.getTicks());
+        assertEquals(a.getGame().getScore().getPoints(), b.getGame().getScore().getPoints());
+        assertEquals(a.getGame().getScore().getLines(), b.getGame().getScore().getLines());
+        assertEquals(Game.toJson(a.getGame()).toString(), Game.toJson(b.getGame()).toString());
+    }
+
+    @Test
+    void testGravity() {
+        Simulation simulation = new Simulation(0);
+        Tetromino current = simulation.getGame().getPlayfield().getCurrent();
+
+        simulation.advance(1);
+        int y = current.getY();
+
+        // at level 1, a tetromino falls by 1 cell every 60 ticks
+        assertEquals(59, simulation.advance(59));
+        assertEquals(y, current.getY());
+        simulation.tick();
+        assertEquals(y - 1, current.getY());
+    }
+
+    @Test
+    void testPastLastGravityLevel() throws IOException {
+        Simulation start = new Simulation(5);
+        start.advance(2 * Simulation.TICK_RATE);
+
+        // 150 lines cleared reach level 16, past the gravity table
+        JSONObject json = new JSONObject(Game.toJson(start.getGame()).toString());
+        json.getJSONObject("score").put("cleared", 150).put("level", 16);
+        Simulation simulation = new Simulation(Game.fromJson(json, Simulation.TICK_RATE));
+
+        assertTrue(simulation.getGame().getGravity() > 0);
+
+        while (simulation.tick()) {
+            simulation.getGame().hardDrop();
+        }
+
+        assertTrue(simulation.getGame().getScore().getLevel() >= 16);
+    }
+
+    @Test
+    void testAdvanceStopsWhenOver() {
+        Simulation simulation = new Simulation(0);
+
+        while (!simulation.getGame().isOver()) {
+            simulation.getGame().hardDrop();
+        }
+
+        long ticks = simulation.getTicks();
+        assertEquals(0, simulation.advance(100));
+        assertEquals(ticks, simulation.getTicks());
+        assertFalse(simulation.tick());
+    }
+}
@@ -0,0 +1,123 @@
+package com.jerryzs.jetris.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotTest {
+    Game game;
+
+    @BeforeEach
+    void runBefore() {
+        this.game = new Game(60, 11);
+    }
+
+    private void assertMatches(Snapshot snapshot) {
+        // a frame drawn the same as the one before it is not published
+        assertTrue(snapshot.getFrame() <= this.game.getFrame());
+
+        for (int y = 0; y < Snapshot.HEIGHT; y++) {
+            for (int x = 0; x < Snapshot.WIDTH; x++) {
+                assertEquals(this.game.get(x, y), snapshot.get(x, y), "(" + x + ", " + y + ")");
+            }
+        }
+
+        for (int i = 0; i < Snapshot.PREVIEW_LENGTH; i++) {
+            assertEquals(this.game.getPreview(i).getType(), snapshot.getPreview(i));
+        }
+
+        Tetromino hold = this.game.getHold();
+        assertEquals(hold == null ? null : hold.getType(), snapshot.getHold());
+        assertEquals(this.game.getScore().getPoints(), snapshot.getPoints());
+        assertEquals(this.game.getScore().getLines(), snapshot.getLines());
+        assertEquals(this.game.getScore().getLevel(), snapshot.getLevel());
+        assertArrayEquals(this.game.getScore().getLastScore(), snapshot.getLastScore());
+    }
+
+    @Test
+    void testNotPublishedByDefault() {
+        this.game.run();
+        assertNull(this.game.getSnapshot());
+    }
+
+    @Test
+    void testSnapshotMatchesGame() {
+        Random inputs = new Random(11);
+        this.game.setPublishing(true);
+
+        for (int i = 0; i < 5000 && !this.game.isOver(); i++) {
+            int r = inputs.nextInt(100);
+
+            if (r < 10) {
+                this.game.moveLeft();
+            } else if (r < 20) {
+                this.game.moveRight();
+            } else if (r < 24) {
+                this.game.rotateRight();
+            } else if (r < 26) {
+                this.game.hardDrop();
+            } else if (r < 27) {
+                this.game.hold();
+            }
+
+            this.game.run();
+            this.assertMatches(this.game.getSnapshot());
+        }
+    }
+
+    @Test
+    void testSnapshotIsImmutable() {
+        this.game.setPublishing(true);
+        for (int i = 0; i < 2 * Simulation.TICK_RATE; i++) {
+            this.game.run();
+        }
+        Snapshot snapshot = this.game.getSnapshot();
+        int[] rows = new int[Snapshot.HEIGHT];
+        for (int y = 0; y < rows.length; y++) {
+            rows[y] = snapshot.getRow(y);
+        }
+
+        this.game.hardDrop();
+        this.game.run();
+
+        assertNotSame(snapshot, this.game.getSnapshot());
+        for (int y = 0; y < rows.length; y++) {
+            assertEquals(rows[y], snapshot.getRow(y));
+        }
+    }
+
+    @Test
+    void testSnapshotsRecycled() {
+        this.game.setPublishing(true);
+        Set<Snapshot> snapshots = Collections.newSetFromMap(new IdentityHashMap<Snapshot, Boolean>());
+
+        for (int i = 0; i < 10 * Simulation.TICK_RATE; i++) {
+            this.game.run();
+            snapshots.add(this.game.getSnapshot());
+        }
+
+        assertEquals(Snapshot.RING, snapshots.size());
+    }
+
+    @Test
+    void testPausedNotRepublished() {
+        this.game.setPublishing(true);
+        this.game.toggleGame();
+        Snapshot paused = this.game.getSnapshot();
+        assertTrue(paused.isPaused());
+        assertEquals(0, paused.getFall(0.5));
+
+        this.game.run();
+        this.game.run();
+        assertSame(paused, this.game.getSnapshot());
+
+        this.game.toggleGame();
+        assertFalse(this.game.getSnapshot().isPaused());
+    }
+}
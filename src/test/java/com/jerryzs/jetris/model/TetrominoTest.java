@@ -0,0 +1,62 @@
+package com.jerryzs.jetris.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TetrominoTest {
+    @Test
+    void testCellsMatchRelative() {
+        for (Tetromino.Type type : Tetromino.Type.values()) {
+            for (Tetromino.Direction orientation : Tetromino.Direction.values()) {
+                int[] cells = type.getCells(orientation);
+                Set<Integer> relative = new HashSet<Integer>();
+
+                for (int i = 0; i < cells.length; i += 2) {
+                    relative.add(Tetromino.num(cells[i], cells[i + 1]));
+                }
+
+                assertEquals(type.getRelative(orientation), relative);
+            }
+        }
+    }
+
+    @Test
+    void testOccupiesMatchesAbsoluteCoords() {
+        for (Tetromino.Type type : Tetromino.Type.values()) {
+            Tetromino tetromino = new Tetromino(type);
+            tetromino.move(Tetromino.Direction.DOWN);
+
+            for (int r = 0; r < 4; r++) {
+                tetromino.testRotate(1);
+                tetromino.rotate();
+
+                Set<Integer> absolute = tetromino.occupies();
+
+                for (int y = 0; y < 22; y++) {
+                    int mask = 0;
+                    for (int x = 0; x < 10; x++) {
+                        assertEquals(absolute.contains(Tetromino.num(x, y)), tetromino.occupies(x, y));
+                        mask |= absolute.contains(Tetromino.num(x, y)) ? 1 << x : 0;
+                    }
+                    assertEquals(mask, tetromino.getRowMask(y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testQueriesDoNotAllocate() {
+        Tetromino tetromino = new Tetromino(Tetromino.Type.T);
+        tetromino.move(Tetromino.Direction.DOWN);
+
+        double legacy = Allocations.perCall(() -> tetromino.occupies().contains(Tetromino.num(4, 19)), 100000);
+        double masks = Allocations.perCall(() -> tetromino.occupies(4, 19), 100000);
+
+        assertEquals(0, masks, 1,
+                String.format("occupies(x, y): %.1f B/call, was %.1f B/call through occupies()", masks, legacy));
+    }
+}
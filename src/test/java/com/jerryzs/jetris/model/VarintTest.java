@@ -0,0 +1,56 @@
+package com.jerryzs.jetris.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VarintTest {
+    @Test
+    void testRoundTrip() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        long[] values = {0, 1, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE, -1};
+
+        for (long value : values) {
+            Varint.put(buffer, value);
+        }
+        assertEquals(1 + 1 + 1 + 2 + 2 + 5 + 9 + 10, buffer.position());
+
+        buffer.flip();
+        for (long value : values) {
+            assertEquals(value, Varint.get(buffer));
+        }
+    }
+
+    @Test
+    void testSigned() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        long[] values = {0, -1, 1, -64, 63, Long.MIN_VALUE, Long.MAX_VALUE};
+
+        for (long value : values) {
+            Varint.putSigned(buffer, value);
+        }
+        assertEquals(1 + 1 + 1 + 1 + 1 + 10 + 10, buffer.position());
+
+        buffer.flip();
+        for (long value : values) {
+            assertEquals(value, Varint.getSigned(buffer));
+        }
+    }
+
+    @Test
+    void testMalformed() {
+        assertThrows(IOException.class, () -> Varint.get(ByteBuffer.wrap(new byte[]{(byte) 0x80})));
+        byte[] tooLong = new byte[11];
+        Arrays.fill(tooLong, (byte) 0x80);
+        assertThrows(IOException.class, () -> Varint.get(ByteBuffer.wrap(tooLong)));
+
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        Varint.putSigned(buffer, 23);
+        buffer.flip();
+        assertThrows(IOException.class, () -> Varint.getSignedInt(buffer, 0, 22));
+    }
+}
@@ -0,0 +1,100 @@
+package com.jerryzs.jetris.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AtomicFileTest {
+    @TempDir
+    Path directory;
+
+    private static ByteBuffer content(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+
+    private long files() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testWriteReplaces() throws IOException {
+        Path path = this.directory.resolve("file");
+
+        for (Durability durability : new Durability[]{Durability.NO_SYNC, Durability.SYNC}) {
+            AtomicFile.write(path, AtomicFileTest.content("first"), durability);
+            assertEquals("first", Files.readString(path));
+
+            AtomicFile.write(path, AtomicFileTest.content("second"), durability);
+            assertEquals("second", Files.readString(path));
+            assertEquals(1, this.files());
+
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void testGroupSync() throws IOException {
+        Path path = this.directory.resolve("file");
+        AtomicFile.write(path, AtomicFileTest.content("committed"), Durability.SYNC);
+
+        for (int i = 0; i < 10; i++) {
+            AtomicFile.write(path, AtomicFileTest.content("pending " + i), Durability.GROUP_SYNC);
+        }
+
+        // only the latest pending write is kept until the commit
+        assertTrue(this.files() <= 2);
+
+        AtomicFile.sync();
+        assertEquals("pending 9", Files.readString(path));
+        assertEquals(1, this.files());
+    }
+
+    @Test
+    void testGroupSyncCommitsInBackground() throws IOException, InterruptedException {
+        Path path = this.directory.resolve("file");
+        AtomicFile.write(path, AtomicFileTest.content("background"), Durability.GROUP_SYNC);
+
+        long deadline = System.currentTimeMillis() + 10 * AtomicFile.GROUP_COMMIT_INTERVAL;
+        while (!Files.exists(path) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals("background", Files.readString(path));
+    }
+
+    @Test
+    void testWriteDropsPendingGroupSync() throws IOException {
+        Path path = this.directory.resolve("file");
+
+        for (Durability durability : new Durability[]{Durability.NO_SYNC, Durability.SYNC}) {
+            AtomicFile.write(path, AtomicFileTest.content("older"), Durability.GROUP_SYNC);
+            AtomicFile.write(path, AtomicFileTest.content("newer"), durability);
+            assertEquals(1, this.files());
+
+            AtomicFile.sync();
+            assertEquals("newer", Files.readString(path));
+        }
+    }
+
+    @Test
+    void testStaleTempFilesDeleted() throws IOException {
+        Path path = this.directory.resolve("stale");
+        Files.writeString(this.directory.resolve("stale1234.tmp"), "crashed");
+        Files.writeString(this.directory.resolve("stale.backup.tmp"), "kept");
+
+        AtomicFile.write(path, AtomicFileTest.content("content"), Durability.NO_SYNC);
+
+        assertFalse(Files.exists(this.directory.resolve("stale1234.tmp")));
+        assertTrue(Files.exists(this.directory.resolve("stale.backup.tmp")));
+        assertEquals(2, this.files());
+    }
+}
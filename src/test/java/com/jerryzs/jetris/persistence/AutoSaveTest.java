@@ -0,0 +1,80 @@
+package com.jerryzs.jetris.persistence;
+
+import com.jerryzs.jetris.model.Game;
+import com.jerryzs.jetris.model.Simulation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AutoSaveTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWritesLatestSnapshot() {
+        String path = this.directory.resolve("save").toString();
+        Simulation simulation = new Simulation(8);
+        AutoSave autosave = new AutoSave(path, Durability.NO_SYNC, 1);
+
+        int snapshots = 0;
+        String expected = null;
+        for (int i = 0; i < 2000 && !simulation.getGame().isOver(); i++) {
+            if (i % 50 == 49) {
+                simulation.getGame().hardDrop();
+            }
+
+            simulation.tick();
+            autosave.update(simulation.getGame());
+
+            if (!simulation.getGame().isOver()) {
+                snapshots++;
+                expected = Game.toJson(simulation.getGame()).toString();
+            }
+        }
+
+        autosave.close();
+
+        assertNull(autosave.getError());
+        assertTrue(autosave.getWrites() >= 1);
+        assertTrue(autosave.getWrites() <= snapshots);
+
+        Game loaded = new Save(path).load(60);
+        assertNotNull(loaded);
+        assertEquals(expected, Game.toJson(loaded).toString());
+    }
+
+    @Test
+    void testInterval() {
+        String path = this.directory.resolve("save").toString();
+        Simulation simulation = new Simulation(9);
+        AutoSave autosave = new AutoSave(path, Durability.NO_SYNC, 100);
+
+        for (int i = 0; i < 99; i++) {
+            simulation.tick();
+            autosave.update(simulation.getGame());
+        }
+
+        autosave.close();
+        assertEquals(0, autosave.getWrites());
+        assertNull(new Save(path).load(60));
+    }
+
+    @Test
+    void testCloseCommitsGroupSync() {
+        String path = this.directory.resolve("save").toString();
+        Simulation simulation = new Simulation(10);
+        AutoSave autosave = new AutoSave(path, Durability.GROUP_SYNC, 1);
+
+        simulation.tick();
+        autosave.update(simulation.getGame());
+        autosave.close();
+
+        // committed without waiting for the next group commit
+        Game loaded = new Save(path).load(60);
+        assertNotNull(loaded);
+        assertEquals(Game.toJson(simulation.getGame()).toString(), Game.toJson(loaded).toString());
+    }
+}
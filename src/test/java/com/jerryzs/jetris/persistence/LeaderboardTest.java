@@ -0,0 +1,154 @@
+package com.jerryzs.jetris.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeaderboardTest {
+    private static final int THREADS = 4;
+    private static final int GAMES = 200;
+
+    @TempDir
+    Path directory;
+
+    private static Leaderboard.Entry entry(int i) {
+        return new Leaderboard.Entry((i * 7919) % 10007, i % 40, 1 + i % 15, 1000L * i, i);
+    }
+
+    private static List<Leaderboard.Entry> best(int games, int size) {
+        List<Leaderboard.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < games; i++) {
+            entries.add(LeaderboardTest.entry(i));
+        }
+
+        entries.sort(Leaderboard.Entry.RANKING);
+        return entries.subList(0, size);
+    }
+
+    @Test
+    void testConcurrentWriters() throws Exception {
+        Path path = this.directory.resolve("leaderboard");
+
+        try (Leaderboard leaderboard = new Leaderboard(path, Leaderboard.DEFAULT_SIZE, Durability.NO_SYNC)) {
+            Thread[] threads = new Thread[LeaderboardTest.THREADS];
+            for (int t = 0; t < threads.length; t++) {
+                int first = t * LeaderboardTest.GAMES;
+                threads[t] = new Thread(() -> {
+                    for (int i = first; i < first + LeaderboardTest.GAMES; i++) {
+                        try {
+                            leaderboard.submit(LeaderboardTest.entry(i));
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            int games = LeaderboardTest.THREADS * LeaderboardTest.GAMES;
+            assertEquals(games, leaderboard.getRecords());
+            assertEquals(LeaderboardTest.best(games, Leaderboard.DEFAULT_SIZE), leaderboard.getTop());
+        }
+
+        try (Leaderboard leaderboard = new Leaderboard(path, Leaderboard.DEFAULT_SIZE, Durability.NO_SYNC)) {
+            int games = LeaderboardTest.THREADS * LeaderboardTest.GAMES;
+            assertEquals(games, leaderboard.getRecords());
+            assertEquals(LeaderboardTest.best(games, Leaderboard.DEFAULT_SIZE), leaderboard.getTop());
+        }
+    }
+
+    @Test
+    void testGroupSyncForcedLater() throws IOException, InterruptedException {
+        Path path = this.directory.resolve("leaderboard");
+
+        try (Leaderboard leaderboard = new Leaderboard(path, Leaderboard.DEFAULT_SIZE, Durability.GROUP_SYNC)) {
+            // the first append is forced right away, the next ones within the
+            // interval are left for later
+            leaderboard.submit(LeaderboardTest.entry(0));
+            leaderboard.submit(LeaderboardTest.entry(1));
+
+            long deadline = System.currentTimeMillis() + 10 * AtomicFile.GROUP_COMMIT_INTERVAL;
+            while (!leaderboard.isForced() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(leaderboard.isForced());
+        }
+    }
+
+    @Test
+    void testTornRecord() throws IOException {
+        Path path = this.directory.resolve("leaderboard");
+
+        try (Leaderboard leaderboard = new Leaderboard(path, 3, Durability.SYNC)) {
+            for (int i = 0; i < 5; i++) {
+                leaderboard.submit(LeaderboardTest.entry(i));
+            }
+        }
+
+        long size = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7}));
+        }
+
+        try (Leaderboard leaderboard = new Leaderboard(path, 3, Durability.SYNC)) {
+            assertEquals(5, leaderboard.getRecords());
+            assertEquals(size, Files.size(path));
+            assertEquals(LeaderboardTest.best(5, 3), leaderboard.getTop());
+
+            leaderboard.submit(LeaderboardTest.entry(5));
+        }
+
+        try (Leaderboard leaderboard = new Leaderboard(path, 3, Durability.SYNC)) {
+            assertEquals(6, leaderboard.getRecords());
+            assertEquals(LeaderboardTest.best(6, 3), leaderboard.getTop());
+        }
+    }
+
+    @Test
+    void testCompaction() throws IOException {
+        Path path = this.directory.resolve("leaderboard");
+        int games = 1500;
+
+        try (Leaderboard leaderboard = new Leaderboard(path, Leaderboard.DEFAULT_SIZE, Durability.NO_SYNC)) {
+            for (int i = 0; i < games; i++) {
+                leaderboard.submit(LeaderboardTest.entry(i));
+            }
+
+            // compacted once the log reached the threshold
+            assertTrue(leaderboard.getRecords() < games - Leaderboard.DEFAULT_SIZE);
+            assertEquals(LeaderboardTest.best(games, Leaderboard.DEFAULT_SIZE), leaderboard.getTop());
+
+            leaderboard.compact();
+            assertEquals(Leaderboard.DEFAULT_SIZE, leaderboard.getRecords());
+        }
+
+        try (Leaderboard leaderboard = new Leaderboard(path, Leaderboard.DEFAULT_SIZE, Durability.NO_SYNC)) {
+            assertEquals(Leaderboard.DEFAULT_SIZE, leaderboard.getRecords());
+            assertEquals(LeaderboardTest.best(games, Leaderboard.DEFAULT_SIZE), leaderboard.getTop());
+            assertEquals(leaderboard.getTop().get(0).getPoints(), leaderboard.getBest());
+        }
+    }
+
+    @Test
+    void testNotALog() throws IOException {
+        Path path = this.directory.resolve("leaderboard");
+        Files.writeString(path, "not a leaderboard");
+
+        assertThrows(IOException.class, () -> new Leaderboard(path, 3, Durability.NO_SYNC));
+    }
+}
@@ -0,0 +1,140 @@
+package com.jerryzs.jetris.persistence;
+
+import com.jerryzs.jetris.model.Game;
+import com.jerryzs.jetris.model.Input;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayPlayerTest {
+    /**
+     * EFFECTS: Record a game from the given seed with random inputs, also
+     * drawn from the seed, and occasional changes of framerate, until it is
+     * over or the given number of frames have been run.
+     */
+    static byte[] record(long seed, int frames) throws IOException {
+        return ReplayPlayerTest.record(seed, frames, ReplayRecorder.DEFAULT_KEYFRAME_INTERVAL, null);
+    }
+
+    /**
+     * EFFECTS: Record a game as above, with a keyframe every given number of
+     * frames, and put the state of the game at every frame, after its inputs,
+     * into the given array, if any.
+     */
+    static byte[] record(long seed, int frames, long keyframeInterval, byte[][] states) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Game game = new Game(60, seed);
+        Random random = new Random(seed);
+
+        try (ReplayRecorder recorder = new ReplayRecorder(game, Channels.newChannel(out), keyframeInterval)) {
+            for (int i = 0; i < frames && !game.isOver(); i++) {
+                int r = random.nextInt(100);
+
+                if (r < 10) {
+                    game.perform(Input.VALUES[random.nextInt(Input.VALUES.length)]);
+                } else if (r == 10) {
+                    game.framerate(55 + random.nextInt(10));
+                }
+
+                if (states != null && !game.isOver()) {
+                    states[i] = ReplayPlayerTest.state(game);
+                }
+
+                game.run();
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    static byte[] state(Game game) {
+        ByteBuffer buffer = ByteBuffer.allocate(Game.MAX_BINARY_LENGTH);
+        Game.write(game, buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    @Test
+    void testVerify() throws IOException {
+        for (long seed = 0; seed < 10; seed++) {
+            ReplayPlayer player = new ReplayPlayer(ByteBuffer.wrap(ReplayPlayerTest.record(seed, 50000)));
+
+            assertTrue(player.verify());
+            assertTrue(player.isEnded());
+            assertEquals(seed, player.getSeed());
+            assertEquals(player.getRecordedOutcome(), ReplayPlayer.Outcome.of(player.getGame()));
+        }
+    }
+
+    @Test
+    void testSeek() throws IOException {
+        byte[][] states = new byte[20000][];
+        byte[] replay = ReplayPlayerTest.record(11, states.length, 500, states);
+        ReplayPlayer player = new ReplayPlayer(ByteBuffer.wrap(replay));
+        Random random = new Random(11);
+
+        for (int i = 0; i < 200; i++) {
+            int frame = random.nextInt(states.length);
+            if (states[frame] == null) {
+                continue;
+            }
+
+            player.seek(frame);
+            assertEquals(frame, player.getGame().getFrame());
+            assertArrayEquals(states[frame], ReplayPlayerTest.state(player.getGame()), "frame " + frame);
+        }
+
+        assertTrue(player.verify());
+    }
+
+    @Test
+    void testSeekWithoutKeyframes() throws IOException {
+        byte[][] states = new byte[3000][];
+        byte[] replay = ReplayPlayerTest.record(12, states.length, 0, states);
+        ReplayPlayer player = new ReplayPlayer(ByteBuffer.wrap(replay));
+
+        int last = states.length - 1;
+        while (states[last] == null) {
+            last--;
+        }
+
+        for (int frame : new int[]{last * 2 / 3, 100, 100, last, 0}) {
+            player.seek(frame);
+            assertArrayEquals(states[frame], ReplayPlayerTest.state(player.getGame()), "frame " + frame);
+        }
+    }
+
+    @Test
+    void testVerifyTampered() throws IOException {
+        byte[] replay = ReplayPlayerTest.record(3, 20000);
+
+        // change the first input after the header to a different input
+        int first = ReplayFormat.MAGIC.length + 1 + Long.BYTES + 1;
+        while (replay[first] < 0) {
+            first++;
+        }
+        replay[first] ^= replay[first] % 8 == Input.HOLD.ordinal() ? 1 : 2;
+
+        ReplayPlayer player = new ReplayPlayer(ByteBuffer.wrap(replay));
+        boolean verified;
+        try {
+            verified = player.verify();
+        } catch (IOException e) {
+            verified = false;
+        }
+
+        assertFalse(verified);
+    }
+
+    @Test
+    void testNotReplay() {
+        assertThrows(IOException.class, () -> new ReplayPlayer(ByteBuffer.wrap(new byte[]{'J', 'T', 'R'})));
+        assertThrows(IOException.class, () -> new ReplayPlayer(ByteBuffer.wrap(new byte[16])));
+    }
+}
@@ -0,0 +1,63 @@
+package com.jerryzs.jetris.persistence;
+
+import com.jerryzs.jetris.model.Game;
+import com.jerryzs.jetris.model.Input;
+import com.jerryzs.jetris.model.Varint;
+import com.jerryzs.jetris.model.Simulation;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayRecorderTest {
+    @Test
+    void testHeader() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Game game = new Game(60, 0x0102030405060708L);
+
+        new ReplayRecorder(game, Channels.newChannel(out)).close();
+
+        ByteBuffer replay = ByteBuffer.wrap(out.toByteArray());
+        byte[] magic = new byte[4];
+        replay.get(magic);
+
+        assertArrayEquals(ReplayFormat.MAGIC, magic);
+        assertEquals(ReplayFormat.VERSION, replay.get());
+        assertEquals(0x0102030405060708L, replay.getLong());
+        assertEquals(60, Varint.get(replay));
+        assertEquals(ReplayFormat.CONTROL, Varint.get(replay));
+        assertEquals(ReplayFormat.OUTCOME, Varint.get(replay));
+        for (int i = 0; i < 2 + ReplayFormat.ROWS; i++) {
+            assertEquals(0, Varint.get(replay));
+        }
+        assertEquals(ReplayFormat.CONTROL, Varint.get(replay));
+        assertEquals(ReplayFormat.END, Varint.get(replay));
+        assertFalse(replay.hasRemaining());
+    }
+
+    @Test
+    void testRecordSize() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Simulation simulation = new Simulation(7);
+        Random random = new Random(7);
+
+        int inputs = 0;
+        try (ReplayRecorder recorder = new ReplayRecorder(simulation.getGame(), Channels.newChannel(out))) {
+            while (simulation.getTicks() < 100000 && !simulation.getGame().isOver()) {
+                if (random.nextInt(8) == 0) {
+                    simulation.getGame().perform(Input.VALUES[random.nextInt(Input.VALUES.length - 2)]);
+                    inputs++;
+                }
+                simulation.tick();
+            }
+        }
+
+        assertTrue(inputs > 1000);
+        assertTrue(out.size() < 2 * inputs, out.size() + " bytes for " + inputs + " inputs");
+    }
+}
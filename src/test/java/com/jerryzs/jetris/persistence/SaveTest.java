@@ -0,0 +1,74 @@
+package com.jerryzs.jetris.persistence;
+
+import com.jerryzs.jetris.model.Game;
+import com.jerryzs.jetris.model.Simulation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SaveTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * EFFECTS: Get a game that has been played for a while.
+     */
+    static Game played() {
+        Simulation simulation = new Simulation(5);
+        for (int i = 0; i < 300; i++) {
+            if (i % 40 == 20) {
+                simulation.getGame().moveLeft();
+            } else if (i % 40 == 39) {
+                simulation.getGame().hardDrop();
+            }
+            simulation.tick();
+        }
+        simulation.getGame().hold();
+
+        return simulation.getGame();
+    }
+
+    @Test
+    void testBinaryRoundTrip() throws IOException {
+        Game game = SaveTest.played();
+        String path = this.directory.resolve("save").toString();
+
+        assertTrue(new Save(game, path).store());
+        assertTrue(Files.size(Path.of(path)) < 100, Files.size(Path.of(path)) + " bytes");
+
+        Game loaded = new Save(path).load(30);
+        assertNotNull(loaded);
+        assertEquals(Game.toJson(game).toString(), Game.toJson(loaded).toString());
+        assertEquals(30, loaded.framerate());
+    }
+
+    @Test
+    void testJsonRoundTrip() {
+        Game game = SaveTest.played();
+        String path = this.directory.resolve("save.json").toString();
+
+        assertTrue(new Save(game, path, Save.Format.JSON).store());
+
+        Game loaded = new Save(path).load(60);
+        assertNotNull(loaded);
+        assertEquals(Game.toJson(game).toString(), Game.toJson(loaded).toString());
+    }
+
+    @Test
+    void testLoadInvalid() throws IOException {
+        Path path = this.directory.resolve("save");
+
+        assertNull(new Save(path.toString()).load(60));
+
+        Files.write(path, new byte[]{'J', 'T', 'R', 'S', 1, 0, 0});
+        assertNull(new Save(path.toString()).load(60));
+
+        Files.write(path, "{}".getBytes());
+        assertNull(new Save(path.toString()).load(60));
+    }
+}
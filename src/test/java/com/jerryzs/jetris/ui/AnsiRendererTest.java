@@ -0,0 +1,89 @@
+package com.jerryzs.jetris.ui;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnsiRendererTest {
+    /**
+     * An output stream counting the writes to it.
+     */
+    private static class CountingStream extends ByteArrayOutputStream {
+        private int writes;
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            this.writes++;
+            super.write(b, off, len);
+        }
+
+        private String take() {
+            String text = this.toString(StandardCharsets.UTF_8);
+            this.reset();
+            return text;
+        }
+    }
+
+    CountingStream out;
+    AnsiRenderer renderer;
+    CellBuffer buffer;
+
+    @BeforeEach
+    void runBefore() throws IOException {
+        this.out = new CountingStream();
+        this.renderer = new AnsiRenderer(new DefaultVirtualTerminal(new TerminalSize(20, 3)), this.out);
+        this.buffer = new CellBuffer(20, 3);
+
+        // draw the blank first frame
+        this.buffer.flush(this.renderer);
+        this.renderer.refresh();
+        this.out.take();
+        this.out.writes = 0;
+    }
+
+    @Test
+    void testSingleWritePerFrame() throws IOException {
+        this.buffer.put(2, 0, "ab");
+        this.buffer.put(2, 2, "\u2588\u2588");
+        this.buffer.color(2, 2, 2, (byte) 1);
+
+        assertEquals(2, this.buffer.flush(this.renderer));
+        assertEquals(0, this.out.writes);
+
+        this.renderer.refresh();
+        assertEquals(1, this.out.writes);
+
+        String text = this.out.take();
+        assertTrue(text.startsWith("\u001b[1;3Hab\u001b[3;3H\u001b[38;5;"), text);
+        assertTrue(text.endsWith("m\u2588\u2588"), text);
+    }
+
+    @Test
+    void testNothingWrittenWithoutChanges() throws IOException {
+        assertEquals(0, this.buffer.flush(this.renderer));
+        this.renderer.refresh();
+        assertEquals(0, this.out.writes);
+    }
+
+    @Test
+    void testCursorAndColorReused() throws IOException {
+        char[] row = "abcdef".toCharArray();
+        byte[] colors = {3, 3, 3, 3, 0, 0};
+
+        this.renderer.draw(0, 1, row, colors, 0, 2);
+        this.renderer.draw(2, 1, row, colors, 2, 4);
+        this.renderer.refresh();
+
+        String text = this.out.take();
+        assertEquals(1, text.split("H", -1).length - 1, text);
+        assertEquals(text.indexOf("38;5;"), text.lastIndexOf("38;5;"), text);
+        assertTrue(text.endsWith("abcd\u001b[39mef"), text);
+    }
+}
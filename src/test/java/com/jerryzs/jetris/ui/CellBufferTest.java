@@ -0,0 +1,102 @@
+package com.jerryzs.jetris.ui;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CellBufferTest {
+    CellBuffer buffer;
+    List<String> runs;
+
+    @BeforeEach
+    void runBefore() {
+        this.buffer = new CellBuffer(20, 3);
+        this.runs = new ArrayList<String>();
+    }
+
+    private int flush() {
+        this.runs.clear();
+        return this.buffer.flush((x, y, chars, colors, offset, length) ->
+                this.runs.add(x + "," + y + ":" + new String(chars, offset, length)));
+    }
+
+    @Test
+    void testFirstFrameDrawsEverything() {
+        this.buffer.put(2, 1, "hello");
+
+        assertEquals(3, this.flush());
+        assertEquals("0,1:  hello             ", this.runs.get(1));
+    }
+
+    @Test
+    void testUnchangedFrameDrawsNothing() {
+        this.buffer.put(2, 1, "hello");
+        this.flush();
+
+        this.buffer.clear();
+        this.buffer.put(2, 1, "hello");
+        assertEquals(0, this.flush());
+    }
+
+    @Test
+    void testOnlyChangesDrawn() {
+        this.buffer.put(2, 1, "hello");
+        this.flush();
+
+        this.buffer.clear();
+        this.buffer.put(2, 1, "jelly");
+        assertEquals(1, this.flush());
+        // the unchanged "el" is cheaper to rewrite than to skip
+        assertEquals(List.of("2,1:jelly"), this.runs);
+
+        this.buffer.clear();
+        this.buffer.put(2, 1, "j");
+        this.buffer.put(19, 1, "x");
+        assertEquals(2, this.flush());
+        assertEquals(List.of("3,1:    ", "19,1:x"), this.runs);
+    }
+
+    @Test
+    void testColorChangesDrawn() {
+        this.buffer.put(2, 1, "hello");
+        this.flush();
+
+        this.buffer.clear();
+        this.buffer.put(2, 1, "hello");
+        this.buffer.color(3, 1, 2, (byte) 3);
+        assertEquals(1, this.flush());
+        assertEquals(List.of("3,1:el"), this.runs);
+
+        this.buffer.clear();
+        this.buffer.put(2, 1, "hello");
+        assertEquals(1, this.flush());
+        assertEquals(List.of("3,1:el"), this.runs);
+    }
+
+    @Test
+    void testClipped() {
+        this.buffer.put(-2, 0, "abcd");
+        this.buffer.put(18, 2, "wxyz");
+        this.buffer.put(0, 3, "out");
+        this.flush();
+
+        assertTrue(this.runs.get(0).startsWith("0,0:cd "));
+        assertTrue(this.runs.get(2).endsWith(" wx"));
+    }
+
+    @Test
+    void testResizeRedraws() {
+        this.flush();
+        this.buffer.resize(20, 3);
+        assertEquals(0, this.flush());
+
+        this.buffer.resize(10, 2);
+        assertEquals(2, this.flush());
+        assertEquals(10, this.buffer.getWidth());
+        assertEquals(2, this.buffer.getHeight());
+    }
+}
@@ -0,0 +1,29 @@
+package com.jerryzs.jetris.ui;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameTimerTest {
+    @Test
+    void testMissedDeadlines() throws InterruptedException {
+        FrameTimer timer = new FrameTimer(1_000_000L);
+
+        timer.begin();
+        timer.mark(FrameTimer.Phase.INPUT);
+        timer.mark(FrameTimer.Phase.RUN);
+        timer.end();
+
+        timer.begin();
+        timer.mark(FrameTimer.Phase.INPUT);
+        Thread.sleep(5);
+        timer.mark(FrameTimer.Phase.REFRESH);
+        timer.end();
+
+        assertEquals(2, timer.getFrameHistogram().getCount());
+        assertEquals(1, timer.getHistogram(FrameTimer.Phase.RUN).getCount());
+        assertEquals(1, timer.getMissedDeadlines());
+        assertEquals(1, timer.getMissedDeadlines(FrameTimer.Phase.REFRESH));
+        assertTrue(timer.getHistogram(FrameTimer.Phase.REFRESH).getMax() >= 5_000_000L);
+    }
+}
@@ -0,0 +1,98 @@
+package com.jerryzs.jetris.ui;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameLoopTest {
+    /**
+     * A target counting its ticks and renders, which can stall its first tick.
+     */
+    private static class CountingTarget implements GameLoop.Target {
+        private final long stall;
+
+        private int ticks;
+        private int renders;
+        private double minAlpha = 1;
+        private double maxAlpha = 0;
+
+        private CountingTarget(long stall) {
+            this.stall = stall;
+        }
+
+        @Override
+        public void tick() {
+            if (this.ticks++ == 0 && this.stall > 0) {
+                try {
+                    Thread.sleep(this.stall);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void render(double alpha) {
+            this.renders++;
+            this.minAlpha = Math.min(this.minAlpha, alpha);
+            this.maxAlpha = Math.max(this.maxAlpha, alpha);
+        }
+    }
+
+    @Test
+    void testIndependentRates() throws InterruptedException {
+        CountingTarget target = new CountingTarget(0);
+        FrameTimer timer = new FrameTimer(5_000_000L);
+        GameLoop loop = new GameLoop(target, 200, 50, timer);
+
+        loop.start();
+        Thread.sleep(500);
+        loop.stop();
+
+        // generous bounds for a loaded machine
+        assertTrue(target.ticks >= 50 && target.ticks <= 110, "ticks: " + target.ticks);
+        assertTrue(target.renders >= 10 && target.renders <= 30, "renders: " + target.renders);
+        assertTrue(target.ticks > 2 * target.renders);
+
+        assertEquals(target.ticks, loop.getTicks());
+        assertEquals(target.renders, loop.getRenders());
+        assertTrue(target.minAlpha >= 0);
+        assertTrue(target.maxAlpha < 1);
+        assertTrue(timer.getFrameHistogram().getCount() > 0);
+    }
+
+    @Test
+    void testCatchUpCapped() throws InterruptedException {
+        CountingTarget target = new CountingTarget(200);
+        GameLoop loop = new GameLoop(target, 1000, 10, null);
+
+        loop.start();
+        Thread.sleep(300);
+        loop.stop();
+
+        // the stall of 200 ticks is not made up for
+        assertTrue(loop.getDropped() >= 150, "dropped: " + loop.getDropped());
+        assertTrue(target.ticks < 200, "ticks: " + target.ticks);
+    }
+
+    @Test
+    void testStopFromLoop() throws InterruptedException {
+        GameLoop[] loop = new GameLoop[1];
+        GameLoop.Target target = new GameLoop.Target() {
+            @Override
+            public void tick() {
+                loop[0].stop();
+            }
+
+            @Override
+            public void render(double alpha) {
+            }
+        };
+
+        loop[0] = new GameLoop(target, 100, 100, null);
+        loop[0].start();
+        Thread.sleep(200);
+
+        assertTrue(loop[0].getTicks() >= 1 && loop[0].getTicks() <= GameLoop.MAX_CATCH_UP);
+    }
+}
@@ -0,0 +1,58 @@
+package com.jerryzs.jetris.ui;
+
+import com.jerryzs.jetris.model.Tetromino;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GlyphTilesTest {
+    @Test
+    void testWidths() {
+        for (int scale = GlyphTiles.MIN_SCALE; scale <= GlyphTiles.MAX_SCALE; scale++) {
+            GlyphTiles tiles = new GlyphTiles(scale);
+
+            assertEquals(44 * scale + 2, tiles.getWidth());
+            assertEquals(20 * scale + 2, tiles.getHeight());
+            assertEquals(tiles.getWidth(), tiles.getTop().length);
+            assertEquals(tiles.getWidth(), tiles.getBottom().length);
+            assertEquals(20 * scale, tiles.getRow(0).length);
+            assertEquals(tiles.getMarginWidth(), tiles.getBlank().length);
+
+            for (int line = 0; line < scale; line++) {
+                assertEquals(tiles.getMarginWidth(), tiles.getHoldHeader(line).length);
+                assertEquals(tiles.getMarginWidth(), tiles.getNextHeader(line).length);
+            }
+
+            for (Tetromino.Type type : Tetromino.Type.values()) {
+                for (int line = 0; line < 2 * scale; line++) {
+                    assertEquals(tiles.getMarginWidth(), tiles.getPiece(type, line).length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRowTiles() {
+        GlyphTiles tiles = new GlyphTiles(2);
+
+        assertEquals(" ".repeat(40), new String(tiles.getRow(0)));
+        assertEquals("\u2588".repeat(40), new String(tiles.getRow(1023)));
+        assertEquals("\u2588".repeat(4) + " ".repeat(32) + "\u2588".repeat(4),
+                new String(tiles.getRow(0b1000000001)));
+    }
+
+    @Test
+    void testPieceTiles() {
+        GlyphTiles tiles = new GlyphTiles(1);
+        int[] standalone = Tetromino.Type.T.getStandalone();
+
+        StringBuilder expected = new StringBuilder("  ");
+        for (int k = 0; k < 4; k++) {
+            expected.append(standalone[4 + k] != 0 ? "\u2588\u2588" : "  ");
+        }
+        expected.append("  ");
+
+        assertEquals(expected.toString(), new String(tiles.getPiece(Tetromino.Type.T, 1)));
+        assertSame(tiles.getPiece(Tetromino.Type.T, 1), tiles.getPiece(Tetromino.Type.T, 1));
+    }
+}
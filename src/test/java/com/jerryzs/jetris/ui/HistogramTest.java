@@ -0,0 +1,64 @@
+package com.jerryzs.jetris.ui;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistogramTest {
+    @Test
+    void testEmpty() {
+        Histogram histogram = new Histogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+
+        for (int i = 1; i <= 50; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(50, histogram.getCount());
+        assertEquals(25, histogram.getValueAtPercentile(50));
+        assertEquals(50, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    void testPrecision() {
+        Histogram histogram = new Histogram();
+
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(100_000_000L, histogram.getMax());
+        assertEquals(100_000_000L, histogram.getValueAtPercentile(100));
+
+        double[] percentiles = {50, 99, 99.9};
+        long[] values = {50_000_000L, 99_000_000L, 99_900_000L};
+        for (int i = 0; i < percentiles.length; i++) {
+            long value = histogram.getValueAtPercentile(percentiles[i]);
+            assertTrue(value >= values[i], percentiles[i] + ": " + value);
+            assertTrue(value <= values[i] + values[i] / (1 << Histogram.SUB_BITS), percentiles[i] + ": " + value);
+        }
+    }
+
+    @Test
+    void testExtremes() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
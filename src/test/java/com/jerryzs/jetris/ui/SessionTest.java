@@ -0,0 +1,118 @@
+package com.jerryzs.jetris.ui;
+
+import com.jerryzs.jetris.model.Game;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMX;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionTest {
+    /**
+     * A user interface without a screen, whose frames are run by the test.
+     */
+    private static class HeadlessInterface extends UserInterface {
+        private HeadlessInterface() {
+            super(60);
+            this.game = new Game(60, 5);
+            this.game.setPublishing(true);
+        }
+
+        @Override
+        protected Menu getMainMenu() {
+            return message -> { };
+        }
+
+        @Override
+        protected Menu getPauseMenu() {
+            return message -> { };
+        }
+
+        @Override
+        protected Menu getGameOverMenu() {
+            return message -> { };
+        }
+
+        @Override
+        public void render(double alpha) {
+        }
+
+        /**
+         * EFFECTS: Run a timed frame of the interface.
+         */
+        private void frame() {
+            this.getFrameTimer().begin();
+            this.tick();
+            this.getFrameTimer().end();
+        }
+    }
+
+    HeadlessInterface ui;
+    Session session;
+    SessionMXBean proxy;
+
+    @BeforeEach
+    void runBefore() {
+        this.ui = new HeadlessInterface();
+        this.session = this.ui.getSession();
+        this.proxy = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), this.session.getName(),
+                SessionMXBean.class);
+    }
+
+    @AfterEach
+    void runAfter() {
+        this.session.unregister();
+    }
+
+    /**
+     * EFFECTS: Run frames of the interface until the given operation, invoked
+     * through JMX from another thread, is done.
+     */
+    private boolean invoke(BooleanSupplier operation) throws InterruptedException {
+        CompletableFuture<Boolean> result = CompletableFuture.supplyAsync(operation::getAsBoolean);
+
+        // far fewer frames than it takes for the game to end
+        while (!result.isDone()) {
+            this.ui.frame();
+            Thread.sleep(1);
+        }
+
+        return result.join();
+    }
+
+    @Test
+    void testAttributes() {
+        for (int i = 0; i < 10; i++) {
+            this.ui.frame();
+        }
+
+        assertTrue(this.proxy.isPlaying());
+        assertFalse(this.proxy.isPaused());
+        assertEquals(1, this.proxy.getLevel());
+        assertEquals(0, this.proxy.getPoints());
+        assertEquals(0, this.proxy.getLines());
+        assertTrue(this.proxy.getFrameTimeMax() >= this.proxy.getFrameTimeP50());
+    }
+
+    @Test
+    void testPauseAndResume() throws InterruptedException {
+        assertFalse(this.invoke(this.proxy::resume));
+
+        assertTrue(this.invoke(this.proxy::pause));
+        assertTrue(this.proxy.isPaused());
+        assertFalse(this.invoke(this.proxy::pause));
+
+        assertTrue(this.invoke(this.proxy::resume));
+        assertFalse(this.proxy.isPaused());
+    }
+
+    @Test
+    void testSaveWithoutSaveFile() throws InterruptedException {
+        assertFalse(this.invoke(this.proxy::save));
+    }
+}